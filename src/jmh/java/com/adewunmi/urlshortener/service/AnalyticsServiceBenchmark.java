@@ -0,0 +1,41 @@
+package com.adewunmi.urlshortener.service;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class AnalyticsServiceBenchmark {
+
+    private AnalyticsService analyticsService;
+
+    @Setup
+    public void setUp() {
+        analyticsService = new AnalyticsService(null, null, null, null, null, null,
+                "http://localhost:8080", 200, 500);
+    }
+
+    @Benchmark
+    public String maskIpv4Address() {
+        return analyticsService.maskIpAddress("192.168.100.254");
+    }
+
+    @Benchmark
+    public String maskIpv6Address() {
+        return analyticsService.maskIpAddress("2001:db8:85a3::8a2e:370:7334");
+    }
+}
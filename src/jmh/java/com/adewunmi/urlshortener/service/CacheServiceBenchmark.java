@@ -0,0 +1,90 @@
+package com.adewunmi.urlshortener.service;
+
+import com.adewunmi.urlshortener.config.BackgroundThreadFactory;
+import com.adewunmi.urlshortener.dto.CachedUrl;
+import com.adewunmi.urlshortener.entity.RedirectType;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Group;
+import org.openjdk.jmh.annotations.GroupThreads;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The in-process cache tier under contention (Redis disabled), as seen by concurrent
+ * redirect threads.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class CacheServiceBenchmark {
+
+    private static final int KEYS = 10_000;
+
+    private CacheService cacheService;
+    private String[] shortCodes;
+    private CachedUrl[] values;
+
+    @Setup
+    public void setUp() {
+        BackgroundThreadFactory threadFactory = new BackgroundThreadFactory(false);
+        SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+        SnapshotStore snapshotStore = new SnapshotStore(null, threadFactory, false, "target/snapshot", 0, 0, 0,
+                meterRegistry);
+        cacheService = new CacheService(null, null, threadFactory, snapshotStore, 64L * 1024 * 1024, 10, 100_000,
+                false, 0.8, 0, 1, 5000, meterRegistry);
+        shortCodes = new String[KEYS];
+        values = new CachedUrl[KEYS];
+        for (int i = 0; i < KEYS; i++) {
+            shortCodes[i] = String.format("c%06d", i);
+            values[i] = new CachedUrl(i, "https://example.com/articles/" + i, null, RedirectType.PERMANENT);
+            cacheService.cacheUrlMapping(shortCodes[i], values[i]);
+        }
+    }
+
+    private int nextIndex() {
+        return ThreadLocalRandom.current().nextInt(KEYS);
+    }
+
+    @Benchmark
+    @Threads(4)
+    public CachedUrl getHit() {
+        return cacheService.getCachedUrl(shortCodes[nextIndex()]);
+    }
+
+    @Benchmark
+    @Threads(4)
+    public void put() {
+        int i = nextIndex();
+        cacheService.cacheUrlMapping(shortCodes[i], values[i]);
+    }
+
+    @Benchmark
+    @Group("readMostly")
+    @GroupThreads(3)
+    public CachedUrl readMostlyGet() {
+        return cacheService.getCachedUrl(shortCodes[nextIndex()]);
+    }
+
+    @Benchmark
+    @Group("readMostly")
+    @GroupThreads(1)
+    public void readMostlyPut() {
+        int i = nextIndex();
+        cacheService.cacheUrlMapping(shortCodes[i], values[i]);
+    }
+}
@@ -0,0 +1,54 @@
+package com.adewunmi.urlshortener.service;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Code generation without the database: the random draw, and turning a leased id into
+ * a code with and without scrambling.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class ShortCodeGeneratorBenchmark {
+
+    private RandomShortCodeGenerator random;
+    private SegmentShortCodeGenerator scrambled;
+    private SegmentShortCodeGenerator sequential;
+    private long id;
+
+    @Setup
+    public void setUp() {
+        random = new RandomShortCodeGenerator(null, null);
+        scrambled = new SegmentShortCodeGenerator(null, 1000, true, 42L);
+        sequential = new SegmentShortCodeGenerator(null, 1000, false, 42L);
+    }
+
+    @Benchmark
+    public String randomString() {
+        return random.generateRandomString();
+    }
+
+    @Benchmark
+    public String segmentScrambled() {
+        return scrambled.encode(++id & 0xFFFFFFFFFL);
+    }
+
+    @Benchmark
+    public String segmentSequential() {
+        return sequential.encode(++id & 0xFFFFFFFFFL);
+    }
+}
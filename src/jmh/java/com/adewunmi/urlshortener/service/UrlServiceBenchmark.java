@@ -0,0 +1,65 @@
+package com.adewunmi.urlshortener.service;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.mock.web.MockHttpServletRequest;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Per-request helpers on the shorten and redirect paths. None of them touch the
+ * repositories, so the service is built without its collaborators.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class UrlServiceBenchmark {
+
+    private UrlService urlService;
+    private MockHttpServletRequest directRequest;
+    private MockHttpServletRequest proxiedRequest;
+
+    @Setup
+    public void setUp() {
+        urlService = new UrlService(null, null, null, null, null, null, null, null, new SimpleMeterRegistry());
+
+        directRequest = new MockHttpServletRequest();
+        directRequest.setRemoteAddr("203.0.113.7");
+
+        proxiedRequest = new MockHttpServletRequest();
+        proxiedRequest.setRemoteAddr("10.0.0.2");
+        proxiedRequest.addHeader("X-Forwarded-For", "198.51.100.23, 10.0.0.9, 10.0.0.2");
+    }
+
+    @Benchmark
+    public void validateUrl() {
+        urlService.validateUrl("https://www.example.com/articles/2024/10/some-long-slug?utm_source=newsletter");
+    }
+
+    @Benchmark
+    public String validateAndSanitizeCustomCode() {
+        return urlService.validateAndSanitizeCustomCode("  spring-sale_2024 ");
+    }
+
+    @Benchmark
+    public String getClientIpDirect() {
+        return urlService.getClientIp(directRequest);
+    }
+
+    @Benchmark
+    public String getClientIpForwarded() {
+        return urlService.getClientIp(proxiedRequest);
+    }
+}
@@ -0,0 +1,53 @@
+package com.adewunmi.urlshortener.service;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Device classification, which replaced the per-request determineDeviceType. Measures
+ * both the memoized lookup the click writer normally hits and the raw classification.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class UserAgentClassifierBenchmark {
+
+    @Param({
+            "Mozilla/5.0 (iPhone; CPU iPhone OS 17_0 like Mac OS X) AppleWebKit/605.1.15 (KHTML, like Gecko) Version/17.0 Mobile/15E148 Safari/604.1",
+            "Mozilla/5.0 (Windows NT 10.0; Win64; x64) AppleWebKit/537.36 (KHTML, like Gecko) Chrome/120.0.0.0 Safari/537.36 Edg/120.0.0.0",
+            "Googlebot/2.1 (+http://www.google.com/bot.html)"
+    })
+    public String userAgent;
+
+    private UserAgentClassifier classifier;
+
+    @Setup
+    public void setUp() {
+        classifier = new UserAgentClassifier(10_000);
+        classifier.classify(userAgent);
+    }
+
+    @Benchmark
+    public UserAgentClassifier.Classification classifyMemoized() {
+        return classifier.classify(userAgent);
+    }
+
+    @Benchmark
+    public UserAgentClassifier.Classification classifyUncached() {
+        return UserAgentClassifier.compute(userAgent);
+    }
+}
@@ -0,0 +1,34 @@
+package com.adewunmi.urlshortener.config;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+/**
+ * Creates the application's own long-running background threads (click writer, filter
+ * builder, backfills). Follows {@code spring.threads.virtual.enabled}, so with the
+ * "virtual" profile they run on virtual threads like request handling does; otherwise
+ * they are named daemon platform threads.
+ */
+@Component
+public class BackgroundThreadFactory {
+
+    private final boolean virtual;
+
+    public BackgroundThreadFactory(@Value("${spring.threads.virtual.enabled:false}") boolean virtual) {
+        this.virtual = virtual;
+    }
+
+    /**
+     * Returns an unstarted thread. Virtual threads are always daemon threads.
+     */
+    public Thread newThread(String name, Runnable task) {
+        if (virtual) {
+            return Thread.ofVirtual().name(name).unstarted(task);
+        }
+        return Thread.ofPlatform().name(name).daemon(true).unstarted(task);
+    }
+
+    public boolean isVirtual() {
+        return virtual;
+    }
+}
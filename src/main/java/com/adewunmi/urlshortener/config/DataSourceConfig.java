@@ -3,6 +3,7 @@ package com.adewunmi.urlshortener.config;
 import com.zaxxer.hikari.HikariConfig;
 import com.zaxxer.hikari.HikariDataSource;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 import org.springframework.context.annotation.Primary;
@@ -19,7 +20,7 @@ public class DataSourceConfig {
 
     @Bean
     @Primary
-    public DataSource dataSource() {
+    public DataSource dataSource(@Value("${db.pool.maximum-size:5}") int maximumPoolSize) {
         String databaseUrl = System.getenv("DATABASE_URL");
 
         log.info("=== Configuring DataSource ===");
@@ -57,9 +58,9 @@ public class DataSourceConfig {
             config.setPassword(password);
             config.setDriverClassName("org.postgresql.Driver");
 
-            // Optimized for Render free tier
-            config.setMaximumPoolSize(5);
-            config.setMinimumIdle(2);
+            // Defaults suit the Render free tier; raise DB_POOL_SIZE for the virtual profile
+            config.setMaximumPoolSize(maximumPoolSize);
+            config.setMinimumIdle(Math.min(2, maximumPoolSize));
             config.setConnectionTimeout(30000);
             config.setIdleTimeout(600000);
             config.setMaxLifetime(1800000);
@@ -1,6 +1,7 @@
 package com.adewunmi.urlshortener.controller;
 
 import com.adewunmi.urlshortener.service.CacheService;
+import com.adewunmi.urlshortener.service.CacheWarmingService;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.http.ResponseEntity;
@@ -24,6 +25,7 @@ public class HealthController {
 
     private final DataSource dataSource;
     private final CacheService cacheService;
+    private final CacheWarmingService cacheWarmingService;
 
     @GetMapping("/api/health")
     public ResponseEntity<Map<String, Object>> health() {
@@ -70,8 +72,15 @@ public class HealthController {
         // Check if application is ready to serve traffic
         try (Connection connection = dataSource.getConnection()) {
             if (connection.isValid(2)) {
-                response.put("status", "READY");
                 response.put("database", "connected");
+                response.put("cacheWarming", cacheWarmingService.getStatus());
+                if (cacheWarmingService.isHoldingReadiness()) {
+                    // Keep the load balancer away until the hot links are cached
+                    response.put("status", "NOT READY");
+                    response.put("reason", "Warming cache");
+                    return ResponseEntity.status(503).body(response);
+                }
+                response.put("status", "READY");
                 return ResponseEntity.ok(response);
             } else {
                 response.put("status", "NOT READY");
@@ -0,0 +1,74 @@
+package com.adewunmi.urlshortener.controller;
+
+import com.adewunmi.urlshortener.dto.LinkImportResult;
+import com.adewunmi.urlshortener.service.LinkTransferService;
+import com.adewunmi.urlshortener.service.LinkTransferService.Format;
+import jakarta.servlet.http.HttpServletRequest;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
+
+import java.io.BufferedOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+
+/**
+ * Bulk export and import of links, for migrations and backups.
+ */
+@RestController
+@RequestMapping("/api/admin/links")
+@RequiredArgsConstructor
+@Slf4j
+public class LinkTransferController {
+
+    private static final String NDJSON = "application/x-ndjson";
+    private static final String CSV = "text/csv";
+
+    private final LinkTransferService linkTransferService;
+
+    @GetMapping("/export")
+    public ResponseEntity<StreamingResponseBody> exportLinks(
+            @RequestParam(defaultValue = "ndjson") String format) {
+        Format exportFormat = Format.fromParameter(format);
+
+        StreamingResponseBody body = outputStream -> {
+            try {
+                long exported = linkTransferService.exportLinks(exportFormat,
+                        new BufferedOutputStream(outputStream, 64 * 1024));
+                log.info("Exported {} links as {}", exported, exportFormat);
+            } catch (UncheckedIOException e) {
+                // Client went away mid-stream; the read transaction has been rolled back
+                log.debug("Link export aborted: {}", e.getMessage());
+            }
+        };
+        return ResponseEntity.ok()
+                .contentType(MediaType.parseMediaType(exportFormat == Format.CSV ? CSV : NDJSON))
+                .header(HttpHeaders.CONTENT_DISPOSITION,
+                        "attachment; filename=\"urls." + exportFormat.name().toLowerCase() + "\"")
+                .body(body);
+    }
+
+    /**
+     * Imports an NDJSON export. Pass the {@code jobId} from an interrupted import, with the
+     * same file, to resume it.
+     */
+    @PostMapping(value = "/import", consumes = NDJSON)
+    public ResponseEntity<LinkImportResult> importNdjson(@RequestParam(required = false) String jobId,
+            HttpServletRequest request) throws IOException {
+        return ResponseEntity.ok(linkTransferService.importLinks(jobId, Format.NDJSON, request.getInputStream()));
+    }
+
+    @PostMapping(value = "/import", consumes = CSV)
+    public ResponseEntity<LinkImportResult> importCsv(@RequestParam(required = false) String jobId,
+            HttpServletRequest request) throws IOException {
+        return ResponseEntity.ok(linkTransferService.importLinks(jobId, Format.CSV, request.getInputStream()));
+    }
+}
@@ -1,46 +1,86 @@
 package com.adewunmi.urlshortener.controller;
 
+import com.adewunmi.urlshortener.service.CacheInvalidationBus;
+import com.adewunmi.urlshortener.service.CacheService;
+import com.adewunmi.urlshortener.service.CacheWarmingService;
+import com.adewunmi.urlshortener.service.ClickCountReconciliationService;
+import com.adewunmi.urlshortener.service.ClickIngestionService;
+import com.adewunmi.urlshortener.service.RateLimitService;
+import com.adewunmi.urlshortener.service.RedisKeyspaceService;
+import com.adewunmi.urlshortener.service.RollupBackfillService;
+import com.adewunmi.urlshortener.service.ShortCodeFilterService;
+import com.adewunmi.urlshortener.service.SingleFlightUrlLoader;
+import com.adewunmi.urlshortener.service.SnapshotStore;
 import org.springframework.beans.factory.annotation.Autowired;
-import org.springframework.data.redis.core.RedisTemplate;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PostMapping;
 import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestMethod;
+import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.RestController;
 
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
-import java.util.Set;
 
 @RestController
 @RequestMapping("/api/admin")
 public class PerformanceController {
 
-    @Autowired(required = false)
-    private RedisTemplate<String, Object> redisTemplate;
+    private static final List<RedisKeyspaceService.Namespace> DEFAULT_CLEAR_NAMESPACES =
+            List.of(RedisKeyspaceService.Namespace.MAPPINGS, RedisKeyspaceService.Namespace.STATS);
+
+    @Autowired
+    private CacheService cacheService;
+
+    @Autowired
+    private RedisKeyspaceService redisKeyspaceService;
+
+    @Autowired
+    private CacheInvalidationBus cacheInvalidationBus;
+
+    @Autowired
+    private CacheWarmingService cacheWarmingService;
+
+    @Autowired
+    private ClickIngestionService clickIngestionService;
+
+    @Autowired
+    private ShortCodeFilterService shortCodeFilterService;
+
+    @Autowired
+    private ClickCountReconciliationService clickCountReconciliationService;
+
+    @Autowired
+    private RollupBackfillService rollupBackfillService;
+
+    @Autowired
+    private RateLimitService rateLimitService;
+
+    @Autowired
+    private SingleFlightUrlLoader singleFlightUrlLoader;
+
+    @Autowired
+    private SnapshotStore snapshotStore;
 
     @GetMapping("/cache/stats")
     public ResponseEntity<Map<String, Object>> getCacheStats() {
         Map<String, Object> stats = new HashMap<>();
+        stats.put("localCache", cacheService.getLocalCacheStats());
+        stats.put("loads", singleFlightUrlLoader.getStats());
+        stats.put("invalidation", cacheInvalidationBus.getStats());
+        stats.put("snapshot", snapshotStore.getStats());
+        stats.put("cacheType", cacheService.isRedisEnabled() ? "redis" : "in-memory");
 
-        if (redisTemplate == null) {
+        if (!redisKeyspaceService.isAvailable()) {
             stats.put("status", "Redis not configured - using in-memory cache");
-            stats.put("cacheType", "in-memory");
             return ResponseEntity.ok(stats);
         }
 
         try {
-            // Get all keys
-            Set<String> urlKeys = redisTemplate.keys("url:mapping:*");
-            Set<String> statsKeys = redisTemplate.keys("url:stats:*");
-            Set<String> clickKeys = redisTemplate.keys("url:clicks:*");
-
-            stats.put("cachedUrls", urlKeys != null ? urlKeys.size() : 0);
-            stats.put("cachedStats", statsKeys != null ? statsKeys.size() : 0);
-            stats.put("clickCounters", clickKeys != null ? clickKeys.size() : 0);
-            stats.put("totalKeys", redisTemplate.keys("*").size());
+            stats.put("redis", redisKeyspaceService.getKeyspaceStats());
             stats.put("status", "healthy");
-            stats.put("cacheType", "redis");
-
         } catch (Exception e) {
             stats.put("status", "error");
             stats.put("error", e.getMessage());
@@ -50,21 +90,108 @@ public class PerformanceController {
         return ResponseEntity.ok(stats);
     }
 
-    @GetMapping("/cache/clear")
-    public ResponseEntity<String> clearCache() {
-        if (redisTemplate == null) {
-            return ResponseEntity.ok("In-memory cache cannot be manually cleared");
+    /**
+     * Clears the local tier of every node at once and removes the given Redis namespaces (by default the
+     * URL mappings and stats) in the background; poll {@code /cache/clear/status}.
+     */
+    @RequestMapping(value = "/cache/clear", method = { RequestMethod.GET, RequestMethod.POST })
+    public ResponseEntity<Map<String, Object>> clearCache(
+            @RequestParam(name = "namespace", required = false) List<String> namespaces) {
+        List<RedisKeyspaceService.Namespace> targets = namespaces == null || namespaces.isEmpty()
+                ? DEFAULT_CLEAR_NAMESPACES
+                : namespaces.stream().map(RedisKeyspaceService.Namespace::fromParameter).toList();
+        cacheInvalidationBus.flushLocalCaches();
+
+        if (!redisKeyspaceService.isAvailable()) {
+            Map<String, Object> result = new HashMap<>();
+            result.put("status", "In-memory cache cleared successfully");
+            return ResponseEntity.ok(result);
         }
-        
-        try {
-            Set<String> keys = redisTemplate.keys("*");
-            if (keys != null && !keys.isEmpty()) {
-                redisTemplate.delete(keys);
-            }
-            return ResponseEntity.ok("Cache cleared successfully");
-        } catch (Exception e) {
-            return ResponseEntity.internalServerError()
-                    .body("Failed to clear cache: " + e.getMessage());
+
+        boolean started = redisKeyspaceService.startClear(targets);
+        return ResponseEntity.status(started ? 202 : 409).body(redisKeyspaceService.getClearStatus());
+    }
+
+    /**
+     * Evicts the given short codes from Redis and from the local tier of every node, e.g.
+     * after a link's target was changed directly in the database.
+     */
+    @PostMapping("/cache/invalidate")
+    public ResponseEntity<Map<String, Object>> invalidateCache(@RequestParam("shortCode") List<String> shortCodes) {
+        shortCodes.forEach(cacheInvalidationBus::invalidate);
+        Map<String, Object> result = new HashMap<>();
+        result.put("invalidated", shortCodes.size());
+        result.put("bus", cacheInvalidationBus.getStats());
+        return ResponseEntity.ok(result);
+    }
+
+    @GetMapping("/cache/clear/status")
+    public ResponseEntity<Map<String, Object>> getCacheClearStatus() {
+        return ResponseEntity.ok(redisKeyspaceService.getClearStatus());
+    }
+
+    @PostMapping("/cache/warm")
+    public ResponseEntity<Map<String, Object>> startCacheWarming() {
+        boolean started = cacheWarmingService.start();
+        return ResponseEntity.status(started ? 202 : 409).body(cacheWarmingService.getStatus());
+    }
+
+    @GetMapping("/cache/warm")
+    public ResponseEntity<Map<String, Object>> getCacheWarmingStatus() {
+        return ResponseEntity.ok(cacheWarmingService.getStatus());
+    }
+
+    @GetMapping("/clicks/stats")
+    public ResponseEntity<Map<String, Object>> getClickIngestionStats() {
+        return ResponseEntity.ok(clickIngestionService.getStats());
+    }
+
+    @PostMapping("/clicks/reconcile")
+    public ResponseEntity<Map<String, Object>> reconcileClickCounts() {
+        long corrected = clickCountReconciliationService.reconcile();
+        Map<String, Object> result = new HashMap<>();
+        if (corrected < 0) {
+            result.put("status", "already running");
+            return ResponseEntity.status(409).body(result);
         }
+        result.put("status", "completed");
+        result.put("correctedUrls", corrected);
+        return ResponseEntity.ok(result);
+    }
+
+    @PostMapping("/rollups/backfill")
+    public ResponseEntity<Map<String, Object>> startRollupBackfill() {
+        boolean started = rollupBackfillService.start();
+        return ResponseEntity.status(started ? 202 : 409).body(rollupBackfillService.getStatus());
+    }
+
+    @GetMapping("/rollups/backfill")
+    public ResponseEntity<Map<String, Object>> getRollupBackfillStatus() {
+        return ResponseEntity.ok(rollupBackfillService.getStatus());
+    }
+
+    @GetMapping("/shortcodes/filter/stats")
+    public ResponseEntity<Map<String, Object>> getShortCodeFilterStats() {
+        return ResponseEntity.ok(shortCodeFilterService.getStats());
+    }
+
+    /**
+     * Rebuilds this node's mapping snapshot from the database in the background instead of
+     * waiting for the schedule, e.g. after bulk changes.
+     */
+    @PostMapping("/snapshot/rebuild")
+    public ResponseEntity<Map<String, Object>> rebuildSnapshot() {
+        snapshotStore.requestRebuild();
+        return ResponseEntity.accepted().body(snapshotStore.getStats());
+    }
+
+    @GetMapping("/snapshot/stats")
+    public ResponseEntity<Map<String, Object>> getSnapshotStats() {
+        return ResponseEntity.ok(snapshotStore.getStats());
+    }
+
+    @GetMapping("/ratelimit/stats")
+    public ResponseEntity<Map<String, Object>> getRateLimitStats() {
+        return ResponseEntity.ok(rateLimitService.getStats());
     }
-}
\ No newline at end of file
+}
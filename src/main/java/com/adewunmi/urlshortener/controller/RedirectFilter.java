@@ -0,0 +1,119 @@
+package com.adewunmi.urlshortener.controller;
+
+import com.adewunmi.urlshortener.exception.ErrorResponse;
+import com.adewunmi.urlshortener.service.RateLimitService;
+import com.adewunmi.urlshortener.service.UrlService;
+import jakarta.servlet.FilterChain;
+import jakarta.servlet.ServletException;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.core.Ordered;
+import org.springframework.core.annotation.Order;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.stereotype.Component;
+import org.springframework.web.filter.OncePerRequestFilter;
+import tools.jackson.databind.ObjectMapper;
+
+import java.io.IOException;
+import java.time.LocalDateTime;
+import java.util.Set;
+
+/**
+ * Serves {@code GET /{shortCode}} ahead of Spring MVC and Spring Security. The Location
+ * header is written directly: no handler mapping, no {@code RedirectView}, no transaction,
+ * and missing or expired links are answered from result values instead of exceptions.
+ * Ordered after the observation filter, so redirects still show up in http.server.requests.
+ */
+@Component
+@Order(Ordered.HIGHEST_PRECEDENCE + 10)
+@RequiredArgsConstructor
+@Slf4j
+public class RedirectFilter extends OncePerRequestFilter {
+
+    // Single-segment paths that belong to other handlers
+    private static final Set<String> PASS_THROUGH = Set.of("actuator", "error");
+
+    // Security used to add these to every response; keep them so browsers do not cache
+    // the redirect and skip counting repeat visits
+    private static final String NO_STORE = "no-cache, no-store, max-age=0, must-revalidate";
+
+    private final UrlService urlService;
+    private final RateLimitService rateLimitService;
+    private final ObjectMapper objectMapper;
+
+    @Override
+    protected boolean shouldNotFilter(HttpServletRequest request) {
+        String method = request.getMethod();
+        if (!"GET".equals(method) && !"HEAD".equals(method)) {
+            return true;
+        }
+        String path = request.getRequestURI().substring(request.getContextPath().length());
+        return path.length() < 2 || path.indexOf('/', 1) >= 0 || PASS_THROUGH.contains(path.substring(1));
+    }
+
+    @Override
+    protected boolean shouldNotFilterAsyncDispatch() {
+        return true;
+    }
+
+    @Override
+    protected boolean shouldNotFilterErrorDispatch() {
+        return true;
+    }
+
+    @Override
+    protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain chain)
+            throws ServletException, IOException {
+        String shortCode = request.getRequestURI().substring(request.getContextPath().length() + 1);
+
+        String clientIp = urlService.getClientIp(request);
+        if (!rateLimitService.allowRedirectRequest(clientIp)) {
+            writeError(response, HttpStatus.TOO_MANY_REQUESTS, "Too many requests. Please slow down.");
+            return;
+        }
+
+        // Codes only use URL-safe characters, so anything else (including percent-encoding)
+        // cannot exist and is not worth a lookup
+        UrlService.Resolution resolution = isCodeSyntax(shortCode)
+                ? urlService.resolve(shortCode, request)
+                : UrlService.Resolution.NOT_FOUND;
+
+        switch (resolution.status()) {
+            case FOUND -> {
+                response.setStatus(resolution.target().getRedirectType().getStatusCode());
+                response.setHeader(HttpHeaders.LOCATION, resolution.target().getOriginalUrl());
+                response.setHeader(HttpHeaders.CACHE_CONTROL, NO_STORE);
+            }
+            case NOT_FOUND -> writeError(response, HttpStatus.NOT_FOUND,
+                    "Short code '" + shortCode + "' not found");
+            case EXPIRED -> writeError(response, HttpStatus.GONE, "This short URL has expired");
+        }
+    }
+
+    private static boolean isCodeSyntax(String value) {
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            if (!(c >= 'a' && c <= 'z') && !(c >= 'A' && c <= 'Z') && !(c >= '0' && c <= '9')
+                    && c != '-' && c != '_') {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private void writeError(HttpServletResponse response, HttpStatus status, String message) throws IOException {
+        ErrorResponse body = ErrorResponse.builder()
+                .timestamp(LocalDateTime.now())
+                .status(status.value())
+                .error(status.getReasonPhrase())
+                .message(message)
+                .build();
+        response.setStatus(status.value());
+        response.setContentType(MediaType.APPLICATION_JSON_VALUE);
+        objectMapper.writeValue(response.getOutputStream(), body);
+    }
+}
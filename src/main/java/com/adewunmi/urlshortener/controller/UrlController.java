@@ -1,22 +1,40 @@
 package com.adewunmi.urlshortener.controller;
 
+import com.adewunmi.urlshortener.dto.BatchShortenResult;
 import com.adewunmi.urlshortener.dto.ShortenUrlRequest;
 import com.adewunmi.urlshortener.dto.ShortenUrlResponse;
 import com.adewunmi.urlshortener.dto.UrlListResponse;
+import com.adewunmi.urlshortener.dto.UrlPage;
+import com.adewunmi.urlshortener.dto.UrlPageCursor;
 import com.adewunmi.urlshortener.dto.UrlStatsResponse;
 import com.adewunmi.urlshortener.service.AnalyticsService;
+import com.adewunmi.urlshortener.service.BatchShortenService;
+import com.adewunmi.urlshortener.service.RateLimitOperation;
 import com.adewunmi.urlshortener.service.RateLimitService;
 import com.adewunmi.urlshortener.service.UrlService;
 
 import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
 import jakarta.validation.Valid;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
-import org.springframework.web.servlet.view.RedirectView;
-
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
+import tools.jackson.core.JacksonException;
+import tools.jackson.databind.ObjectMapper;
+
+import java.io.BufferedOutputStream;
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
 import java.util.List;
 
 @RestController
@@ -27,6 +45,14 @@ public class UrlController {
     private final UrlService urlService;
     private final AnalyticsService analyticsService;
     private final RateLimitService rateLimitService;
+    private final BatchShortenService batchShortenService;
+    private final ObjectMapper objectMapper;
+
+    @Value("${shorten.batch.max-items:10000}")
+    private int maxBatchItems;
+
+    private static final String NDJSON = "application/x-ndjson";
+    private static final String NEXT_CURSOR_HEADER = "X-Next-Cursor";
 
     @PostMapping("/api/shorten")
     public ResponseEntity<?> shortenUrl(
@@ -46,7 +72,7 @@ public class UrlController {
             ShortenUrlResponse response = urlService.shortenUrl(request);
 
             // Add rate limit headers
-            long remaining = rateLimitService.getRemainingTokens(clientIp, "shorten");
+            long remaining = rateLimitService.getRemainingTokens(clientIp, RateLimitOperation.SHORTEN);
             return ResponseEntity.status(HttpStatus.CREATED)
                     .header("X-RateLimit-Remaining", String.valueOf(remaining))
                     .body(response);
@@ -56,27 +82,92 @@ public class UrlController {
         }
     }
 
-    @GetMapping("/{shortCode}")
-    public RedirectView redirect(@PathVariable String shortCode,
-            HttpServletRequest request) {
+    /**
+     * Shortens a JSON array of requests. Results come back in request order, one per item.
+     */
+    @PostMapping(value = "/api/shorten/batch", consumes = MediaType.APPLICATION_JSON_VALUE)
+    public ResponseEntity<List<BatchShortenResult>> shortenBatch(
+            @RequestBody List<ShortenUrlRequest> requests,
+            HttpServletRequest httpRequest) {
+        if (requests.size() > maxBatchItems) {
+            throw new IllegalArgumentException("Batch exceeds " + maxBatchItems
+                    + " items; send larger batches as NDJSON");
+        }
 
-        String clientIp = getClientIp(request);
+        String clientIp = getClientIp(httpRequest);
+        int chunkSize = batchShortenService.getChunkSize();
+        List<BatchShortenResult> results = new ArrayList<>(requests.size());
+        for (int from = 0; from < requests.size(); from += chunkSize) {
+            List<ShortenUrlRequest> chunk = requests.subList(from, Math.min(from + chunkSize, requests.size()));
+            results.addAll(shortenChunk(clientIp, chunk, from));
+        }
+        return ResponseEntity.ok(results);
+    }
 
-        // Check rate limit
-        if (!rateLimitService.allowRedirectRequest(clientIp)) {
-            log.warn("Rate limit exceeded for redirects from IP: {}", clientIp);
-            throw new IllegalArgumentException("Too many requests. Please slow down.");
+    /**
+     * Shortens a stream of newline-delimited JSON requests, chunk by chunk as they are read,
+     * writing NDJSON results back as each chunk completes. Batch size is unbounded.
+     */
+    @PostMapping(value = "/api/shorten/batch", consumes = NDJSON)
+    public void shortenBatchStream(HttpServletRequest httpRequest, HttpServletResponse response)
+            throws IOException {
+        String clientIp = getClientIp(httpRequest);
+        int chunkSize = batchShortenService.getChunkSize();
+
+        response.setStatus(HttpStatus.OK.value());
+        response.setContentType(NDJSON);
+        BufferedReader reader = new BufferedReader(
+                new InputStreamReader(httpRequest.getInputStream(), StandardCharsets.UTF_8));
+        OutputStream out = new BufferedOutputStream(response.getOutputStream());
+
+        List<ShortenUrlRequest> chunk = new ArrayList<>(chunkSize);
+        int firstIndex = 0;
+        String line;
+        while ((line = reader.readLine()) != null) {
+            if (line.isBlank()) {
+                continue;
+            }
+            chunk.add(parseBatchItem(line));
+            if (chunk.size() == chunkSize) {
+                writeNdjson(out, shortenChunk(clientIp, chunk, firstIndex));
+                firstIndex += chunk.size();
+                chunk.clear();
+            }
         }
+        if (!chunk.isEmpty()) {
+            writeNdjson(out, shortenChunk(clientIp, chunk, firstIndex));
+        }
+        out.flush();
+    }
 
+    private List<BatchShortenResult> shortenChunk(String clientIp, List<ShortenUrlRequest> chunk, int firstIndex) {
+        if (!rateLimitService.allowShortenBatch(clientIp, chunk.size())) {
+            List<BatchShortenResult> limited = new ArrayList<>(chunk.size());
+            for (int i = 0; i < chunk.size(); i++) {
+                ShortenUrlRequest request = chunk.get(i);
+                limited.add(BatchShortenResult.error(firstIndex + i, BatchShortenResult.Status.RATE_LIMITED,
+                        request != null ? request.getUrl() : null, "Rate limit exceeded. Please try again later."));
+            }
+            return limited;
+        }
+        return batchShortenService.shortenChunk(chunk, firstIndex);
+    }
+
+    // Unparseable lines become null items, reported as INVALID in their position
+    private ShortenUrlRequest parseBatchItem(String line) {
         try {
-            String originalUrl = urlService.getOriginalUrl(shortCode, request);
-            RedirectView redirectView = new RedirectView(originalUrl);
-            redirectView.setStatusCode(HttpStatus.MOVED_PERMANENTLY);
-            return redirectView;
-        } catch (IllegalArgumentException e) {
-            log.warn("Short code not found or error: {}", e.getMessage());
-            throw e;
+            return objectMapper.readValue(line, ShortenUrlRequest.class);
+        } catch (JacksonException e) {
+            return null;
+        }
+    }
+
+    private void writeNdjson(OutputStream out, List<BatchShortenResult> results) throws IOException {
+        for (BatchShortenResult result : results) {
+            out.write(objectMapper.writeValueAsBytes(result));
+            out.write('\n');
         }
+        out.flush();
     }
 
     @GetMapping("/api/stats/{shortCode}")
@@ -91,9 +182,51 @@ public class UrlController {
     }
 
     @GetMapping("/api/urls")
-    public ResponseEntity<List<UrlListResponse>> getAllUrls() {
-        List<UrlListResponse> urls = analyticsService.getAllUrls();
-        return ResponseEntity.ok(urls);
+    public ResponseEntity<List<UrlListResponse>> getAllUrls(
+            @RequestParam(defaultValue = "50") int limit,
+            @RequestParam(required = false) String cursor) {
+        UrlPage page = analyticsService.getUrlPage(decodeCursor(cursor), limit);
+
+        ResponseEntity.BodyBuilder response = ResponseEntity.ok();
+        if (page.getNextCursor() != null) {
+            response.header(NEXT_CURSOR_HEADER, page.getNextCursor().encode());
+        }
+        return response.body(page.getItems());
+    }
+
+    /**
+     * Streams every url (from the cursor onwards, if given) as newline-delimited JSON.
+     */
+    @GetMapping(value = "/api/urls", produces = NDJSON)
+    public ResponseEntity<StreamingResponseBody> streamAllUrls(
+            @RequestParam(required = false) String cursor) {
+        UrlPageCursor after = decodeCursor(cursor);
+
+        StreamingResponseBody body = outputStream -> {
+            OutputStream out = new BufferedOutputStream(outputStream);
+            try {
+                analyticsService.streamUrls(after, row -> {
+                    try {
+                        out.write(objectMapper.writeValueAsBytes(row));
+                        out.write('\n');
+                    } catch (IOException e) {
+                        throw new UncheckedIOException(e);
+                    }
+                });
+            } catch (UncheckedIOException e) {
+                // Client went away mid-stream; the read transaction has been rolled back
+                log.debug("URL stream aborted: {}", e.getMessage());
+                return;
+            }
+            out.flush();
+        };
+        return ResponseEntity.ok()
+                .contentType(MediaType.parseMediaType(NDJSON))
+                .body(body);
+    }
+
+    private static UrlPageCursor decodeCursor(String cursor) {
+        return cursor == null || cursor.isEmpty() ? null : UrlPageCursor.decode(cursor);
     }
 
     private String getClientIp(HttpServletRequest request) {
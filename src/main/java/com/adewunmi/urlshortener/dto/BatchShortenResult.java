@@ -0,0 +1,37 @@
+package com.adewunmi.urlshortener.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * Outcome for one item of a batch shorten request. {@code index} is the item's position
+ * in the request (0-based); results are returned in request order.
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class BatchShortenResult {
+
+    public enum Status {
+        CREATED,
+        /** The URL already had a link (or appeared earlier in the same batch) */
+        EXISTING,
+        INVALID,
+        /** The requested custom code belongs to another URL */
+        CONFLICT,
+        RATE_LIMITED,
+        FAILED
+    }
+
+    private int index;
+    private Status status;
+    private String originalUrl;
+    private String shortCode;
+    private String shortUrl;
+    private String error;
+
+    public static BatchShortenResult error(int index, Status status, String originalUrl, String error) {
+        return new BatchShortenResult(index, status, originalUrl, null, null, error);
+    }
+}
@@ -0,0 +1,71 @@
+package com.adewunmi.urlshortener.dto;
+
+import com.adewunmi.urlshortener.entity.RedirectType;
+import com.adewunmi.urlshortener.entity.Url;
+import lombok.Value;
+
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+
+/**
+ * Everything a redirect needs to know about a link, so a cache hit never has to go back
+ * to the database. Stored in Redis as a compact pipe-delimited string.
+ */
+@Value
+public class CachedUrl {
+    long urlId;
+    String originalUrl;
+    LocalDateTime expiresAt;
+    RedirectType redirectType;
+
+    private static final char SEPARATOR = '|';
+    private static final long NO_EXPIRY = -1;
+
+    public static CachedUrl from(Url url) {
+        return new CachedUrl(
+                url.getId(),
+                url.getOriginalUrl(),
+                url.getExpiresAt(),
+                url.getRedirectType() != null ? url.getRedirectType() : RedirectType.PERMANENT);
+    }
+
+    public boolean isExpired(LocalDateTime now) {
+        return expiresAt != null && expiresAt.isBefore(now);
+    }
+
+    /**
+     * Format: {@code urlId|expiresAtEpochSecond|statusCode|originalUrl}. The URL goes last so
+     * it may itself contain the separator.
+     */
+    public String encode() {
+        long expiry = expiresAt != null ? expiresAt.toEpochSecond(ZoneOffset.UTC) : NO_EXPIRY;
+        return String.valueOf(urlId) + SEPARATOR + expiry + SEPARATOR
+                + redirectType.getStatusCode() + SEPARATOR + originalUrl;
+    }
+
+    /**
+     * Returns null for values that are not in the encoded format (e.g. bare URLs written
+     * by older versions), which callers treat as a cache miss.
+     */
+    public static CachedUrl decode(String value) {
+        int first = value.indexOf(SEPARATOR);
+        int second = first < 0 ? -1 : value.indexOf(SEPARATOR, first + 1);
+        int third = second < 0 ? -1 : value.indexOf(SEPARATOR, second + 1);
+        if (third < 0) {
+            return null;
+        }
+
+        try {
+            long urlId = Long.parseLong(value, 0, first, 10);
+            long expiry = Long.parseLong(value, first + 1, second, 10);
+            int statusCode = Integer.parseInt(value, second + 1, third, 10);
+            return new CachedUrl(
+                    urlId,
+                    value.substring(third + 1),
+                    expiry == NO_EXPIRY ? null : LocalDateTime.ofEpochSecond(expiry, 0, ZoneOffset.UTC),
+                    RedirectType.fromStatusCode(statusCode));
+        } catch (NumberFormatException e) {
+            return null;
+        }
+    }
+}
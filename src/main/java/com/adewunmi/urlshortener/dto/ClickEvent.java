@@ -0,0 +1,18 @@
+package com.adewunmi.urlshortener.dto;
+
+import lombok.Value;
+
+import java.time.LocalDateTime;
+
+/**
+ * A click captured on the redirect path, queued for asynchronous persistence.
+ */
+@Value
+public class ClickEvent {
+    long urlId;
+    String shortCode;
+    LocalDateTime clickedAt;
+    String ipAddress;
+    String userAgent;
+    String referrer;
+}
@@ -8,6 +8,6 @@ import lombok.NoArgsConstructor;
 @NoArgsConstructor
 @AllArgsConstructor
 public class DeviceStatsDto {
-    private String deviceType; // "Mobile", "Desktop", "Tablet", "Unknown"
+    private String deviceType; // "Mobile", "Desktop", "Tablet", "Bot", "Unknown"
     private Long clicks;
 }
\ No newline at end of file
@@ -0,0 +1,16 @@
+package com.adewunmi.urlshortener.dto;
+
+import lombok.Data;
+
+@Data
+public class LinkImportResult {
+    private String jobId;
+    private String method;
+    private long resumedFrom;
+    private long rowsRead;
+    private long inserted;
+    private long duplicates;
+    private long rejected;
+    private long cached;
+    private long durationMs;
+}
@@ -0,0 +1,44 @@
+package com.adewunmi.urlshortener.dto;
+
+import com.adewunmi.urlshortener.entity.RedirectType;
+import com.adewunmi.urlshortener.util.Csv;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDateTime;
+
+/**
+ * One link as it appears in an export file, and as it is read back on import. Database
+ * ids and digests are deliberately left out: the target assigns its own.
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class LinkRecord {
+
+    // Column order of CSV exports, and of the PostgreSQL COPY used on import
+    public static final String CSV_HEADER = "short_code,original_url,redirect_type,created_at,expires_at,click_count";
+
+    private String shortCode;
+    private String originalUrl;
+    private RedirectType redirectType;
+    private LocalDateTime createdAt;
+    private LocalDateTime expiresAt;
+    private Long clickCount;
+
+    public void appendCsv(StringBuilder line) {
+        Csv.appendField(line, shortCode);
+        line.append(',');
+        Csv.appendField(line, originalUrl);
+        line.append(',');
+        Csv.appendField(line, redirectType != null ? redirectType.name() : null);
+        line.append(',');
+        Csv.appendField(line, createdAt != null ? createdAt.toString() : null);
+        line.append(',');
+        Csv.appendField(line, expiresAt != null ? expiresAt.toString() : null);
+        line.append(',');
+        Csv.appendField(line, clickCount != null ? clickCount.toString() : null);
+        line.append('\n');
+    }
+}
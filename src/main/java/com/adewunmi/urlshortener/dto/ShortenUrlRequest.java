@@ -1,5 +1,6 @@
 package com.adewunmi.urlshortener.dto;
 
+import com.adewunmi.urlshortener.entity.RedirectType;
 import jakarta.validation.constraints.NotBlank;
 import jakarta.validation.constraints.Pattern;
 import lombok.Data;
@@ -12,4 +13,6 @@ public class ShortenUrlRequest {
     private String url;
 
     private String customCode; // Optional: for custom short codes
+
+    private RedirectType redirectType; // Optional: PERMANENT (301, default) or TEMPORARY (302)
 }
@@ -0,0 +1,12 @@
+package com.adewunmi.urlshortener.dto;
+
+import lombok.Value;
+
+import java.util.List;
+
+@Value
+public class UrlPage {
+    List<UrlListResponse> items;
+    // Null when this is the last page
+    UrlPageCursor nextCursor;
+}
@@ -0,0 +1,14 @@
+package com.adewunmi.urlshortener.entity;
+
+/**
+ * Browser family derived from the User-Agent. Persisted by ordinal, so only append new constants.
+ */
+public enum BrowserFamily {
+    UNKNOWN,
+    CHROME,
+    FIREFOX,
+    SAFARI,
+    EDGE,
+    OPERA,
+    INTERNET_EXPLORER
+}
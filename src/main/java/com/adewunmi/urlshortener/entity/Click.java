@@ -37,6 +37,16 @@ public class Click {
     @Column(columnDefinition = "TEXT")
     private String referrer;
 
+    // Classified once at ingest; null for clicks recorded before classification existed
+    @Enumerated(EnumType.ORDINAL)
+    private DeviceType deviceType;
+
+    @Enumerated(EnumType.ORDINAL)
+    private BrowserFamily browser;
+
+    @Enumerated(EnumType.ORDINAL)
+    private OsFamily os;
+
     @PrePersist
     protected void onCreate() {
         clickedAt = LocalDateTime.now();
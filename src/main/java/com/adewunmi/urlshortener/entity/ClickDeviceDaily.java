@@ -0,0 +1,37 @@
+package com.adewunmi.urlshortener.entity;
+
+import jakarta.persistence.*;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDate;
+
+/**
+ * Clicks per url, day and device class. Maintained incrementally by the click writer.
+ */
+@Entity
+@Table(name = "click_device_daily", uniqueConstraints = {
+        @UniqueConstraint(name = "uk_click_device_daily", columnNames = { "url_id", "day", "device_type" })
+})
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class ClickDeviceDaily {
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    @Column(name = "url_id", nullable = false)
+    private Long urlId;
+
+    @Column(nullable = false)
+    private LocalDate day;
+
+    @Column(name = "device_type", nullable = false, length = 16)
+    private String deviceType;
+
+    @Column(nullable = false)
+    private Long clicks;
+}
@@ -0,0 +1,39 @@
+package com.adewunmi.urlshortener.entity;
+
+import jakarta.persistence.*;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDate;
+
+/**
+ * Clicks per url, day and referrer. Maintained incrementally by the click writer.
+ */
+@Entity
+@Table(name = "click_referrer_daily", uniqueConstraints = {
+        @UniqueConstraint(name = "uk_click_referrer_daily", columnNames = { "url_id", "day", "referrer" })
+})
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class ClickReferrerDaily {
+
+    public static final int MAX_REFERRER_LENGTH = 512;
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    @Column(name = "url_id", nullable = false)
+    private Long urlId;
+
+    @Column(nullable = false)
+    private LocalDate day;
+
+    @Column(nullable = false, length = MAX_REFERRER_LENGTH)
+    private String referrer;
+
+    @Column(nullable = false)
+    private Long clicks;
+}
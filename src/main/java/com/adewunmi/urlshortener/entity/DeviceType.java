@@ -0,0 +1,22 @@
+package com.adewunmi.urlshortener.entity;
+
+/**
+ * Device class derived from the User-Agent. Persisted by ordinal, so only append new constants.
+ */
+public enum DeviceType {
+    UNKNOWN("Unknown"),
+    MOBILE("Mobile"),
+    TABLET("Tablet"),
+    DESKTOP("Desktop"),
+    BOT("Bot");
+
+    private final String displayName;
+
+    DeviceType(String displayName) {
+        this.displayName = displayName;
+    }
+
+    public String getDisplayName() {
+        return displayName;
+    }
+}
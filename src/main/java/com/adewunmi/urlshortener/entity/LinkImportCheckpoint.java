@@ -0,0 +1,39 @@
+package com.adewunmi.urlshortener.entity;
+
+import jakarta.persistence.Column;
+import jakarta.persistence.Entity;
+import jakarta.persistence.Id;
+import jakarta.persistence.Table;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDateTime;
+
+/**
+ * Progress of a link import, committed together with each chunk of rows so an
+ * interrupted import can be resumed by sending the same file with the same job id.
+ */
+@Entity
+@Table(name = "link_import_checkpoints")
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class LinkImportCheckpoint {
+
+    public static final int MAX_JOB_ID_LENGTH = 64;
+
+    @Id
+    @Column(name = "job_id", length = MAX_JOB_ID_LENGTH)
+    private String jobId;
+
+    // Input rows consumed so far, including rejected ones
+    @Column(name = "rows_committed", nullable = false)
+    private Long rowsCommitted;
+
+    @Column(name = "rows_inserted", nullable = false)
+    private Long rowsInserted;
+
+    @Column(name = "updated_at", nullable = false)
+    private LocalDateTime updatedAt;
+}
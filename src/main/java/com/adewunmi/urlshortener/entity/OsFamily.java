@@ -0,0 +1,14 @@
+package com.adewunmi.urlshortener.entity;
+
+/**
+ * Operating system family derived from the User-Agent. Persisted by ordinal, so only append new constants.
+ */
+public enum OsFamily {
+    UNKNOWN,
+    WINDOWS,
+    MACOS,
+    IOS,
+    ANDROID,
+    LINUX,
+    CHROME_OS
+}
@@ -0,0 +1,20 @@
+package com.adewunmi.urlshortener.entity;
+
+public enum RedirectType {
+    PERMANENT(301),
+    TEMPORARY(302);
+
+    private final int statusCode;
+
+    RedirectType(int statusCode) {
+        this.statusCode = statusCode;
+    }
+
+    public int getStatusCode() {
+        return statusCode;
+    }
+
+    public static RedirectType fromStatusCode(int statusCode) {
+        return statusCode == TEMPORARY.statusCode ? TEMPORARY : PERMANENT;
+    }
+}
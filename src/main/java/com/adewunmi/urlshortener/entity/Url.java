@@ -10,8 +10,8 @@ import java.util.List;
 @Entity
 @Table(name = "urls", indexes = {
         @Index(name = "idx_short_code", columnList = "shortCode", unique = true),
-        @Index(name = "idx_original_url", columnList = "originalUrl"),
-        @Index(name = "idx_created_at", columnList = "createdAt")
+        @Index(name = "idx_url_hash", columnList = "urlHash", unique = true),
+        @Index(name = "idx_created_at_id", columnList = "createdAt, id")
 })
 @Data
 @NoArgsConstructor
@@ -25,6 +25,10 @@ public class Url {
     @Column(nullable = false, columnDefinition = "TEXT")
     private String originalUrl;
 
+    // SHA-256 of originalUrl; the dedup key. Null only for duplicate rows created before dedup used it
+    @Column(columnDefinition = "bytea", updatable = false)
+    private byte[] urlHash;
+
     @Column(nullable = false, unique = true, length = 10)
     private String shortCode;
 
@@ -33,11 +37,22 @@ public class Url {
 
     private LocalDateTime expiresAt;
 
+    @Enumerated(EnumType.STRING)
+    @Column(length = 16)
+    private RedirectType redirectType;
+
+    // Maintained by the click writer so reads never have to COUNT(*) the clicks table
+    @Column(nullable = false, columnDefinition = "bigint default 0")
+    private Long clickCount = 0L;
+
     @OneToMany(mappedBy = "url", cascade = CascadeType.ALL)
     private List<Click> clicks;
 
     @PrePersist
     protected void onCreate() {
         createdAt = LocalDateTime.now();
+        if (clickCount == null) {
+            clickCount = 0L;
+        }
     }
 }
\ No newline at end of file
@@ -1,7 +0,0 @@
-package com.adewunmi.urlshortener.exception;
-
-public class UrlNotFoundException extends RuntimeException {
-    public UrlNotFoundException(String message) {
-        super(message);
-    }
-}
\ No newline at end of file
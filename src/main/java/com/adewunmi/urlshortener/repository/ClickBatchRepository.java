@@ -0,0 +1,233 @@
+package com.adewunmi.urlshortener.repository;
+
+import com.adewunmi.urlshortener.dto.ClickEvent;
+import com.adewunmi.urlshortener.entity.ClickReferrerDaily;
+import com.adewunmi.urlshortener.entity.DeviceType;
+import com.adewunmi.urlshortener.service.UserAgentClassifier;
+import lombok.RequiredArgsConstructor;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.sql.Date;
+import java.sql.Timestamp;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * JDBC access for bulk click ingestion. Spring Data's save() issues one INSERT per
+ * entity, so batches are written here as multi-row statements instead.
+ */
+@Repository
+@RequiredArgsConstructor
+public class ClickBatchRepository {
+
+    private static final int COLUMNS_PER_ROW = 8;
+    // PostgreSQL allows at most 32767 bind parameters per statement
+    private static final int MAX_ROWS_PER_INSERT = Short.MAX_VALUE / COLUMNS_PER_ROW;
+    private static final String INSERT_CLICKS =
+            "INSERT INTO clicks (url_id, clicked_at, ip_address, user_agent, referrer, device_type, browser, os) VALUES ";
+    private static final DeviceType[] DEVICE_TYPES = DeviceType.values();
+    private static final String DIRECT_REFERRER = "Direct";
+
+    private static final String UPSERT_REFERRER_DAILY =
+            "INSERT INTO click_referrer_daily (url_id, day, referrer, clicks) VALUES (?,?,?,?) "
+                    + "ON CONFLICT (url_id, day, referrer) "
+                    + "DO UPDATE SET clicks = click_referrer_daily.clicks + EXCLUDED.clicks";
+
+    private static final String UPSERT_DEVICE_DAILY =
+            "INSERT INTO click_device_daily (url_id, day, device_type, clicks) VALUES (?,?,?,?) "
+                    + "ON CONFLICT (url_id, day, device_type) "
+                    + "DO UPDATE SET clicks = click_device_daily.clicks + EXCLUDED.clicks";
+
+    // Rollup keys are sorted before upserting so concurrent writers lock rows in the same order
+    private static final Comparator<RollupKey> ROLLUP_ORDER = Comparator.comparingLong(RollupKey::urlId)
+            .thenComparing(RollupKey::day)
+            .thenComparing(RollupKey::dimension);
+
+    private record RollupKey(long urlId, LocalDate day, String dimension) {
+    }
+
+    private final JdbcTemplate jdbcTemplate;
+    private final UserAgentClassifier userAgentClassifier;
+
+    /**
+     * Inserts the given clicks with one multi-row statement per {@value #MAX_ROWS_PER_INSERT}
+     * rows and bumps the per-URL click totals and daily rollups in the same transaction.
+     *
+     * @return the number of rows inserted
+     */
+    @Transactional
+    public int insertBatch(List<ClickEvent> events) {
+        if (events.isEmpty()) {
+            return 0;
+        }
+
+        // Sorted by id so concurrent writers on other nodes lock urls rows in the same order
+        Map<Long, Long> countsByUrlId = new TreeMap<>();
+        Map<RollupKey, Long> referrerCounts = new TreeMap<>(ROLLUP_ORDER);
+        Map<RollupKey, Long> deviceCounts = new TreeMap<>(ROLLUP_ORDER);
+        int inserted = 0;
+        for (int from = 0; from < events.size(); from += MAX_ROWS_PER_INSERT) {
+            inserted += insertClicks(events.subList(from, Math.min(from + MAX_ROWS_PER_INSERT, events.size())),
+                    countsByUrlId, referrerCounts, deviceCounts);
+        }
+
+        // urls rows are locked before the rollups so rebuildRollups() can serialize against us
+        incrementClickCounts(countsByUrlId);
+        upsertRollups(UPSERT_REFERRER_DAILY, referrerCounts);
+        upsertRollups(UPSERT_DEVICE_DAILY, deviceCounts);
+        return inserted;
+    }
+
+    private int insertClicks(List<ClickEvent> events, Map<Long, Long> countsByUrlId,
+            Map<RollupKey, Long> referrerCounts, Map<RollupKey, Long> deviceCounts) {
+        StringBuilder sql = new StringBuilder(INSERT_CLICKS);
+        Object[] args = new Object[events.size() * COLUMNS_PER_ROW];
+        int i = 0;
+
+        for (ClickEvent event : events) {
+            if (i > 0) {
+                sql.append(',');
+            }
+            UserAgentClassifier.Classification classification = userAgentClassifier.classify(event.getUserAgent());
+
+            sql.append("(?,?,?,?,?,?,?,?)");
+            args[i++] = event.getUrlId();
+            args[i++] = Timestamp.valueOf(event.getClickedAt());
+            args[i++] = event.getIpAddress();
+            args[i++] = event.getUserAgent();
+            args[i++] = event.getReferrer();
+            args[i++] = (short) classification.deviceType().ordinal();
+            args[i++] = (short) classification.browser().ordinal();
+            args[i++] = (short) classification.os().ordinal();
+            countsByUrlId.merge(event.getUrlId(), 1L, Long::sum);
+
+            LocalDate day = event.getClickedAt().toLocalDate();
+            referrerCounts.merge(new RollupKey(event.getUrlId(), day, referrerKey(event.getReferrer())),
+                    1L, Long::sum);
+            deviceCounts.merge(new RollupKey(event.getUrlId(), day,
+                    classification.deviceType().getDisplayName()), 1L, Long::sum);
+        }
+        return jdbcTemplate.update(sql.toString(), args);
+    }
+
+    private void upsertRollups(String sql, Map<RollupKey, Long> counts) {
+        List<Object[]> args = new ArrayList<>(counts.size());
+        counts.forEach((key, clicks) -> args.add(new Object[] {
+                key.urlId(), Date.valueOf(key.day()), key.dimension(), clicks }));
+        jdbcTemplate.batchUpdate(sql, args);
+    }
+
+    private static String referrerKey(String referrer) {
+        if (referrer == null || referrer.isEmpty()) {
+            return DIRECT_REFERRER;
+        }
+        return referrer.length() > ClickReferrerDaily.MAX_REFERRER_LENGTH
+                ? referrer.substring(0, ClickReferrerDaily.MAX_REFERRER_LENGTH)
+                : referrer;
+    }
+
+    private void incrementClickCounts(Map<Long, Long> countsByUrlId) {
+        List<Object[]> args = new ArrayList<>(countsByUrlId.size());
+        countsByUrlId.forEach((urlId, delta) -> args.add(new Object[] { delta, urlId }));
+        jdbcTemplate.batchUpdate("UPDATE urls SET click_count = click_count + ? WHERE id = ?", args);
+    }
+
+    public long findMaxUrlId() {
+        Long maxId = jdbcTemplate.queryForObject("SELECT MAX(id) FROM urls", Long.class);
+        return maxId != null ? maxId : 0;
+    }
+
+    /**
+     * Recomputes click_count from the clicks table for urls with afterId < id <= throughId.
+     * The urls rows are locked first so in-flight batches either commit before the count
+     * is taken or wait until it has been written.
+     *
+     * @return the number of urls whose count was corrected
+     */
+    @Transactional
+    public int reconcileClickCounts(long afterId, long throughId) {
+        jdbcTemplate.queryForList("SELECT id FROM urls WHERE id > ? AND id <= ? FOR UPDATE",
+                Long.class, afterId, throughId);
+
+        return jdbcTemplate.update(
+                "UPDATE urls u SET click_count = c.total "
+                        + "FROM (SELECT u2.id, COUNT(c2.id) AS total FROM urls u2 "
+                        + "LEFT JOIN clicks c2 ON c2.url_id = u2.id "
+                        + "WHERE u2.id > ? AND u2.id <= ? GROUP BY u2.id) c "
+                        + "WHERE u.id = c.id AND u.click_count <> c.total",
+                afterId, throughId);
+    }
+
+    /**
+     * Rebuilds the daily rollups from the raw clicks for urls with afterId < id <= throughId.
+     * Locks the urls rows first, like {@link #reconcileClickCounts}, so it serializes
+     * against in-flight batches for the same urls. Clicks recorded before user agents were
+     * classified at ingest are classified here first.
+     *
+     * @return the number of clicks aggregated
+     */
+    @Transactional
+    public long rebuildRollups(long afterId, long throughId) {
+        jdbcTemplate.queryForList("SELECT id FROM urls WHERE id > ? AND id <= ? FOR UPDATE",
+                Long.class, afterId, throughId);
+        classifyUnclassifiedClicks(afterId, throughId);
+        jdbcTemplate.update("DELETE FROM click_referrer_daily WHERE url_id > ? AND url_id <= ?",
+                afterId, throughId);
+        jdbcTemplate.update("DELETE FROM click_device_daily WHERE url_id > ? AND url_id <= ?",
+                afterId, throughId);
+
+        Map<RollupKey, Long> referrerCounts = new TreeMap<>(ROLLUP_ORDER);
+        Map<RollupKey, Long> deviceCounts = new TreeMap<>(ROLLUP_ORDER);
+        long[] total = { 0 };
+
+        jdbcTemplate.query("SELECT url_id, CAST(clicked_at AS date) AS day, referrer, device_type, COUNT(*) AS clicks "
+                        + "FROM clicks WHERE url_id > ? AND url_id <= ? "
+                        + "GROUP BY url_id, CAST(clicked_at AS date), referrer, device_type",
+                rs -> {
+                    long urlId = rs.getLong("url_id");
+                    LocalDate day = rs.getDate("day").toLocalDate();
+                    long clicks = rs.getLong("clicks");
+                    referrerCounts.merge(new RollupKey(urlId, day, referrerKey(rs.getString("referrer"))),
+                            clicks, Long::sum);
+                    deviceCounts.merge(new RollupKey(urlId, day,
+                            DEVICE_TYPES[rs.getShort("device_type")].getDisplayName()), clicks, Long::sum);
+                    total[0] += clicks;
+                },
+                afterId, throughId);
+
+        upsertRollups(UPSERT_REFERRER_DAILY, referrerCounts);
+        upsertRollups(UPSERT_DEVICE_DAILY, deviceCounts);
+        return total[0];
+    }
+
+    private void classifyUnclassifiedClicks(long afterId, long throughId) {
+        List<String> userAgents = jdbcTemplate.queryForList(
+                "SELECT DISTINCT user_agent FROM clicks "
+                        + "WHERE url_id > ? AND url_id <= ? AND device_type IS NULL AND user_agent IS NOT NULL",
+                String.class, afterId, throughId);
+
+        List<Object[]> args = new ArrayList<>(userAgents.size());
+        for (String userAgent : userAgents) {
+            UserAgentClassifier.Classification classification = userAgentClassifier.classify(userAgent);
+            args.add(new Object[] {
+                    (short) classification.deviceType().ordinal(),
+                    (short) classification.browser().ordinal(),
+                    (short) classification.os().ordinal(),
+                    afterId, throughId, userAgent });
+        }
+        jdbcTemplate.batchUpdate("UPDATE clicks SET device_type = ?, browser = ?, os = ? "
+                + "WHERE url_id > ? AND url_id <= ? AND device_type IS NULL AND user_agent = ?", args);
+
+        UserAgentClassifier.Classification unknown = UserAgentClassifier.UNKNOWN;
+        jdbcTemplate.update("UPDATE clicks SET device_type = ?, browser = ?, os = ? "
+                        + "WHERE url_id > ? AND url_id <= ? AND device_type IS NULL",
+                (short) unknown.deviceType().ordinal(), (short) unknown.browser().ordinal(),
+                (short) unknown.os().ordinal(), afterId, throughId);
+    }
+}
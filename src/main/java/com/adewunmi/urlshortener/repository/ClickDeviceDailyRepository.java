@@ -0,0 +1,21 @@
+package com.adewunmi.urlshortener.repository;
+
+import com.adewunmi.urlshortener.entity.ClickDeviceDaily;
+
+import java.time.LocalDate;
+import java.util.List;
+
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+@Repository
+public interface ClickDeviceDailyRepository extends JpaRepository<ClickDeviceDaily, Long> {
+
+    @Query("SELECT d.deviceType as deviceType, SUM(d.clicks) as clicks " +
+            "FROM ClickDeviceDaily d WHERE d.urlId = :urlId AND d.day >= :since " +
+            "GROUP BY d.deviceType " +
+            "ORDER BY SUM(d.clicks) DESC")
+    List<Object[]> findDeviceCounts(@Param("urlId") Long urlId, @Param("since") LocalDate since);
+}
@@ -0,0 +1,27 @@
+package com.adewunmi.urlshortener.repository;
+
+import com.adewunmi.urlshortener.entity.ClickReferrerDaily;
+
+import java.util.List;
+
+import org.springframework.data.domain.Limit;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+@Repository
+public interface ClickReferrerDailyRepository extends JpaRepository<ClickReferrerDaily, Long> {
+
+    @Query("SELECT r.day as date, SUM(r.clicks) as clicks " +
+            "FROM ClickReferrerDaily r WHERE r.urlId = :urlId " +
+            "GROUP BY r.day " +
+            "ORDER BY r.day DESC")
+    List<Object[]> findClicksByDate(@Param("urlId") Long urlId);
+
+    @Query("SELECT r.referrer as referrer, SUM(r.clicks) as clicks " +
+            "FROM ClickReferrerDaily r WHERE r.urlId = :urlId " +
+            "GROUP BY r.referrer " +
+            "ORDER BY SUM(r.clicks) DESC")
+    List<Object[]> findTopReferrers(@Param("urlId") Long urlId, Limit limit);
+}
@@ -0,0 +1,50 @@
+package com.adewunmi.urlshortener.repository;
+
+import com.adewunmi.urlshortener.dto.CachedUrl;
+import com.adewunmi.urlshortener.entity.RedirectType;
+import lombok.RequiredArgsConstructor;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Repository;
+
+import java.sql.Date;
+import java.sql.Timestamp;
+import java.time.LocalDate;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Finds the most clicked links, ranked from the daily referrer rollup so the raw clicks
+ * table is never scanned.
+ */
+@Repository
+@RequiredArgsConstructor
+public class HotUrlRepository {
+
+    private static final String FIND_HOTTEST =
+            "SELECT u.id, u.short_code, u.original_url, u.expires_at, u.redirect_type "
+                    + "FROM (SELECT url_id, SUM(clicks) AS clicks FROM click_referrer_daily "
+                    + "      WHERE day >= ? GROUP BY url_id ORDER BY clicks DESC LIMIT ?) hot "
+                    + "JOIN urls u ON u.id = hot.url_id "
+                    + "WHERE u.expires_at IS NULL OR u.expires_at > now() "
+                    + "ORDER BY hot.clicks DESC";
+
+    private final JdbcTemplate jdbcTemplate;
+
+    /**
+     * Returns up to {@code limit} unexpired links with the most clicks since {@code since},
+     * hottest first, keyed by short code.
+     */
+    public Map<String, CachedUrl> findHottest(LocalDate since, int limit) {
+        Map<String, CachedUrl> hottest = new LinkedHashMap<>();
+        jdbcTemplate.query(FIND_HOTTEST, rs -> {
+            Timestamp expiresAt = rs.getTimestamp("expires_at");
+            String redirectType = rs.getString("redirect_type");
+            hottest.put(rs.getString("short_code"), new CachedUrl(
+                    rs.getLong("id"),
+                    rs.getString("original_url"),
+                    expiresAt != null ? expiresAt.toLocalDateTime() : null,
+                    redirectType != null ? RedirectType.valueOf(redirectType) : RedirectType.PERMANENT));
+        }, Date.valueOf(since), limit);
+        return hottest;
+    }
+}
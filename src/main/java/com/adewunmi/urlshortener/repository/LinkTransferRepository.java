@@ -0,0 +1,276 @@
+package com.adewunmi.urlshortener.repository;
+
+import com.adewunmi.urlshortener.dto.CachedUrl;
+import com.adewunmi.urlshortener.dto.LinkRecord;
+import com.adewunmi.urlshortener.entity.RedirectType;
+import com.adewunmi.urlshortener.util.UrlDigest;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.postgresql.PGConnection;
+import org.springframework.jdbc.core.ConnectionCallback;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowMapper;
+import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.Statement;
+import java.sql.Timestamp;
+import java.sql.Types;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.function.BiConsumer;
+import java.util.function.Consumer;
+
+/**
+ * Bulk movement of urls in and out of the database. Exports read through a server-side
+ * cursor; imports load each chunk with PostgreSQL {@code COPY} into a temporary staging
+ * table and merge it into urls in one statement, falling back to JDBC batches on other
+ * databases. Either way a chunk and its checkpoint commit together.
+ */
+@Repository
+@RequiredArgsConstructor
+@Slf4j
+public class LinkTransferRepository {
+
+    private static final String EXPORT_QUERY =
+            "SELECT short_code, original_url, redirect_type, created_at, expires_at, click_count "
+                    + "FROM urls ORDER BY id";
+
+    private static final RowMapper<LinkRecord> LINK_MAPPER = (rs, rowNum) -> new LinkRecord(
+            rs.getString("short_code"),
+            rs.getString("original_url"),
+            toRedirectType(rs.getString("redirect_type")),
+            toLocalDateTime(rs.getTimestamp("created_at")),
+            toLocalDateTime(rs.getTimestamp("expires_at")),
+            rs.getLong("click_count"));
+
+    // Dropped at commit, so each chunk's transaction starts from an empty table whichever
+    // pooled connection it lands on
+    private static final String CREATE_STAGING =
+            "CREATE TEMP TABLE link_import_staging ("
+                    + "short_code text, original_url text, redirect_type text, "
+                    + "created_at timestamp, expires_at timestamp, click_count bigint) ON COMMIT DROP";
+
+    private static final String COPY_STAGING =
+            "COPY link_import_staging (" + LinkRecord.CSV_HEADER + ") FROM STDIN WITH (FORMAT csv)";
+
+    // Dedup is on short code. The digest is only kept for the first row per URL and only
+    // when no existing url owns it, so duplicate URLs under different codes (legacy data)
+    // still import, just without a digest, as the backfill leaves them.
+    private static final String MERGE_STAGING =
+            "INSERT INTO urls (short_code, original_url, url_hash, redirect_type, created_at, expires_at, click_count) "
+                    + "SELECT s.short_code, s.original_url, "
+                    + "  CASE WHEN s.digest_rank = 1 AND NOT EXISTS (SELECT 1 FROM urls u WHERE u.url_hash = s.digest) "
+                    + "  THEN s.digest END, "
+                    + "  s.redirect_type, COALESCE(s.created_at, now()), s.expires_at, COALESCE(s.click_count, 0) "
+                    + "FROM (SELECT d.*, row_number() OVER (PARTITION BY d.digest ORDER BY d.created_at, d.short_code) "
+                    + "      AS digest_rank "
+                    + "      FROM (SELECT st.*, sha256(convert_to(st.original_url, 'UTF8')) AS digest "
+                    + "            FROM link_import_staging st) d) s "
+                    + "ON CONFLICT (short_code) DO NOTHING "
+                    + "RETURNING short_code";
+
+    private static final String INSERT_ROW =
+            "INSERT INTO urls (short_code, original_url, url_hash, redirect_type, created_at, expires_at, click_count) "
+                    + "VALUES (?, ?, ?, ?, ?, ?, ?)";
+
+    private final JdbcTemplate jdbcTemplate;
+
+    /**
+     * Hands every url to the consumer as rows arrive, in id order. Must run inside a
+     * transaction so the driver uses a server-side cursor instead of buffering the result.
+     */
+    public void streamAll(int fetchSize, Consumer<LinkRecord> consumer) {
+        jdbcTemplate.query(connection -> {
+            PreparedStatement statement = connection.prepareStatement(EXPORT_QUERY);
+            statement.setFetchSize(fetchSize);
+            return statement;
+        }, rs -> {
+            consumer.accept(LINK_MAPPER.mapRow(rs, 0));
+        });
+    }
+
+    /**
+     * Hands every url with an id above {@code afterId} to the consumer as a cache entry.
+     */
+    @Transactional(readOnly = true)
+    public void streamCacheEntries(long afterId, int fetchSize, BiConsumer<String, CachedUrl> consumer) {
+        streamCacheEntries(afterId, Long.MAX_VALUE, fetchSize, consumer);
+    }
+
+    /**
+     * Hands every url with an id in {@code (afterId, throughId]} to the consumer as a cache entry.
+     */
+    @Transactional(readOnly = true)
+    public void streamCacheEntries(long afterId, long throughId, int fetchSize,
+            BiConsumer<String, CachedUrl> consumer) {
+        jdbcTemplate.query(connection -> {
+            PreparedStatement statement = connection.prepareStatement(
+                    "SELECT id, short_code, original_url, expires_at, redirect_type FROM urls "
+                            + "WHERE id > ? AND id <= ? ORDER BY id");
+            statement.setFetchSize(fetchSize);
+            statement.setLong(1, afterId);
+            statement.setLong(2, throughId);
+            return statement;
+        }, rs -> {
+            RedirectType redirectType = toRedirectType(rs.getString("redirect_type"));
+            consumer.accept(rs.getString("short_code"), new CachedUrl(
+                    rs.getLong("id"),
+                    rs.getString("original_url"),
+                    toLocalDateTime(rs.getTimestamp("expires_at")),
+                    redirectType != null ? redirectType : RedirectType.PERMANENT));
+        });
+    }
+
+    public long findMaxId() {
+        Long maxId = jdbcTemplate.queryForObject("SELECT max(id) FROM urls", Long.class);
+        return maxId != null ? maxId : 0;
+    }
+
+    /**
+     * Counts the urls with an id in {@code (afterId, throughId]} and the bytes of their
+     * short codes and targets, for sizing files before streaming the range into them.
+     */
+    public RangeSize measureRange(long afterId, long throughId) {
+        return jdbcTemplate.queryForObject(
+                "SELECT count(*), COALESCE(sum(octet_length(short_code) + octet_length(original_url)), 0) "
+                        + "FROM urls WHERE id > ? AND id <= ?",
+                (rs, rowNum) -> new RangeSize(rs.getLong(1), rs.getLong(2)),
+                afterId, throughId);
+    }
+
+    public record RangeSize(long rows, long bytes) {
+    }
+
+    public boolean supportsCopy() {
+        return Boolean.TRUE.equals(jdbcTemplate.execute(
+                (ConnectionCallback<Boolean>) connection -> connection.isWrapperFor(PGConnection.class)));
+    }
+
+    /**
+     * @return the number of input rows a job has already committed, or 0 for a new job
+     */
+    public long findRowsCommitted(String jobId) {
+        List<Long> rows = jdbcTemplate.queryForList(
+                "SELECT rows_committed FROM link_import_checkpoints WHERE job_id = ?", Long.class, jobId);
+        return rows.isEmpty() ? 0 : rows.get(0);
+    }
+
+    /**
+     * Inserts a chunk of links, skipping short codes that already exist, and advances the
+     * job's checkpoint to {@code rowsCommitted} in the same transaction.
+     *
+     * @return the short codes that were inserted
+     */
+    @Transactional
+    public List<String> importChunk(String jobId, List<LinkRecord> links, long rowsCommitted, boolean useCopy) {
+        List<String> inserted = links.isEmpty()
+                ? List.of()
+                : useCopy ? copyChunk(links) : batchChunk(links);
+        saveCheckpoint(jobId, rowsCommitted, inserted.size());
+        return inserted;
+    }
+
+    private List<String> copyChunk(List<LinkRecord> links) {
+        StringBuilder csv = new StringBuilder(links.size() * 128);
+        for (LinkRecord link : links) {
+            link.appendCsv(csv);
+        }
+
+        return jdbcTemplate.execute((ConnectionCallback<List<String>>) connection -> {
+            try (Statement statement = connection.createStatement()) {
+                statement.execute(CREATE_STAGING);
+                connection.unwrap(PGConnection.class).getCopyAPI()
+                        .copyIn(COPY_STAGING, new StringReader(csv.toString()));
+
+                List<String> inserted = new ArrayList<>(links.size());
+                try (ResultSet rs = statement.executeQuery(MERGE_STAGING)) {
+                    while (rs.next()) {
+                        inserted.add(rs.getString(1));
+                    }
+                }
+                return inserted;
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        });
+    }
+
+    // Portable path: filter out taken codes and digests with two lookups, then one batch insert
+    private List<String> batchChunk(List<LinkRecord> links) {
+        List<String> codes = new ArrayList<>(links.size());
+        List<byte[]> hashes = new ArrayList<>(links.size());
+        for (LinkRecord link : links) {
+            codes.add(link.getShortCode());
+            hashes.add(UrlDigest.sha256(link.getOriginalUrl()));
+        }
+        Set<String> takenCodes = new HashSet<>(findExisting("short_code", codes, Types.VARCHAR));
+        Set<ByteBuffer> takenHashes = new HashSet<>();
+        for (byte[] hash : findExisting("url_hash", hashes, Types.BINARY)) {
+            takenHashes.add(ByteBuffer.wrap(hash));
+        }
+
+        List<Object[]> rows = new ArrayList<>(links.size());
+        List<String> inserted = new ArrayList<>(links.size());
+        for (int i = 0; i < links.size(); i++) {
+            LinkRecord link = links.get(i);
+            if (!takenCodes.add(link.getShortCode())) {
+                continue;
+            }
+            byte[] hash = hashes.get(i);
+            rows.add(new Object[] {
+                    link.getShortCode(),
+                    link.getOriginalUrl(),
+                    takenHashes.add(ByteBuffer.wrap(hash)) ? hash : null,
+                    link.getRedirectType() != null ? link.getRedirectType().name() : null,
+                    Timestamp.valueOf(link.getCreatedAt() != null ? link.getCreatedAt() : LocalDateTime.now()),
+                    link.getExpiresAt() != null ? Timestamp.valueOf(link.getExpiresAt()) : null,
+                    link.getClickCount() != null ? link.getClickCount() : 0L });
+            inserted.add(link.getShortCode());
+        }
+        jdbcTemplate.batchUpdate(INSERT_ROW, rows, new int[] { Types.VARCHAR, Types.VARCHAR, Types.BINARY,
+                Types.VARCHAR, Types.TIMESTAMP, Types.TIMESTAMP, Types.BIGINT });
+        return inserted;
+    }
+
+    @SuppressWarnings("unchecked")
+    private <T> List<T> findExisting(String column, List<T> values, int sqlType) {
+        String placeholders = String.join(",", Collections.nCopies(values.size(), "?"));
+        int[] types = new int[values.size()];
+        Arrays.fill(types, sqlType);
+        return (List<T>) jdbcTemplate.query(
+                "SELECT " + column + " FROM urls WHERE " + column + " IN (" + placeholders + ")",
+                values.toArray(), types, (rs, rowNum) -> rs.getObject(1));
+    }
+
+    private void saveCheckpoint(String jobId, long rowsCommitted, long rowsInserted) {
+        Timestamp now = Timestamp.valueOf(LocalDateTime.now());
+        int updated = jdbcTemplate.update(
+                "UPDATE link_import_checkpoints SET rows_committed = ?, rows_inserted = rows_inserted + ?, "
+                        + "updated_at = ? WHERE job_id = ?",
+                rowsCommitted, rowsInserted, now, jobId);
+        if (updated == 0) {
+            jdbcTemplate.update("INSERT INTO link_import_checkpoints (job_id, rows_committed, rows_inserted, updated_at) "
+                    + "VALUES (?, ?, ?, ?)", jobId, rowsCommitted, rowsInserted, now);
+        }
+    }
+
+    private static RedirectType toRedirectType(String value) {
+        return value != null ? RedirectType.valueOf(value) : null;
+    }
+
+    private static LocalDateTime toLocalDateTime(Timestamp timestamp) {
+        return timestamp != null ? timestamp.toLocalDateTime() : null;
+    }
+}
@@ -0,0 +1,73 @@
+package com.adewunmi.urlshortener.repository;
+
+import com.adewunmi.urlshortener.dto.UrlListResponse;
+import com.adewunmi.urlshortener.dto.UrlPageCursor;
+import lombok.RequiredArgsConstructor;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowMapper;
+import org.springframework.stereotype.Repository;
+
+import java.sql.PreparedStatement;
+import java.sql.Timestamp;
+import java.util.List;
+import java.util.function.Consumer;
+
+/**
+ * Keyset-paginated listing of urls, newest first. Each page seeks on the
+ * (created_at, id) index from the previous page's last row instead of using OFFSET,
+ * so every page costs the same regardless of how deep the client has paged.
+ */
+@Repository
+@RequiredArgsConstructor
+public class UrlListRepository {
+
+    private static final String SELECT_COLUMNS =
+            "SELECT id, original_url, short_code, created_at, click_count FROM urls ";
+    private static final String ORDER_BY = " ORDER BY created_at DESC, id DESC";
+
+    private static final RowMapper<UrlListResponse> ROW_MAPPER = (rs, rowNum) -> new UrlListResponse(
+            rs.getLong("id"),
+            rs.getString("original_url"),
+            rs.getString("short_code"),
+            null,
+            rs.getTimestamp("created_at").toLocalDateTime(),
+            rs.getLong("click_count"));
+
+    private final JdbcTemplate jdbcTemplate;
+
+    /**
+     * Returns up to {@code limit} urls that sort after {@code after}, or from the start
+     * when {@code after} is null.
+     */
+    public List<UrlListResponse> findPage(UrlPageCursor after, int limit) {
+        if (after == null) {
+            return jdbcTemplate.query(SELECT_COLUMNS + ORDER_BY + " LIMIT ?", ROW_MAPPER, limit);
+        }
+        return jdbcTemplate.query(SELECT_COLUMNS + "WHERE (created_at, id) < (?, ?)" + ORDER_BY + " LIMIT ?",
+                ROW_MAPPER, Timestamp.valueOf(after.getCreatedAt()), after.getId(), limit);
+    }
+
+    /**
+     * Hands every url after {@code after} to the consumer as rows arrive. Must run inside a
+     * transaction: the PostgreSQL driver only uses a server-side cursor (fetching
+     * {@code fetchSize} rows at a time) when autocommit is off, otherwise it buffers the
+     * whole result set.
+     */
+    public void streamAll(UrlPageCursor after, int fetchSize, Consumer<UrlListResponse> consumer) {
+        String sql = after == null
+                ? SELECT_COLUMNS + ORDER_BY
+                : SELECT_COLUMNS + "WHERE (created_at, id) < (?, ?)" + ORDER_BY;
+
+        jdbcTemplate.query(connection -> {
+            PreparedStatement statement = connection.prepareStatement(sql);
+            statement.setFetchSize(fetchSize);
+            if (after != null) {
+                statement.setTimestamp(1, Timestamp.valueOf(after.getCreatedAt()));
+                statement.setLong(2, after.getId());
+            }
+            return statement;
+        }, rs -> {
+            consumer.accept(ROW_MAPPER.mapRow(rs, 0));
+        });
+    }
+}
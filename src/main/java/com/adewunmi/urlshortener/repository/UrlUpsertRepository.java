@@ -0,0 +1,168 @@
+package com.adewunmi.urlshortener.repository;
+
+import com.adewunmi.urlshortener.entity.RedirectType;
+import com.adewunmi.urlshortener.entity.Url;
+import lombok.RequiredArgsConstructor;
+import org.springframework.dao.support.DataAccessUtils;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowMapper;
+import org.springframework.stereotype.Repository;
+
+import java.sql.PreparedStatement;
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.List;
+
+/**
+ * Single-statement writes to urls, keyed on the URL digest: create-or-get for one link and
+ * multi-row inserts for batches.
+ */
+@Repository
+@RequiredArgsConstructor
+public class UrlUpsertRepository {
+
+    private static final String URL_COLUMNS =
+            "id, original_url, url_hash, short_code, created_at, expires_at, redirect_type, click_count";
+
+    // DO NOTHING leaves an existing link untouched: no new row version, WAL or row lock.
+    // As RETURNING is then empty, the existing row comes from the second branch, which
+    // reads the statement's snapshot. A conflicting insert that committed after that
+    // snapshot was taken is not in it, so the statement can return no row at all.
+    private static final String INSERT_OR_GET =
+            "WITH ins AS ("
+                    + "  INSERT INTO urls (original_url, url_hash, short_code, created_at, redirect_type, click_count) "
+                    + "  VALUES (?, ?, ?, ?, ?, 0) "
+                    + "  ON CONFLICT (url_hash) DO NOTHING "
+                    + "  RETURNING " + URL_COLUMNS + ", true AS inserted) "
+                    + "SELECT * FROM ins "
+                    + "UNION ALL "
+                    + "SELECT " + URL_COLUMNS + ", false AS inserted FROM urls "
+                    + "WHERE url_hash = ? AND NOT EXISTS (SELECT 1 FROM ins)";
+
+    // A new statement sees the link whose concurrent insert made the first attempt empty
+    private static final int MAX_INSERT_OR_GET_ATTEMPTS = 3;
+
+    // One statement for the whole batch: the columns arrive as parallel arrays
+    private static final String INSERT_BATCH =
+            "INSERT INTO urls (original_url, url_hash, short_code, created_at, redirect_type, click_count) "
+                    + "SELECT b.original_url, b.url_hash, b.short_code, ?, b.redirect_type, 0 "
+                    + "FROM unnest(?::text[], ?::bytea[], ?::text[], ?::text[]) "
+                    + "AS b(original_url, url_hash, short_code, redirect_type) "
+                    + "ON CONFLICT DO NOTHING "
+                    + "RETURNING " + URL_COLUMNS;
+
+    private static final RowMapper<Url> URL_MAPPER = (rs, rowNum) -> {
+        Url url = new Url();
+        url.setId(rs.getLong("id"));
+        url.setOriginalUrl(rs.getString("original_url"));
+        url.setUrlHash(rs.getBytes("url_hash"));
+        url.setShortCode(rs.getString("short_code"));
+        url.setCreatedAt(rs.getTimestamp("created_at").toLocalDateTime());
+        Timestamp expiresAt = rs.getTimestamp("expires_at");
+        url.setExpiresAt(expiresAt != null ? expiresAt.toLocalDateTime() : null);
+        String redirectType = rs.getString("redirect_type");
+        url.setRedirectType(redirectType != null ? RedirectType.valueOf(redirectType) : null);
+        url.setClickCount(rs.getLong("click_count"));
+        return url;
+    };
+
+    public record UpsertResult(Url url, boolean inserted) {
+    }
+
+    public record NewUrl(String originalUrl, byte[] urlHash, String shortCode, RedirectType redirectType) {
+    }
+
+    private final JdbcTemplate jdbcTemplate;
+
+    /**
+     * Inserts a new url, or returns the existing one with the same digest.
+     *
+     * @throws org.springframework.dao.DuplicateKeyException if the short code is taken
+     */
+    public UpsertResult insertOrGet(String originalUrl, byte[] urlHash, String shortCode, RedirectType redirectType) {
+        for (int attempt = 1; ; attempt++) {
+            List<UpsertResult> results = jdbcTemplate.query(INSERT_OR_GET,
+                    (rs, rowNum) -> new UpsertResult(URL_MAPPER.mapRow(rs, rowNum), rs.getBoolean("inserted")),
+                    originalUrl, urlHash, shortCode, Timestamp.valueOf(LocalDateTime.now()), redirectType.name(),
+                    urlHash);
+            if (!results.isEmpty() || attempt == MAX_INSERT_OR_GET_ATTEMPTS) {
+                return DataAccessUtils.requiredSingleResult(results);
+            }
+        }
+    }
+
+    /**
+     * Returns the urls whose digest is one of {@code urlHashes}, in one query.
+     */
+    public List<Url> findByHashes(List<byte[]> urlHashes) {
+        if (urlHashes.isEmpty()) {
+            return List.of();
+        }
+        return jdbcTemplate.query(connection -> {
+            PreparedStatement statement = connection.prepareStatement(
+                    "SELECT " + URL_COLUMNS + " FROM urls WHERE url_hash = ANY(?)");
+            statement.setArray(1, connection.createArrayOf("bytea", urlHashes.toArray(new byte[0][])));
+            return statement;
+        }, URL_MAPPER);
+    }
+
+    /**
+     * Inserts all rows in one statement. Rows whose digest or short code is already taken
+     * are skipped rather than failing the batch; only the inserted rows are returned.
+     */
+    public List<Url> insertBatch(List<NewUrl> rows) {
+        if (rows.isEmpty()) {
+            return List.of();
+        }
+
+        int size = rows.size();
+        String[] originalUrls = new String[size];
+        byte[][] urlHashes = new byte[size][];
+        String[] shortCodes = new String[size];
+        String[] redirectTypes = new String[size];
+        for (int i = 0; i < size; i++) {
+            NewUrl row = rows.get(i);
+            originalUrls[i] = row.originalUrl();
+            urlHashes[i] = row.urlHash();
+            shortCodes[i] = row.shortCode();
+            redirectTypes[i] = row.redirectType().name();
+        }
+
+        return jdbcTemplate.query(connection -> {
+            PreparedStatement statement = connection.prepareStatement(INSERT_BATCH);
+            statement.setTimestamp(1, Timestamp.valueOf(LocalDateTime.now()));
+            statement.setArray(2, connection.createArrayOf("text", originalUrls));
+            statement.setArray(3, connection.createArrayOf("bytea", urlHashes));
+            statement.setArray(4, connection.createArrayOf("text", shortCodes));
+            statement.setArray(5, connection.createArrayOf("text", redirectTypes));
+            return statement;
+        }, URL_MAPPER);
+    }
+
+    public long findMaxId() {
+        Long maxId = jdbcTemplate.queryForObject("SELECT COALESCE(MAX(id), 0) FROM urls", Long.class);
+        return maxId != null ? maxId : 0;
+    }
+
+    /**
+     * Fills in missing digests for urls with afterId < id <= throughId. Rows whose digest
+     * already belongs to another url (duplicates created before dedup was digest-based)
+     * are left without one; the earliest row per URL keeps the digest.
+     *
+     * @return the number of rows updated
+     */
+    public int backfillHashes(long afterId, long throughId) {
+        return jdbcTemplate.update(
+                "UPDATE urls u SET url_hash = d.hash FROM ("
+                        + "  SELECT DISTINCT ON (hash) id, hash FROM ("
+                        + "    SELECT id, sha256(convert_to(original_url, 'UTF8')) AS hash FROM urls"
+                        + "    WHERE id > ? AND id <= ? AND url_hash IS NULL) candidates"
+                        + "  ORDER BY hash, id) d "
+                        + "WHERE u.id = d.id AND NOT EXISTS (SELECT 1 FROM urls x WHERE x.url_hash = d.hash)",
+                afterId, throughId);
+    }
+
+    public void dropOriginalUrlIndex() {
+        jdbcTemplate.execute("DROP INDEX IF EXISTS idx_original_url");
+    }
+}
@@ -1,7 +1,8 @@
 package com.adewunmi.urlshortener.service;
 
-import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.Limit;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
@@ -10,33 +11,63 @@ import com.adewunmi.urlshortener.dto.DeviceStatsDto;
 import com.adewunmi.urlshortener.dto.RecentClickDto;
 import com.adewunmi.urlshortener.dto.TopReferrerDto;
 import com.adewunmi.urlshortener.dto.UrlListResponse;
+import com.adewunmi.urlshortener.dto.UrlPage;
+import com.adewunmi.urlshortener.dto.UrlPageCursor;
 import com.adewunmi.urlshortener.dto.UrlStatsResponse;
 import com.adewunmi.urlshortener.entity.Click;
+import com.adewunmi.urlshortener.entity.DeviceType;
 import com.adewunmi.urlshortener.entity.Url;
+import com.adewunmi.urlshortener.repository.ClickDeviceDailyRepository;
+import com.adewunmi.urlshortener.repository.ClickReferrerDailyRepository;
 import com.adewunmi.urlshortener.repository.ClickRepository;
+import com.adewunmi.urlshortener.repository.UrlListRepository;
 import com.adewunmi.urlshortener.repository.UrlRepository;
 
 import java.time.LocalDate;
-import java.time.LocalDateTime;
-import java.util.HashMap;
 import java.util.List;
-import java.util.Map;
+import java.util.function.Consumer;
 import java.util.stream.Collectors;
 
 @Service
-@RequiredArgsConstructor
 @Slf4j
 public class AnalyticsService {
 
     private final UrlRepository urlRepository;
+    private final UrlListRepository urlListRepository;
     private final ClickRepository clickRepository;
+    private final ClickReferrerDailyRepository clickReferrerDailyRepository;
+    private final ClickDeviceDailyRepository clickDeviceDailyRepository;
+    private final UserAgentClassifier userAgentClassifier;
+    private final String baseUrl;
+    private final int maxPageSize;
+    private final int streamFetchSize;
+
+    public AnalyticsService(UrlRepository urlRepository,
+            UrlListRepository urlListRepository,
+            ClickRepository clickRepository,
+            ClickReferrerDailyRepository clickReferrerDailyRepository,
+            ClickDeviceDailyRepository clickDeviceDailyRepository,
+            UserAgentClassifier userAgentClassifier,
+            @Value("${app.base-url:http://localhost:8080}") String baseUrl,
+            @Value("${api.urls.max-page-size:200}") int maxPageSize,
+            @Value("${api.urls.stream-fetch-size:500}") int streamFetchSize) {
+        this.urlRepository = urlRepository;
+        this.urlListRepository = urlListRepository;
+        this.clickRepository = clickRepository;
+        this.clickReferrerDailyRepository = clickReferrerDailyRepository;
+        this.clickDeviceDailyRepository = clickDeviceDailyRepository;
+        this.userAgentClassifier = userAgentClassifier;
+        this.baseUrl = baseUrl;
+        this.maxPageSize = maxPageSize;
+        this.streamFetchSize = streamFetchSize;
+    }
 
     @Transactional(readOnly = true)
     public UrlStatsResponse getUrlStats(String shortCode) {
         Url url = urlRepository.findByShortCode(shortCode)
                 .orElseThrow(() -> new IllegalArgumentException("Short code not found"));
 
-        Long totalClicks = clickRepository.countByUrlId(url.getId());
+        Long totalClicks = url.getClickCount();
 
         // Get clicks by date
         List<ClickByDateDto> clicksByDate = getClicksByDate(url.getId());
@@ -63,7 +94,7 @@ public class AnalyticsService {
     }
 
     private List<ClickByDateDto> getClicksByDate(Long urlId) {
-        List<Object[]> results = clickRepository.findClicksByDate(urlId);
+        List<Object[]> results = clickReferrerDailyRepository.findClicksByDate(urlId);
 
         return results.stream()
                 .map(row -> new ClickByDateDto(
@@ -73,10 +104,9 @@ public class AnalyticsService {
     }
 
     private List<TopReferrerDto> getTopReferrers(Long urlId) {
-        List<Object[]> results = clickRepository.findTopReferrers(urlId);
+        List<Object[]> results = clickReferrerDailyRepository.findTopReferrers(urlId, Limit.of(5)); // Top 5 referrers
 
         return results.stream()
-                .limit(5) // Top 5 referrers
                 .map(row -> new TopReferrerDto(
                         row[0] != null ? row[0].toString() : "Direct",
                         ((Number) row[1]).longValue()))
@@ -84,22 +114,15 @@ public class AnalyticsService {
     }
 
     private List<DeviceStatsDto> getDeviceStats(Long urlId) {
-        // Get all clicks for this URL
-        List<Click> clicks = clickRepository.findByUrlIdAndClickedAtAfter(
+        // Device breakdown over the last 30 days, read from the daily rollup
+        List<Object[]> results = clickDeviceDailyRepository.findDeviceCounts(
                 urlId,
-                LocalDateTime.now().minusDays(30));
-
-        // Group by device type
-        Map<String, Long> deviceCounts = new HashMap<>();
+                LocalDate.now().minusDays(30));
 
-        for (Click click : clicks) {
-            String deviceType = determineDeviceType(click.getUserAgent());
-            deviceCounts.put(deviceType, deviceCounts.getOrDefault(deviceType, 0L) + 1);
-        }
-
-        return deviceCounts.entrySet().stream()
-                .map(entry -> new DeviceStatsDto(entry.getKey(), entry.getValue()))
-                .sorted((a, b) -> Long.compare(b.getClicks(), a.getClicks()))
+        return results.stream()
+                .map(row -> new DeviceStatsDto(
+                        row[0].toString(),
+                        ((Number) row[1]).longValue()))
                 .collect(Collectors.toList());
     }
 
@@ -111,31 +134,19 @@ public class AnalyticsService {
                         click.getClickedAt(),
                         maskIpAddress(click.getIpAddress()),
                         click.getReferrer() != null ? click.getReferrer() : "Direct",
-                        determineDeviceType(click.getUserAgent())))
+                        deviceTypeOf(click)))
                 .collect(Collectors.toList());
     }
 
-    private String determineDeviceType(String userAgent) {
-        if (userAgent == null) {
-            return "Unknown";
-        }
-
-        userAgent = userAgent.toLowerCase();
-
-        if (userAgent.contains("mobile") || userAgent.contains("android") ||
-                userAgent.contains("iphone")) {
-            return "Mobile";
-        } else if (userAgent.contains("tablet") || userAgent.contains("ipad")) {
-            return "Tablet";
-        } else if (userAgent.contains("windows") || userAgent.contains("macintosh") ||
-                userAgent.contains("linux")) {
-            return "Desktop";
-        }
-
-        return "Unknown";
+    private String deviceTypeOf(Click click) {
+        DeviceType deviceType = click.getDeviceType() != null
+                ? click.getDeviceType()
+                : userAgentClassifier.classify(click.getUserAgent()).deviceType();
+        return deviceType.getDisplayName();
     }
 
-    private String maskIpAddress(String ip) {
+    // Package-private for the JMH benchmarks (src/jmh)
+    String maskIpAddress(String ip) {
         if (ip == null) {
             return "Unknown";
         }
@@ -149,21 +160,41 @@ public class AnalyticsService {
         return "xxx.xxx.xxx.xxx";
     }
 
+    /**
+     * One page of urls, newest first, starting after {@code after} (or from the newest
+     * url when null). The page size is clamped to the configured maximum.
+     */
+    public UrlPage getUrlPage(UrlPageCursor after, int limit) {
+        if (limit < 1) {
+            throw new IllegalArgumentException("limit must be at least 1");
+        }
+        int pageSize = Math.min(limit, maxPageSize);
+
+        // Read one extra row to learn whether another page exists
+        List<UrlListResponse> rows = urlListRepository.findPage(after, pageSize + 1);
+        UrlPageCursor nextCursor = null;
+        if (rows.size() > pageSize) {
+            rows = rows.subList(0, pageSize);
+            UrlListResponse last = rows.get(pageSize - 1);
+            nextCursor = new UrlPageCursor(last.getCreatedAt(), last.getId());
+        }
+        rows.forEach(this::fillShortUrl);
+        return new UrlPage(rows, nextCursor);
+    }
+
+    /**
+     * Streams every url after {@code after} to the consumer, holding only one fetch batch
+     * in memory at a time.
+     */
     @Transactional(readOnly = true)
-    public List<UrlListResponse> getAllUrls() {
-        List<Url> urls = urlRepository.findAllWithClicks();
-
-        return urls.stream()
-                .map(url -> {
-                    Long clickCount = clickRepository.countByUrlId(url.getId());
-                    return new UrlListResponse(
-                            url.getId(),
-                            url.getOriginalUrl(),
-                            url.getShortCode(),
-                            "http://localhost:8080/" + url.getShortCode(), // Will be dynamic later
-                            url.getCreatedAt(),
-                            clickCount);
-                })
-                .collect(Collectors.toList());
+    public void streamUrls(UrlPageCursor after, Consumer<UrlListResponse> consumer) {
+        urlListRepository.streamAll(after, streamFetchSize, row -> {
+            fillShortUrl(row);
+            consumer.accept(row);
+        });
+    }
+
+    private void fillShortUrl(UrlListResponse row) {
+        row.setShortUrl(baseUrl + "/" + row.getShortCode());
     }
 }
@@ -0,0 +1,231 @@
+package com.adewunmi.urlshortener.service;
+
+import com.adewunmi.urlshortener.dto.BatchShortenResult;
+import com.adewunmi.urlshortener.dto.BatchShortenResult.Status;
+import com.adewunmi.urlshortener.dto.CachedUrl;
+import com.adewunmi.urlshortener.dto.ShortenUrlRequest;
+import com.adewunmi.urlshortener.entity.RedirectType;
+import com.adewunmi.urlshortener.entity.Url;
+import com.adewunmi.urlshortener.repository.UrlUpsertRepository;
+import com.adewunmi.urlshortener.repository.UrlUpsertRepository.NewUrl;
+import com.adewunmi.urlshortener.util.UrlDigest;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.IntStream;
+
+/**
+ * Creates links in bulk. Each chunk of requests is validated in parallel, deduplicated
+ * against existing links with one set-based query, given codes in one allocation,
+ * written with one multi-row insert and cached with one pipelined Redis round trip.
+ */
+@Service
+@Slf4j
+public class BatchShortenService {
+
+    private static final int MAX_INSERT_ROUNDS = 3;
+
+    private final UrlService urlService;
+    private final UrlUpsertRepository urlUpsertRepository;
+    private final ShortCodeGenerator shortCodeGenerator;
+    private final CacheService cacheService;
+    private final CacheInvalidationBus cacheInvalidationBus;
+    private final int chunkSize;
+    private final String baseUrl;
+
+    public BatchShortenService(UrlService urlService,
+            UrlUpsertRepository urlUpsertRepository,
+            ShortCodeGenerator shortCodeGenerator,
+            CacheService cacheService,
+            CacheInvalidationBus cacheInvalidationBus,
+            @Value("${shorten.batch.chunk-size:1000}") int chunkSize,
+            @Value("${app.base-url:http://localhost:8080}") String baseUrl) {
+        this.urlService = urlService;
+        this.urlUpsertRepository = urlUpsertRepository;
+        this.shortCodeGenerator = shortCodeGenerator;
+        this.cacheService = cacheService;
+        this.cacheInvalidationBus = cacheInvalidationBus;
+        this.chunkSize = chunkSize;
+        this.baseUrl = baseUrl;
+    }
+
+    public int getChunkSize() {
+        return chunkSize;
+    }
+
+    /**
+     * A validated request item; {@code error} is set instead of the other fields when
+     * validation failed.
+     */
+    private record Item(String url, byte[] urlHash, String customCode, RedirectType redirectType, String error) {
+    }
+
+    /**
+     * Shortens one chunk (at most {@link #getChunkSize()} items). Result indexes start at
+     * {@code firstIndex}. Items that cannot be parsed should be passed as null.
+     */
+    public List<BatchShortenResult> shortenChunk(List<ShortenUrlRequest> requests, int firstIndex) {
+        int size = requests.size();
+        Item[] items = new Item[size];
+        IntStream.range(0, size).parallel().forEach(i -> items[i] = validate(requests.get(i)));
+
+        BatchShortenResult[] results = new BatchShortenResult[size];
+
+        // Group by digest so a URL repeated within the chunk is created once
+        Map<ByteBuffer, List<Integer>> byDigest = new LinkedHashMap<>();
+        for (int i = 0; i < size; i++) {
+            Item item = items[i];
+            if (item.error() != null) {
+                results[i] = BatchShortenResult.error(firstIndex + i, Status.INVALID, item.url(), item.error());
+            } else {
+                byDigest.computeIfAbsent(ByteBuffer.wrap(item.urlHash()), k -> new ArrayList<>(1)).add(i);
+            }
+        }
+
+        Map<ByteBuffer, String> existingCodes = new HashMap<>();
+        Map<String, CachedUrl> toCache = new LinkedHashMap<>();
+
+        // Recently shortened on this node, then one query for the rest
+        List<byte[]> unknown = new ArrayList<>();
+        for (ByteBuffer digest : byDigest.keySet()) {
+            String shortCode = cacheService.getShortCodeForDigest(digest.array());
+            if (shortCode != null) {
+                existingCodes.put(digest, shortCode);
+            } else {
+                unknown.add(digest.array());
+            }
+        }
+        for (Url url : urlUpsertRepository.findByHashes(unknown)) {
+            existingCodes.put(ByteBuffer.wrap(url.getUrlHash()), url.getShortCode());
+            toCache.put(url.getShortCode(), CachedUrl.from(url));
+        }
+
+        Map<ByteBuffer, String> createdCodes = insertNew(byDigest, items, existingCodes, results, firstIndex, toCache);
+
+        byDigest.forEach((digest, indexes) -> {
+            String createdCode = createdCodes.get(digest);
+            String shortCode = createdCode != null ? createdCode : existingCodes.get(digest);
+            for (int n = 0; n < indexes.size(); n++) {
+                int i = indexes.get(n);
+                if (results[i] != null) {
+                    continue;
+                }
+                Status status = createdCode != null && n == 0 ? Status.CREATED : Status.EXISTING;
+                results[i] = new BatchShortenResult(firstIndex + i, status, items[i].url(), shortCode,
+                        baseUrl + "/" + shortCode, null);
+            }
+        });
+
+        cacheService.cacheUrlMappings(toCache);
+        existingCodes.forEach((digest, shortCode) -> cacheService.cacheDigest(digest.array(), shortCode));
+        createdCodes.forEach((digest, shortCode) -> cacheService.cacheDigest(digest.array(), shortCode));
+        cacheInvalidationBus.announceCreated(createdCodes.values());
+
+        log.info("Batch shortened {} items ({} created)", size, createdCodes.size());
+        return List.of(results);
+    }
+
+    private Item validate(ShortenUrlRequest request) {
+        if (request == null) {
+            return new Item(null, null, null, null, "Malformed request item");
+        }
+        String url = request.getUrl();
+        if (url == null || url.isBlank()) {
+            return new Item(url, null, null, null, "URL cannot be empty");
+        }
+
+        try {
+            urlService.validateUrl(url);
+            String customCode = request.getCustomCode() != null && !request.getCustomCode().isEmpty()
+                    ? urlService.validateAndSanitizeCustomCode(request.getCustomCode())
+                    : null;
+            RedirectType redirectType = request.getRedirectType() != null
+                    ? request.getRedirectType()
+                    : RedirectType.PERMANENT;
+            return new Item(url, UrlDigest.sha256(url), customCode, redirectType, null);
+        } catch (IllegalArgumentException e) {
+            return new Item(url, null, null, null, e.getMessage());
+        }
+    }
+
+    /**
+     * Inserts every URL not known yet. Rows the insert skipped were either created
+     * concurrently (found by digest and treated as existing) or hit a taken short code:
+     * a custom code is reported as a conflict, a generated one is replaced and retried.
+     *
+     * @return digest -> short code of the links this call created
+     */
+    private Map<ByteBuffer, String> insertNew(Map<ByteBuffer, List<Integer>> byDigest, Item[] items,
+            Map<ByteBuffer, String> existingCodes, BatchShortenResult[] results, int firstIndex,
+            Map<String, CachedUrl> toCache) {
+        Map<ByteBuffer, Item> pending = new LinkedHashMap<>();
+        byDigest.forEach((digest, indexes) -> {
+            if (!existingCodes.containsKey(digest)) {
+                pending.put(digest, items[indexes.get(0)]);
+            }
+        });
+
+        Map<ByteBuffer, String> created = new HashMap<>();
+        for (int round = 0; round < MAX_INSERT_ROUNDS && !pending.isEmpty(); round++) {
+            List<NewUrl> rows = toRows(pending);
+            for (Url url : urlUpsertRepository.insertBatch(rows)) {
+                ByteBuffer digest = ByteBuffer.wrap(url.getUrlHash());
+                pending.remove(digest);
+                created.put(digest, url.getShortCode());
+                toCache.put(url.getShortCode(), CachedUrl.from(url));
+            }
+            if (pending.isEmpty()) {
+                break;
+            }
+
+            for (Url url : urlUpsertRepository.findByHashes(pending.keySet().stream().map(ByteBuffer::array).toList())) {
+                ByteBuffer digest = ByteBuffer.wrap(url.getUrlHash());
+                pending.remove(digest);
+                existingCodes.put(digest, url.getShortCode());
+                toCache.put(url.getShortCode(), CachedUrl.from(url));
+            }
+
+            for (Iterator<Map.Entry<ByteBuffer, Item>> it = pending.entrySet().iterator(); it.hasNext(); ) {
+                Map.Entry<ByteBuffer, Item> entry = it.next();
+                String customCode = entry.getValue().customCode();
+                if (customCode != null) {
+                    markAll(byDigest.get(entry.getKey()), items, results, firstIndex, Status.CONFLICT,
+                            "Custom short code '" + customCode + "' is already in use");
+                    it.remove();
+                }
+            }
+        }
+
+        // Generated codes still colliding after every round
+        pending.keySet().forEach(digest -> markAll(byDigest.get(digest), items, results, firstIndex,
+                Status.FAILED, "Unable to generate unique short code. Please try again."));
+        return created;
+    }
+
+    private List<NewUrl> toRows(Map<ByteBuffer, Item> pending) {
+        long generatedCount = pending.values().stream().filter(item -> item.customCode() == null).count();
+        Iterator<String> generated = shortCodeGenerator.nextCodes((int) generatedCount).iterator();
+
+        List<NewUrl> rows = new ArrayList<>(pending.size());
+        for (Item item : pending.values()) {
+            String shortCode = item.customCode() != null ? item.customCode() : generated.next();
+            rows.add(new NewUrl(item.url(), item.urlHash(), shortCode, item.redirectType()));
+        }
+        return rows;
+    }
+
+    private static void markAll(List<Integer> indexes, Item[] items, BatchShortenResult[] results,
+            int firstIndex, Status status, String error) {
+        for (int i : indexes) {
+            results[i] = BatchShortenResult.error(firstIndex + i, status, items[i].url(), error);
+        }
+    }
+}
@@ -0,0 +1,281 @@
+package com.adewunmi.urlshortener.service;
+
+import com.adewunmi.urlshortener.config.BackgroundThreadFactory;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.io.ClassPathResource;
+import org.springframework.data.redis.connection.Message;
+import org.springframework.data.redis.connection.MessageListener;
+import org.springframework.data.redis.connection.SubscriptionListener;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.core.script.RedisScript;
+import org.springframework.data.redis.listener.ChannelTopic;
+import org.springframework.data.redis.listener.RedisMessageListenerContainer;
+import org.springframework.stereotype.Component;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Propagates cache invalidations to every node over Redis pub/sub, so local tiers can use
+ * long TTLs without serving deleted or changed links. Messages are
+ * {@code seq|origin|I<shortCode>} (one code), {@code seq|origin|F} (flush everything) or
+ * {@code seq|origin|N<code>\n<code>...} (codes just created, for the short code filter).
+ * The sequence number comes from a Lua script that numbers and publishes in one step.
+ *
+ * <p>Pub/sub does not queue messages for a subscriber that is away. A node therefore
+ * flushes its local tiers whenever it (re)subscribes and whenever it sees a gap in the
+ * sequence, so a missed message costs a round of cache misses rather than a stale link.
+ * Each flush also bumps the cache epoch, so loads that were in flight across it do not
+ * put stale values back, and the short code filter reads the codes it may have missed
+ * from the table before it answers not found again.
+ */
+@Component
+@Slf4j
+public class CacheInvalidationBus implements MessageListener, SubscriptionListener {
+
+    private static final String SEQUENCE_KEY = "cache:invalidation:seq";
+    private static final char INVALIDATE = 'I';
+    private static final char FLUSH = 'F';
+    private static final char CREATED = 'N';
+    private static final char CODE_SEPARATOR = '\n';
+    private static final int MAX_CODES_PER_MESSAGE = 1000;
+
+    private final CacheService cacheService;
+    private final ShortCodeFilterService shortCodeFilterService;
+    private final BackgroundThreadFactory threadFactory;
+    private final StringRedisTemplate redisTemplate;
+    private final boolean enabled;
+    private final String channel;
+    private final long recoveryIntervalMillis;
+    private final RedisScript<Long> publishScript;
+    private final String nodeId;
+
+    private final Counter published;
+    private final Counter applied;
+    private final Counter gapFlushes;
+    private final Counter publishFailures;
+
+    private RedisMessageListenerContainer container;
+    // Messages are handled one at a time, in arrival order, so sequence gaps are meaningful
+    private ExecutorService dispatcher;
+    private volatile boolean subscribed;
+    private final AtomicInteger subscriptions = new AtomicInteger();
+    private volatile long lastSequence = -1;
+
+    public CacheInvalidationBus(CacheService cacheService,
+            ShortCodeFilterService shortCodeFilterService,
+            BackgroundThreadFactory threadFactory,
+            @Autowired(required = false) StringRedisTemplate redisTemplate,
+            @Value("${cache.invalidation.enabled:false}") boolean enabled,
+            @Value("${cache.invalidation.channel:cache:invalidation}") String channel,
+            @Value("${cache.invalidation.recovery-interval-ms:5000}") long recoveryIntervalMillis,
+            MeterRegistry meterRegistry) {
+        this.cacheService = cacheService;
+        this.shortCodeFilterService = shortCodeFilterService;
+        this.threadFactory = threadFactory;
+        this.redisTemplate = redisTemplate;
+        this.enabled = enabled && redisTemplate != null;
+        this.channel = channel;
+        this.recoveryIntervalMillis = recoveryIntervalMillis;
+        this.publishScript = RedisScript.of(new ClassPathResource("scripts/publish_invalidation.lua"), Long.class);
+        this.nodeId = Long.toHexString(ThreadLocalRandom.current().nextLong());
+
+        this.published = busCounter(meterRegistry, "published");
+        this.applied = busCounter(meterRegistry, "applied");
+        this.gapFlushes = busCounter(meterRegistry, "gap_flush");
+        this.publishFailures = busCounter(meterRegistry, "publish_failed");
+
+        if (enabled && redisTemplate == null) {
+            log.warn("Cache invalidation bus is enabled but Redis is not configured; invalidations stay on this node");
+        }
+    }
+
+    private static Counter busCounter(MeterRegistry meterRegistry, String event) {
+        return Counter.builder("urlshortener.cache.invalidation")
+                .description("Cross-node cache invalidation messages")
+                .tag("event", event)
+                .register(meterRegistry);
+    }
+
+    @PostConstruct
+    void subscribe() {
+        if (!enabled) {
+            return;
+        }
+        // Other nodes announce their new codes here; until subscribed this node would miss them
+        shortCodeFilterService.announcementsStopped();
+        dispatcher = Executors.newSingleThreadExecutor(task -> threadFactory.newThread("cache-invalidation", task));
+        container = new RedisMessageListenerContainer();
+        container.setConnectionFactory(redisTemplate.getRequiredConnectionFactory());
+        container.setTaskExecutor(dispatcher);
+        container.setRecoveryInterval(recoveryIntervalMillis);
+        container.addMessageListener(this, new ChannelTopic(channel));
+        container.afterPropertiesSet();
+        container.start();
+        log.info("Cache invalidation bus started on channel {} (node {})", channel, nodeId);
+    }
+
+    @PreDestroy
+    void unsubscribe() throws Exception {
+        if (container != null) {
+            container.destroy();
+            dispatcher.shutdownNow();
+        }
+    }
+
+    /**
+     * Removes one mapping from Redis and from the local tiers of every node.
+     */
+    public void invalidate(String shortCode) {
+        cacheService.invalidateUrlCache(shortCode);
+        publish(INVALIDATE + shortCode);
+    }
+
+    /**
+     * Empties the local tiers of every node. Redis itself is left alone.
+     */
+    public void flushLocalCaches() {
+        cacheService.clearLocalCache();
+        publish(String.valueOf(FLUSH));
+    }
+
+    /**
+     * Adds newly created codes to the short code filter of every node, so no node answers
+     * not found for them while waiting for its next filter refresh.
+     */
+    public void announceCreated(Collection<String> shortCodes) {
+        if (shortCodes.isEmpty()) {
+            return;
+        }
+        StringBuilder operation = new StringBuilder().append(CREATED);
+        int inMessage = 0;
+        for (String shortCode : shortCodes) {
+            shortCodeFilterService.add(shortCode);
+            if (inMessage == MAX_CODES_PER_MESSAGE) {
+                publish(operation.toString());
+                operation.setLength(1);
+                inMessage = 0;
+            }
+            if (inMessage > 0) {
+                operation.append(CODE_SEPARATOR);
+            }
+            operation.append(shortCode);
+            inMessage++;
+        }
+        publish(operation.toString());
+    }
+
+    private void publish(String operation) {
+        if (!enabled) {
+            return;
+        }
+        try {
+            redisTemplate.execute(publishScript, List.of(SEQUENCE_KEY), channel, nodeId + '|' + operation);
+            published.increment();
+        } catch (Exception e) {
+            // Other nodes are probably cut off from Redis too and flush when they resubscribe
+            publishFailures.increment();
+            log.warn("Failed to publish cache invalidation {}: {}", operation, e.getMessage());
+        }
+    }
+
+    @Override
+    public void onMessage(Message message, byte[] pattern) {
+        String body = new String(message.getBody(), StandardCharsets.UTF_8);
+        int first = body.indexOf('|');
+        int second = first < 0 ? -1 : body.indexOf('|', first + 1);
+        if (second < 0 || second + 1 >= body.length()) {
+            log.warn("Ignoring malformed cache invalidation message: {}", body);
+            return;
+        }
+
+        long sequence;
+        try {
+            sequence = Long.parseLong(body, 0, first, 10);
+        } catch (NumberFormatException e) {
+            log.warn("Ignoring malformed cache invalidation message: {}", body);
+            return;
+        }
+        // A skipped number is a lost message; a number that went backwards means Redis was reset
+        if (lastSequence >= 0 && sequence != lastSequence + 1) {
+            flushAfterGap("sequence jumped from " + lastSequence + " to " + sequence);
+        }
+        lastSequence = sequence;
+
+        if (nodeId.equals(body.substring(first + 1, second))) {
+            // Our own message; already applied when it was published
+            return;
+        }
+        char operation = body.charAt(second + 1);
+        if (operation == INVALIDATE) {
+            cacheService.invalidateLocal(body.substring(second + 2));
+        } else if (operation == FLUSH) {
+            cacheService.clearLocalCache();
+        } else if (operation == CREATED) {
+            // An imported code containing the separator arrives split; the filter refresh adds it
+            for (int from = second + 2, to; from < body.length(); from = to + 1) {
+                to = body.indexOf(CODE_SEPARATOR, from);
+                if (to < 0) {
+                    to = body.length();
+                }
+                shortCodeFilterService.add(body.substring(from, to));
+            }
+        } else {
+            log.warn("Ignoring unknown cache invalidation operation: {}", body);
+            return;
+        }
+        applied.increment();
+    }
+
+    @Override
+    public void onChannelSubscribed(byte[] channel, long count) {
+        subscribed = true;
+        // The first subscription starts from an empty cache; any later one follows a gap
+        if (subscriptions.getAndIncrement() > 0) {
+            lastSequence = -1;
+            flushAfterGap("resubscribed to " + new String(channel, StandardCharsets.UTF_8));
+        } else {
+            shortCodeFilterService.announcementsResumed();
+        }
+    }
+
+    @Override
+    public void onChannelUnsubscribed(byte[] channel, long count) {
+        subscribed = false;
+        shortCodeFilterService.announcementsStopped();
+    }
+
+    private void flushAfterGap(String reason) {
+        gapFlushes.increment();
+        cacheService.clearLocalCache();
+        shortCodeFilterService.announcementsResumed();
+        log.warn("Cache invalidation bus gap ({}); flushed local caches", reason);
+    }
+
+    public Map<String, Object> getStats() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("enabled", enabled);
+        stats.put("nodeId", nodeId);
+        stats.put("subscribed", enabled && subscribed && container != null && container.isListening());
+        stats.put("lastSequence", lastSequence);
+        stats.put("cacheEpoch", cacheService.currentEpoch());
+        stats.put("published", (long) published.count());
+        stats.put("applied", (long) applied.count());
+        stats.put("gapFlushes", (long) gapFlushes.count());
+        stats.put("publishFailures", (long) publishFailures.count());
+        return stats;
+    }
+}
@@ -1,14 +1,44 @@
 package com.adewunmi.urlshortener.service;
 
+import com.adewunmi.urlshortener.config.BackgroundThreadFactory;
+import com.adewunmi.urlshortener.dto.CachedUrl;
+import com.adewunmi.urlshortener.entity.Url;
+import com.adewunmi.urlshortener.repository.UrlRepository;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.CacheLoader;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.Expiry;
+import com.github.benmanes.caffeine.cache.LoadingCache;
+import com.github.benmanes.caffeine.cache.stats.CacheStats;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import jakarta.annotation.PreDestroy;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Autowired;
-import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.redis.core.RedisOperations;
 import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.data.redis.core.SessionCallback;
+import org.springframework.data.redis.core.ValueOperations;
 import org.springframework.stereotype.Service;
 
+import java.nio.ByteBuffer;
 import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.LinkedHashMap;
 import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
 
 @Service
 @Slf4j
@@ -17,57 +47,437 @@ public class CacheService {
     private final RedisTemplate<String, Object> redisTemplate;
     private final boolean redisEnabled;
 
-    // In-memory fallback cache for when Redis is not available
-    private final Map<String, String> inMemoryCache = new ConcurrentHashMap<>();
+    private final UrlRepository urlRepository;
+    private final SnapshotStore snapshotStore;
+
+    // Bounded in-process tier consulted before Redis on every lookup.
+    // Caffeine uses W-TinyLFU admission, so a scan of random codes cannot evict the hot set.
+    // Entries read late in their TTL are reloaded in the background (refresh-ahead), and an
+    // entry whose reload fails keeps being served for a grace period past its TTL.
+    private final LoadingCache<String, CachedUrl> localCache;
     private final Map<String, Long> clickCounts = new ConcurrentHashMap<>();
 
+    // Digests of recently shortened URLs -> short code, so repeat shortens skip the database
+    private final Cache<ByteBuffer, String> digestCache;
+
+    // Numbers every invalidation. A load notes the epoch it started at, and its result is
+    // cached only if its own code was not invalidated (or the tiers flushed) since then
+    private final AtomicLong epoch = new AtomicLong();
+    // Short code -> epoch of its latest invalidation. Bounded: a forgotten mark, like a
+    // flush, raises forgottenThrough, which treats every load started before it as stale
+    private final Cache<String, Long> invalidatedAt;
+    private final AtomicLong forgottenThrough = new AtomicLong();
+
+    // Lookup latency per tier and result, pre-registered so the redirect path does no meter lookups
+    private final Timer localHit;
+    private final Timer localMiss;
+    private final Timer snapshotHit;
+    private final Timer snapshotMiss;
+    private final Timer redisHit;
+    private final Timer redisMiss;
+    private final Timer redisError;
+
+    private final Duration localTtl;
+    // How long after its last load a local entry may be served while reloads are failing
+    private final Duration staleLifetime;
+
+    // Background reloads: bounded concurrency, paused for a while after a failed reload
+    private final ExecutorService refreshExecutor;
+    private final Semaphore refreshPermits;
+    private final long refreshBackoffNanos;
+    private volatile boolean refreshPaused;
+    private volatile long refreshRetryAtNanos;
+    private final Counter refreshed;
+    private final Counter refreshRemoved;
+    private final Counter refreshFailed;
+    private final Counter refreshSkipped;
+
     private static final String URL_MAPPING_PREFIX = "url:mapping:";
     private static final Duration DEFAULT_TTL = Duration.ofHours(24);
 
-    public CacheService(@Autowired(required = false) RedisTemplate<String, Object> redisTemplate) {
+    // Rough per-entry overhead (node, key/value headers) used by the weigher
+    private static final int ENTRY_OVERHEAD_BYTES = 96;
+
+    // Invalidation marks kept per code; far more than can race a load in practice
+    private static final int TRACKED_INVALIDATIONS = 10_000;
+
+    public CacheService(@Autowired(required = false) RedisTemplate<String, Object> redisTemplate,
+            UrlRepository urlRepository,
+            BackgroundThreadFactory threadFactory,
+            SnapshotStore snapshotStore,
+            @Value("${cache.local.maximum-weight-bytes:67108864}") long localMaximumWeight,
+            @Value("${cache.local.ttl-minutes:10}") long localTtlMinutes,
+            @Value("${cache.digest.maximum-size:100000}") long digestMaximumSize,
+            @Value("${cache.refresh.enabled:true}") boolean refreshEnabled,
+            @Value("${cache.refresh.ahead-fraction:0.8}") double refreshAheadFraction,
+            @Value("${cache.refresh.stale-grace-minutes:30}") long staleGraceMinutes,
+            @Value("${cache.refresh.concurrency:4}") int refreshConcurrency,
+            @Value("${cache.refresh.backoff-ms:5000}") long refreshBackoffMillis,
+            MeterRegistry meterRegistry) {
         this.redisTemplate = redisTemplate;
         this.redisEnabled = redisTemplate != null;
+        this.urlRepository = urlRepository;
+        this.snapshotStore = snapshotStore;
+        this.refreshExecutor = Executors.newFixedThreadPool(refreshConcurrency,
+                task -> threadFactory.newThread("cache-refresh", task));
+        this.refreshPermits = new Semaphore(refreshConcurrency);
+        this.refreshBackoffNanos = TimeUnit.MILLISECONDS.toNanos(refreshBackoffMillis);
+
+        this.localTtl = Duration.ofMinutes(localTtlMinutes);
+        this.staleLifetime = localTtl.plusMinutes(staleGraceMinutes);
+        Caffeine<String, CachedUrl> localBuilder = Caffeine.newBuilder()
+                .maximumWeight(localMaximumWeight)
+                .weigher((String key, CachedUrl value) ->
+                        ENTRY_OVERHEAD_BYTES + 2 * (key.length() + value.getOriginalUrl().length()))
+                // Writing, not creating: a successful reload restarts the entry's lifetime.
+                // Only a failed reload extends it, see extendForGrace
+                .expireAfter(Expiry.writing((String key, CachedUrl value) -> ttlFor(value, localTtl)))
+                .recordStats();
+        if (refreshEnabled) {
+            localBuilder.refreshAfterWrite(Duration.ofMillis((long) (localTtl.toMillis() * refreshAheadFraction)));
+        }
+        this.localCache = localBuilder.build(new Refresher());
+        this.digestCache = Caffeine.newBuilder()
+                .maximumSize(digestMaximumSize)
+                .recordStats()
+                .build();
+        this.invalidatedAt = Caffeine.newBuilder()
+                .maximumSize(TRACKED_INVALIDATIONS)
+                .<String, Long>evictionListener((shortCode, at, cause) -> forgetThrough(at))
+                .build();
+
+        CaffeineCacheMetrics.monitor(meterRegistry, localCache, "url.local");
+        CaffeineCacheMetrics.monitor(meterRegistry, digestCache, "url.digest");
+        this.localHit = lookupTimer(meterRegistry, "local", "hit");
+        this.localMiss = lookupTimer(meterRegistry, "local", "miss");
+        this.snapshotHit = lookupTimer(meterRegistry, "snapshot", "hit");
+        this.snapshotMiss = lookupTimer(meterRegistry, "snapshot", "miss");
+        this.redisHit = lookupTimer(meterRegistry, "redis", "hit");
+        this.redisMiss = lookupTimer(meterRegistry, "redis", "miss");
+        this.redisError = lookupTimer(meterRegistry, "redis", "error");
+        this.refreshed = refreshCounter(meterRegistry, "refreshed");
+        this.refreshRemoved = refreshCounter(meterRegistry, "removed");
+        this.refreshFailed = refreshCounter(meterRegistry, "failed");
+        this.refreshSkipped = refreshCounter(meterRegistry, "skipped");
 
         if (!redisEnabled) {
             log.warn("Redis is not available. Using in-memory cache (not suitable for production scaling)");
         }
     }
 
-    public void cacheUrlMapping(String shortCode, String originalUrl) {
+    private static Timer lookupTimer(MeterRegistry meterRegistry, String tier, String result) {
+        return Timer.builder("urlshortener.cache.lookup")
+                .description("URL mapping lookups per cache tier")
+                .tag("tier", tier)
+                .tag("result", result)
+                .register(meterRegistry);
+    }
+
+    private static Counter refreshCounter(MeterRegistry meterRegistry, String outcome) {
+        return Counter.builder("urlshortener.cache.refresh")
+                .description("Background reloads of local cache entries")
+                .tag("outcome", outcome)
+                .register(meterRegistry);
+    }
+
+    /**
+     * Reloads local entries from the database when Caffeine schedules a refresh. Redirects
+     * keep getting the current value while the reload runs. A reload that is skipped or
+     * fails completes as cancelled, which makes Caffeine keep the current value quietly;
+     * if it failed, or was held back because reloads are failing, the entry is also kept
+     * past its TTL until its stale grace period runs out. A link that no longer exists
+     * reloads as null, which removes the entry.
+     */
+    private final class Refresher implements CacheLoader<String, CachedUrl> {
+
+        @Override
+        public CachedUrl load(String shortCode) {
+            return loadFromDatabase(shortCode);
+        }
+
+        @Override
+        public CompletableFuture<CachedUrl> asyncReload(String shortCode, CachedUrl oldValue, Executor executor) {
+            if (refreshPaused && System.nanoTime() - refreshRetryAtNanos < 0) {
+                refreshSkipped.increment();
+                extendForGrace(shortCode, oldValue);
+                return CompletableFuture.failedFuture(new CancellationException());
+            }
+            if (!refreshPermits.tryAcquire()) {
+                refreshSkipped.increment();
+                return CompletableFuture.failedFuture(new CancellationException());
+            }
+            // Completed by hand: supplyAsync would wrap the CancellationException
+            CompletableFuture<CachedUrl> future = new CompletableFuture<>();
+            refreshExecutor.execute(() -> {
+                try {
+                    future.complete(reloadFromDatabase(shortCode, oldValue));
+                } catch (RuntimeException e) {
+                    future.completeExceptionally(e);
+                } finally {
+                    refreshPermits.release();
+                }
+            });
+            return future;
+        }
+
+        private CachedUrl reloadFromDatabase(String shortCode, CachedUrl oldValue) {
+            long loadedAtEpoch = epoch.get();
+            CachedUrl value;
+            try {
+                value = loadFromDatabase(shortCode);
+            } catch (Exception e) {
+                refreshFailed.increment();
+                extendForGrace(shortCode, oldValue);
+                refreshRetryAtNanos = System.nanoTime() + refreshBackoffNanos;
+                if (!refreshPaused) {
+                    refreshPaused = true;
+                    log.warn("Cache refresh failed, serving cached entries until their grace period ends: {}",
+                            e.getMessage());
+                }
+                throw new CancellationException(e.getMessage());
+            }
+            if (refreshPaused) {
+                refreshPaused = false;
+                log.info("Cache refresh recovered");
+            }
+
+            if (value == null) {
+                refreshRemoved.increment();
+                deleteFromRedis(shortCode);
+                return null;
+            }
+            if (!writeToRedisIfCurrent(shortCode, value, loadedAtEpoch)) {
+                // Invalidated while reloading; the invalidation drops the local entry too
+                refreshSkipped.increment();
+                throw new CancellationException();
+            }
+            refreshed.increment();
+            return value;
+        }
+    }
+
+    /**
+     * Lets a local entry whose reload failed be served until {@code stale-grace-minutes}
+     * past its TTL, counted from when it was last loaded so repeated failures cannot keep
+     * it forever, and never past the link's own expiry.
+     */
+    private void extendForGrace(String shortCode, CachedUrl value) {
+        localCache.policy().refreshAfterWrite()
+                .flatMap(refresh -> refresh.ageOf(shortCode))
+                .map(age -> ttlFor(value, staleLifetime.minus(age)))
+                .filter(remaining -> remaining.isPositive())
+                .ifPresent(remaining -> localCache.policy().expireVariably()
+                        .ifPresent(expiry -> expiry.setExpiresAfter(shortCode, remaining)));
+    }
+
+    private CachedUrl loadFromDatabase(String shortCode) {
+        Optional<Url> url = urlRepository.findByShortCode(shortCode);
+        return url.map(CachedUrl::from).orElse(null);
+    }
+
+    @PreDestroy
+    void stopRefresh() {
+        refreshExecutor.shutdownNow();
+    }
+
+    public void cacheUrlMapping(String shortCode, CachedUrl cachedUrl) {
+        Duration ttl = ttlFor(cachedUrl, DEFAULT_TTL);
+        if (ttl.isZero()) {
+            // Already expired; never serve it from cache
+            return;
+        }
+
+        localCache.put(shortCode, cachedUrl);
+
         if (redisEnabled) {
             try {
                 String key = URL_MAPPING_PREFIX + shortCode;
-                redisTemplate.opsForValue().set(key, originalUrl, DEFAULT_TTL);
-                log.debug("Cached URL mapping in Redis: {} -> {}", shortCode, originalUrl);
+                redisTemplate.opsForValue().set(key, cachedUrl.encode(), ttl);
+                log.debug("Cached URL mapping in Redis: {} -> {}", shortCode, cachedUrl.getOriginalUrl());
             } catch (Exception e) {
-                log.error("Failed to cache in Redis, using in-memory fallback", e);
-                inMemoryCache.put(shortCode, originalUrl);
+                log.error("Failed to cache in Redis, keeping in-memory copy only", e);
             }
         } else {
-            inMemoryCache.put(shortCode, originalUrl);
-            log.debug("Cached URL mapping in memory: {} -> {}", shortCode, originalUrl);
+            log.debug("Cached URL mapping in memory: {} -> {}", shortCode, cachedUrl.getOriginalUrl());
+        }
+    }
+
+    /**
+     * Caches a mapping loaded while the cache was at {@code loadedAtEpoch}, unless this code
+     * was invalidated in the meantime and the value may be stale. Other codes' invalidations
+     * do not matter, and a stale value is simply not cached: nothing else is invalidated.
+     */
+    public void cacheUrlMapping(String shortCode, CachedUrl cachedUrl, long loadedAtEpoch) {
+        if (isStale(shortCode, loadedAtEpoch) || ttlFor(cachedUrl, DEFAULT_TTL).isZero()) {
+            return;
+        }
+        localCache.put(shortCode, cachedUrl);
+        if (!writeToRedisIfCurrent(shortCode, cachedUrl, loadedAtEpoch)) {
+            localCache.asMap().remove(shortCode, cachedUrl);
+        }
+    }
+
+    public long currentEpoch() {
+        return epoch.get();
+    }
+
+    private boolean isStale(String shortCode, long loadedAtEpoch) {
+        if (forgottenThrough.get() > loadedAtEpoch) {
+            return true;
         }
+        Long at = invalidatedAt.getIfPresent(shortCode);
+        return at != null && at > loadedAtEpoch;
     }
 
-    public String getCachedUrl(String shortCode) {
+    /**
+     * Writes a loaded mapping to Redis unless its code was invalidated since the load began.
+     * An invalidation marks the code before deleting anything, so one that lands while the
+     * write is in flight shows up in the second check, and the write is taken back.
+     *
+     * @return false if the value is stale and was not (or no longer is) cached
+     */
+    private boolean writeToRedisIfCurrent(String shortCode, CachedUrl cachedUrl, long loadedAtEpoch) {
+        if (isStale(shortCode, loadedAtEpoch)) {
+            return false;
+        }
+        if (!redisEnabled) {
+            return true;
+        }
+        writeToRedis(liveMappings(Map.of(shortCode, cachedUrl)));
+        if (isStale(shortCode, loadedAtEpoch)) {
+            deleteFromRedis(shortCode);
+            return false;
+        }
+        return true;
+    }
+
+    /**
+     * Caches many mappings at once. The Redis writes go out in a single pipeline, so the
+     * batch costs one round trip instead of one per link.
+     */
+    public void cacheUrlMappings(Map<String, CachedUrl> mappings) {
+        Map<String, CachedUrl> live = liveMappings(mappings);
+        localCache.putAll(live);
         if (redisEnabled) {
+            writeToRedis(live);
+        }
+    }
+
+    /**
+     * Caches many mappings loaded while the cache was at {@code loadedAtEpoch}, skipping codes
+     * invalidated since. Like the single-mapping version, codes invalidated while the
+     * pipeline is in flight are taken back out afterwards.
+     */
+    public void cacheUrlMappings(Map<String, CachedUrl> mappings, long loadedAtEpoch) {
+        Map<String, CachedUrl> live = liveMappings(mappings);
+        live.keySet().removeIf(shortCode -> isStale(shortCode, loadedAtEpoch));
+        localCache.putAll(live);
+        if (redisEnabled) {
+            writeToRedis(live);
+        }
+        live.forEach((shortCode, cachedUrl) -> {
+            if (isStale(shortCode, loadedAtEpoch)) {
+                deleteFromRedis(shortCode);
+                localCache.asMap().remove(shortCode, cachedUrl);
+            }
+        });
+    }
+
+    /**
+     * Writes mappings to Redis only, leaving the in-process tier to fill on demand. Used for
+     * bulk loads that would otherwise churn the local hot set.
+     *
+     * @return the number of mappings written
+     */
+    public int preloadRedis(Map<String, CachedUrl> mappings) {
+        if (!redisEnabled) {
+            return 0;
+        }
+        Map<String, CachedUrl> live = liveMappings(mappings);
+        return writeToRedis(live) ? live.size() : 0;
+    }
+
+    private static Map<String, CachedUrl> liveMappings(Map<String, CachedUrl> mappings) {
+        Map<String, CachedUrl> live = new LinkedHashMap<>();
+        mappings.forEach((shortCode, cachedUrl) -> {
+            if (!ttlFor(cachedUrl, DEFAULT_TTL).isZero()) {
+                live.put(shortCode, cachedUrl);
+            }
+        });
+        return live;
+    }
+
+    private boolean writeToRedis(Map<String, CachedUrl> live) {
+        if (live.isEmpty()) {
+            return true;
+        }
+        try {
+            redisTemplate.executePipelined(new SessionCallback<Object>() {
+                @Override
+                @SuppressWarnings("unchecked")
+                public <K, V> Object execute(RedisOperations<K, V> operations) {
+                    // The operations are this template's, so its key and value types
+                    ValueOperations<String, Object> values =
+                            (ValueOperations<String, Object>) operations.opsForValue();
+                    live.forEach((shortCode, cachedUrl) -> values.set(URL_MAPPING_PREFIX + shortCode,
+                            cachedUrl.encode(), ttlFor(cachedUrl, DEFAULT_TTL)));
+                    return null;
+                }
+            });
+            log.debug("Cached {} URL mappings in Redis", live.size());
+            return true;
+        } catch (Exception e) {
+            log.error("Failed to cache batch in Redis, keeping in-memory copies only", e);
+            return false;
+        }
+    }
+
+    public CachedUrl getCachedUrl(String shortCode) {
+        long start = System.nanoTime();
+        CachedUrl value = localCache.getIfPresent(shortCode);
+        if (value != null) {
+            localHit.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+            log.debug("Cache HIT (in-memory) for short code: {}", shortCode);
+            return value;
+        }
+        localMiss.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+
+        if (snapshotStore.isEnabled()) {
+            // Not copied into the local tier: the snapshot is in-process already, and copying
+            // would let one-off lookups push out the hot set
+            start = System.nanoTime();
+            value = snapshotStore.lookup(shortCode);
+            if (value != null) {
+                snapshotHit.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+                log.debug("Cache HIT (snapshot) for short code: {}", shortCode);
+                return value;
+            }
+            snapshotMiss.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+        }
+
+        if (redisEnabled) {
+            start = System.nanoTime();
+            // Read before the GET, so an invalidation that deletes the key after we read it
+            // keeps the old value out of the local tier
+            long readAtEpoch = epoch.get();
             try {
                 String key = URL_MAPPING_PREFIX + shortCode;
-                Object value = redisTemplate.opsForValue().get(key);
+                Object redisValue = redisTemplate.opsForValue().get(key);
 
-                if (value != null) {
-                    log.debug("Cache HIT (Redis) for short code: {}", shortCode);
-                    return value.toString();
+                if (redisValue != null) {
+                    value = CachedUrl.decode(redisValue.toString());
+                    if (value != null) {
+                        redisHit.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+                        log.debug("Cache HIT (Redis) for short code: {}", shortCode);
+                        promoteToLocal(shortCode, value, readAtEpoch);
+                        return value;
+                    }
                 }
+                redisMiss.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
             } catch (Exception e) {
-                log.error("Failed to get from Redis, checking in-memory fallback", e);
-                return inMemoryCache.get(shortCode);
-            }
-        } else {
-            String value = inMemoryCache.get(shortCode);
-            if (value != null) {
-                log.debug("Cache HIT (in-memory) for short code: {}", shortCode);
-                return value;
+                redisError.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+                log.error("Failed to get from Redis for short code: {}", shortCode, e);
+                return null;
             }
         }
 
@@ -75,7 +485,74 @@ public class CacheService {
         return null;
     }
 
+    /**
+     * Copies a Redis hit into the local tier unless its code was invalidated since the read.
+     * Checked again after the put, for an invalidation that drops the local entry in between.
+     */
+    private void promoteToLocal(String shortCode, CachedUrl value, long readAtEpoch) {
+        if (isStale(shortCode, readAtEpoch)) {
+            return;
+        }
+        localCache.put(shortCode, value);
+        if (isStale(shortCode, readAtEpoch)) {
+            localCache.asMap().remove(shortCode, value);
+        }
+    }
+
+    /**
+     * Cache lifetime for an entry: the default, shortened so it never outlives the link's expiry.
+     */
+    private static Duration ttlFor(CachedUrl cachedUrl, Duration defaultTtl) {
+        if (cachedUrl.getExpiresAt() == null) {
+            return defaultTtl;
+        }
+        Duration untilExpiry = Duration.between(LocalDateTime.now(), cachedUrl.getExpiresAt());
+        if (untilExpiry.isNegative()) {
+            return Duration.ZERO;
+        }
+        return untilExpiry.compareTo(defaultTtl) < 0 ? untilExpiry : defaultTtl;
+    }
+
+    public String getShortCodeForDigest(byte[] urlHash) {
+        return digestCache.getIfPresent(ByteBuffer.wrap(urlHash));
+    }
+
+    public void cacheDigest(byte[] urlHash, String shortCode) {
+        digestCache.put(ByteBuffer.wrap(urlHash), shortCode);
+    }
+
     public void invalidateUrlCache(String shortCode) {
+        // Marked first, so a load that writes after the delete below notices and undoes it
+        markInvalidated(shortCode);
+        deleteFromRedis(shortCode);
+        dropLocal(shortCode);
+    }
+
+    /**
+     * Drops a mapping from this node's in-process tiers only, leaving Redis alone. The
+     * snapshot cannot drop single entries, so it skips the code until its next rebuild.
+     */
+    public void invalidateLocal(String shortCode) {
+        markInvalidated(shortCode);
+        dropLocal(shortCode);
+    }
+
+    private void markInvalidated(String shortCode) {
+        invalidatedAt.put(shortCode, epoch.incrementAndGet());
+    }
+
+    private void forgetThrough(long at) {
+        forgottenThrough.accumulateAndGet(at, Math::max);
+    }
+
+    private void dropLocal(String shortCode) {
+        snapshotStore.bypass(shortCode);
+        localCache.invalidate(shortCode);
+        // Rare, so a scan of the digest tier is acceptable; it is keyed by URL, not code
+        digestCache.asMap().values().removeIf(shortCode::equals);
+    }
+
+    private void deleteFromRedis(String shortCode) {
         if (redisEnabled) {
             try {
                 String key = URL_MAPPING_PREFIX + shortCode;
@@ -85,20 +562,50 @@ public class CacheService {
                 log.error("Failed to invalidate Redis cache", e);
             }
         }
-        inMemoryCache.remove(shortCode);
+    }
+
+    public void clearLocalCache() {
+        forgetThrough(epoch.incrementAndGet());
+        snapshotStore.flush();
+        localCache.invalidateAll();
+        digestCache.invalidateAll();
+    }
+
+    public Map<String, Object> getLocalCacheStats() {
+        CacheStats stats = localCache.stats();
+        Map<String, Object> result = new LinkedHashMap<>();
+        result.put("estimatedSize", localCache.estimatedSize());
+        result.put("weightedSizeBytes", localCache.policy().eviction()
+                .map(eviction -> eviction.weightedSize().orElse(0L))
+                .orElse(0L));
+        result.put("hitCount", stats.hitCount());
+        result.put("missCount", stats.missCount());
+        result.put("hitRate", stats.hitRate());
+        result.put("evictionCount", stats.evictionCount());
+        result.put("evictionWeightBytes", stats.evictionWeight());
+        result.put("refreshed", (long) refreshed.count());
+        result.put("refreshRemoved", (long) refreshRemoved.count());
+        result.put("refreshFailed", (long) refreshFailed.count());
+        result.put("refreshSkipped", (long) refreshSkipped.count());
+        result.put("refreshPaused", refreshPaused);
+        return result;
     }
 
     public void incrementClickCount(String shortCode) {
+        incrementClickCount(shortCode, 1L);
+    }
+
+    public void incrementClickCount(String shortCode, long delta) {
         if (redisEnabled) {
             try {
                 String key = "url:clicks:" + shortCode;
-                redisTemplate.opsForValue().increment(key);
+                redisTemplate.opsForValue().increment(key, delta);
             } catch (Exception e) {
                 log.error("Failed to increment in Redis, using in-memory", e);
-                clickCounts.merge(shortCode, 1L, Long::sum);
+                clickCounts.merge(shortCode, delta, Long::sum);
             }
         } else {
-            clickCounts.merge(shortCode, 1L, Long::sum);
+            clickCounts.merge(shortCode, delta, Long::sum);
         }
     }
 
@@ -118,4 +625,4 @@ public class CacheService {
     public boolean isRedisEnabled() {
         return redisEnabled;
     }
-}
\ No newline at end of file
+}
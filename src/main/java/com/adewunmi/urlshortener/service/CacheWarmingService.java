@@ -0,0 +1,161 @@
+package com.adewunmi.urlshortener.service;
+
+import com.adewunmi.urlshortener.config.BackgroundThreadFactory;
+import com.adewunmi.urlshortener.dto.CachedUrl;
+import com.adewunmi.urlshortener.repository.HotUrlRepository;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Service;
+
+import java.time.Duration;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Loads the most clicked links into the local tier and Redis, at startup and on demand,
+ * so a fresh node or a flushed Redis does not send every redirect to the database.
+ * Redis writes go out in pipelined batches. Until the startup warm-up has finished (or
+ * the readiness timeout has passed) the node reports itself as not ready.
+ */
+@Service
+@Slf4j
+public class CacheWarmingService {
+
+    public enum Phase {
+        DISABLED, PENDING, WARMING, DONE, FAILED
+    }
+
+    private final HotUrlRepository hotUrlRepository;
+    private final CacheService cacheService;
+    private final BackgroundThreadFactory threadFactory;
+    private final boolean enabled;
+    private final int topN;
+    private final int lookbackDays;
+    private final int batchSize;
+    private final boolean holdReadiness;
+    private final Duration readinessTimeout;
+    private final LocalDateTime createdAt = LocalDateTime.now();
+    private final AtomicBoolean running = new AtomicBoolean();
+
+    private volatile Phase phase;
+    private volatile int target;
+    private volatile int loaded;
+    private volatile LocalDateTime startedAt;
+    private volatile LocalDateTime finishedAt;
+    private volatile String error;
+
+    public CacheWarmingService(HotUrlRepository hotUrlRepository,
+            CacheService cacheService,
+            BackgroundThreadFactory threadFactory,
+            @Value("${cache.warm.enabled:true}") boolean enabled,
+            @Value("${cache.warm.top-n:10000}") int topN,
+            @Value("${cache.warm.lookback-days:7}") int lookbackDays,
+            @Value("${cache.warm.batch-size:1000}") int batchSize,
+            @Value("${cache.warm.hold-readiness:true}") boolean holdReadiness,
+            @Value("${cache.warm.readiness-timeout-seconds:120}") long readinessTimeoutSeconds) {
+        this.hotUrlRepository = hotUrlRepository;
+        this.cacheService = cacheService;
+        this.threadFactory = threadFactory;
+        this.enabled = enabled;
+        this.topN = topN;
+        this.lookbackDays = lookbackDays;
+        this.batchSize = batchSize;
+        this.holdReadiness = holdReadiness;
+        this.readinessTimeout = Duration.ofSeconds(readinessTimeoutSeconds);
+        this.phase = enabled ? Phase.PENDING : Phase.DISABLED;
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void warmOnStartup() {
+        if (enabled) {
+            start();
+        }
+    }
+
+    /**
+     * @return false if a warm-up is already running
+     */
+    public boolean start() {
+        if (!running.compareAndSet(false, true)) {
+            return false;
+        }
+
+        phase = Phase.WARMING;
+        startedAt = LocalDateTime.now();
+        finishedAt = null;
+        error = null;
+        target = 0;
+        loaded = 0;
+
+        threadFactory.newThread("cache-warmer", this::run).start();
+        return true;
+    }
+
+    private void run() {
+        try {
+            // Links invalidated from here on are not written back with their old targets
+            long loadedAtEpoch = cacheService.currentEpoch();
+            Map<String, CachedUrl> hottest = hotUrlRepository.findHottest(
+                    LocalDate.now().minusDays(lookbackDays), topN);
+            target = hottest.size();
+
+            // Hottest first, so a partially warmed cache already holds the links that matter most
+            Map<String, CachedUrl> batch = new LinkedHashMap<>();
+            for (Map.Entry<String, CachedUrl> entry : hottest.entrySet()) {
+                batch.put(entry.getKey(), entry.getValue());
+                if (batch.size() == batchSize) {
+                    loadBatch(batch, loadedAtEpoch);
+                }
+            }
+            loadBatch(batch, loadedAtEpoch);
+
+            phase = Phase.DONE;
+            log.info("Cache warmed with {} links in {} ms", loaded,
+                    Duration.between(startedAt, LocalDateTime.now()).toMillis());
+        } catch (Exception e) {
+            error = e.getMessage();
+            phase = Phase.FAILED;
+            log.error("Cache warm-up failed after {} links; remaining links load on demand", loaded, e);
+        } finally {
+            finishedAt = LocalDateTime.now();
+            running.set(false);
+        }
+    }
+
+    private void loadBatch(Map<String, CachedUrl> batch, long loadedAtEpoch) {
+        if (batch.isEmpty()) {
+            return;
+        }
+        cacheService.cacheUrlMappings(batch, loadedAtEpoch);
+        loaded += batch.size();
+        batch.clear();
+    }
+
+    /**
+     * True while the startup warm-up should keep this node out of the load balancer. A
+     * failed warm-up, or one that overruns the readiness timeout, releases the node.
+     */
+    public boolean isHoldingReadiness() {
+        Phase current = phase;
+        return holdReadiness
+                && (current == Phase.PENDING || current == Phase.WARMING)
+                && Duration.between(createdAt, LocalDateTime.now()).compareTo(readinessTimeout) < 0;
+    }
+
+    public Map<String, Object> getStatus() {
+        Map<String, Object> status = new LinkedHashMap<>();
+        status.put("phase", phase);
+        status.put("target", target);
+        status.put("loaded", loaded);
+        status.put("progress", target > 0 ? (double) loaded / target : (phase == Phase.DONE ? 1.0 : 0.0));
+        status.put("startedAt", startedAt);
+        status.put("finishedAt", finishedAt);
+        status.put("error", error);
+        return status;
+    }
+}
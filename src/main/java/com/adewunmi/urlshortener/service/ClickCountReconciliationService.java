@@ -0,0 +1,57 @@
+package com.adewunmi.urlshortener.service;
+
+import com.adewunmi.urlshortener.repository.ClickBatchRepository;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Brings the denormalized urls.click_count back in line with the clicks table, e.g. after
+ * a failed batch or manual data fixes. Works through the urls table in id ranges so each
+ * transaction only locks a small slice of rows.
+ */
+@Service
+@Slf4j
+public class ClickCountReconciliationService {
+
+    private final ClickBatchRepository clickBatchRepository;
+    private final int rangeSize;
+    private final AtomicBoolean running = new AtomicBoolean();
+
+    public ClickCountReconciliationService(ClickBatchRepository clickBatchRepository,
+            @Value("${click.counter.reconcile-range-size:1000}") int rangeSize) {
+        this.clickBatchRepository = clickBatchRepository;
+        this.rangeSize = rangeSize;
+    }
+
+    @Scheduled(cron = "${click.counter.reconcile-cron:-}")
+    public void scheduledReconcile() {
+        reconcile();
+    }
+
+    /**
+     * @return the number of urls whose click count was corrected, or -1 if a run was
+     *         already in progress
+     */
+    public long reconcile() {
+        if (!running.compareAndSet(false, true)) {
+            log.info("Click count reconciliation already running, skipping");
+            return -1;
+        }
+
+        try {
+            long maxId = clickBatchRepository.findMaxUrlId();
+            long corrected = 0;
+            for (long afterId = 0; afterId < maxId; afterId += rangeSize) {
+                corrected += clickBatchRepository.reconcileClickCounts(afterId, afterId + rangeSize);
+            }
+            log.info("Click count reconciliation finished, corrected {} urls", corrected);
+            return corrected;
+        } finally {
+            running.set(false);
+        }
+    }
+}
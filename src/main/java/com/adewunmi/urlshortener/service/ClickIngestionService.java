@@ -0,0 +1,420 @@
+package com.adewunmi.urlshortener.service;
+
+import com.adewunmi.urlshortener.config.BackgroundThreadFactory;
+import com.adewunmi.urlshortener.dto.ClickEvent;
+import com.adewunmi.urlshortener.repository.ClickBatchRepository;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.stereotype.Service;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Takes click events off the redirect path. Events are put on a bounded queue and a
+ * single background writer drains them in batches into the clicks table. A batch that
+ * fails is retried a few times; one the database rejects is split until the rejected
+ * clicks are isolated, and only those are dead-lettered (logged and counted).
+ *
+ * <p>With the {@link ClickWriteAheadLog} enabled, events are appended to the log instead of
+ * the queue, and the background thread ships them from the log. A batch that fails for a
+ * transient reason (the database is down) is retried until it goes in, so accepted clicks
+ * are lost neither to a crash nor to an outage.
+ */
+@Service
+@Slf4j
+public class ClickIngestionService {
+
+    public enum OverflowPolicy {
+        /** Reject the incoming event when the queue is full */
+        DROP_NEWEST,
+        /** Evict the oldest queued event to make room for the incoming one */
+        DROP_OLDEST,
+        /** Wait up to the offer timeout for space, then drop the incoming event */
+        BLOCK
+    }
+
+    // How often the shipper checks the log for more clicks while a batch lingers
+    private static final long LOG_POLL_MILLIS = 10;
+
+    private final ClickBatchRepository clickBatchRepository;
+    private final CacheService cacheService;
+    private final BackgroundThreadFactory threadFactory;
+    private final ClickWriteAheadLog clickLog;
+    private final BlockingQueue<ClickEvent> queue;
+    private final int batchSize;
+    private final long lingerMillis;
+    private final OverflowPolicy overflowPolicy;
+    private final long offerTimeoutMillis;
+    private final int maxAttempts;
+    private final long writeBackoffMillis;
+    private final long retryBackoffMillis;
+
+    private final AtomicLong enqueued = new AtomicLong();
+    private final AtomicLong dropped = new AtomicLong();
+    private final AtomicLong written = new AtomicLong();
+    private final AtomicLong failed = new AtomicLong();
+    private final AtomicLong deadLettered = new AtomicLong();
+    private final AtomicLong batches = new AtomicLong();
+
+    private final Timer writeTimer;
+    private final DistributionSummary batchSizes;
+
+    private volatile boolean running;
+    private Thread writerThread;
+
+    public ClickIngestionService(ClickBatchRepository clickBatchRepository,
+            CacheService cacheService,
+            BackgroundThreadFactory threadFactory,
+            ClickWriteAheadLog clickLog,
+            @Value("${click.ingest.queue-capacity:10000}") int queueCapacity,
+            @Value("${click.ingest.batch-size:500}") int batchSize,
+            @Value("${click.ingest.linger-ms:200}") long lingerMillis,
+            @Value("${click.ingest.overflow-policy:DROP_NEWEST}") OverflowPolicy overflowPolicy,
+            @Value("${click.ingest.offer-timeout-ms:5}") long offerTimeoutMillis,
+            @Value("${click.ingest.max-attempts:3}") int maxAttempts,
+            @Value("${click.ingest.retry-backoff-ms:200}") long writeBackoffMillis,
+            @Value("${click.wal.retry-backoff-ms:1000}") long retryBackoffMillis,
+            MeterRegistry meterRegistry) {
+        this.clickBatchRepository = clickBatchRepository;
+        this.cacheService = cacheService;
+        this.threadFactory = threadFactory;
+        this.clickLog = clickLog;
+        this.queue = new ArrayBlockingQueue<>(queueCapacity);
+        this.batchSize = batchSize;
+        this.lingerMillis = lingerMillis;
+        this.overflowPolicy = overflowPolicy;
+        this.offerTimeoutMillis = offerTimeoutMillis;
+        this.maxAttempts = Math.max(1, maxAttempts);
+        this.writeBackoffMillis = writeBackoffMillis;
+        this.retryBackoffMillis = retryBackoffMillis;
+
+        clickCounter(meterRegistry, "enqueued", enqueued);
+        clickCounter(meterRegistry, "dropped", dropped);
+        clickCounter(meterRegistry, "written", written);
+        clickCounter(meterRegistry, "failed", failed);
+        clickCounter(meterRegistry, "dead_lettered", deadLettered);
+        Gauge.builder("urlshortener.clicks.queue.depth", queue, BlockingQueue::size)
+                .description("Click events waiting for the writer")
+                .register(meterRegistry);
+        this.writeTimer = Timer.builder("urlshortener.clicks.write")
+                .description("Batch inserts into the clicks table")
+                .register(meterRegistry);
+        this.batchSizes = DistributionSummary.builder("urlshortener.clicks.batch.size")
+                .description("Clicks per written batch")
+                .register(meterRegistry);
+    }
+
+    private static void clickCounter(MeterRegistry meterRegistry, String event, AtomicLong count) {
+        FunctionCounter.builder("urlshortener.clicks", count, AtomicLong::get)
+                .description("Click events by stage")
+                .tag("event", event)
+                .register(meterRegistry);
+    }
+
+    @PostConstruct
+    void start() {
+        running = true;
+        if (clickLog.isEnabled()) {
+            writerThread = threadFactory.newThread("click-shipper", this::runShipper);
+            writerThread.start();
+            log.info("Click ingestion started from the write-ahead log (batchSize={}, lingerMs={})",
+                    batchSize, lingerMillis);
+            return;
+        }
+        writerThread = threadFactory.newThread("click-writer", this::runWriter);
+        writerThread.start();
+        log.info("Click ingestion started (batchSize={}, lingerMs={}, overflowPolicy={})",
+                batchSize, lingerMillis, overflowPolicy);
+    }
+
+    /**
+     * Queues a click for persistence. Never touches the database; returns false if the
+     * event was dropped because the queue (or the write-ahead log) is full.
+     */
+    public boolean submit(ClickEvent event) {
+        boolean accepted = clickLog.isEnabled() ? clickLog.append(event) : switch (overflowPolicy) {
+            case DROP_NEWEST -> queue.offer(event);
+            case DROP_OLDEST -> offerDroppingOldest(event);
+            case BLOCK -> offerWithTimeout(event);
+        };
+
+        if (accepted) {
+            enqueued.incrementAndGet();
+        } else {
+            dropped.incrementAndGet();
+            log.debug("Click queue full, dropped click for short code: {}", event.getShortCode());
+        }
+        return accepted;
+    }
+
+    private boolean offerDroppingOldest(ClickEvent event) {
+        while (!queue.offer(event)) {
+            if (queue.poll() != null) {
+                dropped.incrementAndGet();
+            }
+        }
+        return true;
+    }
+
+    private boolean offerWithTimeout(ClickEvent event) {
+        try {
+            return queue.offer(event, offerTimeoutMillis, TimeUnit.MILLISECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return false;
+        }
+    }
+
+    private void runWriter() {
+        List<ClickEvent> batch = new ArrayList<>(batchSize);
+
+        while (running) {
+            try {
+                ClickEvent first = queue.poll(1, TimeUnit.SECONDS);
+                if (first == null) {
+                    continue;
+                }
+                batch.add(first);
+                fillBatch(batch);
+                writeBatch(batch);
+            } catch (InterruptedException e) {
+                // Shutdown requested; write what we hold, stop() flushes the rest
+                if (!batch.isEmpty()) {
+                    writeBatch(batch);
+                }
+                Thread.currentThread().interrupt();
+                break;
+            } finally {
+                batch.clear();
+            }
+        }
+    }
+
+    /**
+     * Tops up the batch until it is full or the linger time since the first event has passed.
+     */
+    private void fillBatch(List<ClickEvent> batch) throws InterruptedException {
+        long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(lingerMillis);
+
+        while (batch.size() < batchSize) {
+            queue.drainTo(batch, batchSize - batch.size());
+            if (batch.size() >= batchSize) {
+                return;
+            }
+
+            long remaining = deadline - System.nanoTime();
+            if (remaining <= 0) {
+                return;
+            }
+
+            ClickEvent next = queue.poll(remaining, TimeUnit.NANOSECONDS);
+            if (next == null) {
+                return;
+            }
+            batch.add(next);
+        }
+    }
+
+    /**
+     * Writes a batch, retrying failures with a growing pause, up to
+     * {@code click.ingest.max-attempts}. Each retry only covers the clicks not yet written.
+     */
+    private void writeBatch(List<ClickEvent> batch) {
+        for (int attempt = 1; !batch.isEmpty(); attempt++) {
+            try {
+                insertIsolating(batch);
+            } catch (Exception e) {
+                if (attempt >= maxAttempts) {
+                    failed.addAndGet(batch.size());
+                    log.error("Failed to write batch of {} clicks after {} attempts", batch.size(), attempt, e);
+                    return;
+                }
+                log.warn("Failed to write batch of {} clicks, retrying: {}", batch.size(), e.getMessage());
+                try {
+                    Thread.sleep(writeBackoffMillis * attempt);
+                } catch (InterruptedException interrupted) {
+                    Thread.currentThread().interrupt();
+                    failed.addAndGet(batch.size());
+                    return;
+                }
+            }
+        }
+    }
+
+    /**
+     * Inserts {@code batch} and removes what it has dealt with from it, so after a failure it
+     * holds just the clicks still to write. If the database rejects the data, the batch is
+     * bisected and each half tried on its own, down to the single clicks at fault, which are
+     * dead-lettered. Any other failure is thrown for the caller to retry.
+     */
+    private void insertIsolating(List<ClickEvent> batch) {
+        try {
+            insertBatch(batch);
+            batch.clear();
+        } catch (DataIntegrityViolationException e) {
+            if (batch.size() == 1) {
+                deadLetter(batch.get(0), e);
+                batch.clear();
+                return;
+            }
+            // Written or dead-lettered clicks leave the list, so the rest becomes the second half
+            insertIsolating(batch.subList(0, batch.size() / 2));
+            insertIsolating(batch);
+        }
+    }
+
+    private void deadLetter(ClickEvent event, DataIntegrityViolationException e) {
+        deadLettered.incrementAndGet();
+        log.error("Dead-lettering click rejected by the database: urlId={}, shortCode={}, clickedAt={}, "
+                        + "ipAddress={}, referrer={}, userAgent={}: {}", event.getUrlId(), event.getShortCode(),
+                event.getClickedAt(), event.getIpAddress(), event.getReferrer(), event.getUserAgent(),
+                e.getMostSpecificCause().getMessage());
+    }
+
+    private void insertBatch(List<ClickEvent> batch) {
+        long start = System.nanoTime();
+        int inserted = clickBatchRepository.insertBatch(batch);
+        writeTimer.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+        batchSizes.record(inserted);
+        written.addAndGet(inserted);
+        batches.incrementAndGet();
+        updateClickCounters(batch);
+        log.debug("Wrote batch of {} clicks", inserted);
+    }
+
+    private void runShipper() {
+        List<ClickEvent> batch = new ArrayList<>(batchSize);
+        boolean retrying = false;
+
+        while (running) {
+            try {
+                ClickWriteAheadLog.Position next = fillFromLog(batch);
+                if (batch.isEmpty()) {
+                    continue;
+                }
+                // Retried until it goes in; the log keeps everything behind it meanwhile. Each
+                // attempt leaves only the clicks not yet written in the batch
+                while (!shipBatch(batch)) {
+                    if (!retrying) {
+                        retrying = true;
+                        log.warn("Click shipping paused, retrying every {} ms", retryBackoffMillis);
+                    }
+                    Thread.sleep(retryBackoffMillis);
+                }
+                if (retrying) {
+                    retrying = false;
+                    log.info("Click shipping resumed");
+                }
+                clickLog.commit(next);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                break;
+            } catch (Exception e) {
+                // Unreadable log or checkpoint; what was not committed is shipped again on restart
+                log.error("Click shipper failed", e);
+                try {
+                    Thread.sleep(retryBackoffMillis);
+                } catch (InterruptedException interrupted) {
+                    Thread.currentThread().interrupt();
+                    break;
+                }
+            } finally {
+                batch.clear();
+            }
+        }
+    }
+
+    /**
+     * Reads logged clicks until the batch is full or the linger time has passed.
+     */
+    private ClickWriteAheadLog.Position fillFromLog(List<ClickEvent> batch) throws IOException, InterruptedException {
+        long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(lingerMillis);
+        ClickWriteAheadLog.Position position = clickLog.read(batch, batchSize);
+        while (batch.size() < batchSize && running && deadline - System.nanoTime() > 0) {
+            Thread.sleep(LOG_POLL_MILLIS);
+            position = clickLog.read(batch, batchSize - batch.size());
+        }
+        return position;
+    }
+
+    /**
+     * @return false if the clicks left in the batch should be retried. Clicks the database
+     *         rejects outright are isolated and dead-lettered, so one bad record can neither
+     *         stall the log nor take the rest of its batch with it
+     */
+    private boolean shipBatch(List<ClickEvent> batch) {
+        try {
+            insertIsolating(batch);
+            return true;
+        } catch (Exception e) {
+            log.debug("Failed to ship batch of {} clicks: {}", batch.size(), e.getMessage());
+            return false;
+        }
+    }
+
+    private void updateClickCounters(List<ClickEvent> batch) {
+        Map<String, Long> perCode = new HashMap<>();
+        for (ClickEvent event : batch) {
+            perCode.merge(event.getShortCode(), 1L, Long::sum);
+        }
+        perCode.forEach(cacheService::incrementClickCount);
+    }
+
+    @PreDestroy
+    void stop() throws InterruptedException {
+        running = false;
+        if (clickLog.isEnabled()) {
+            // Let the batch in flight finish; anything not committed is replayed on the next start
+            writerThread.join(TimeUnit.SECONDS.toMillis(10));
+            writerThread.interrupt();
+            log.info("Click ingestion stopped (written={}, dropped={}, failed={})",
+                    written.get(), dropped.get(), failed.get());
+            return;
+        }
+        if (writerThread != null) {
+            writerThread.interrupt();
+            writerThread.join(TimeUnit.SECONDS.toMillis(10));
+        }
+
+        // Flush whatever is still queued before the datasource goes away
+        List<ClickEvent> batch = new ArrayList<>(batchSize);
+        while (queue.drainTo(batch, batchSize) > 0) {
+            writeBatch(batch);
+            batch.clear();
+        }
+        log.info("Click ingestion stopped (written={}, dropped={}, failed={})",
+                written.get(), dropped.get(), failed.get());
+    }
+
+    public Map<String, Object> getStats() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("queueDepth", queue.size());
+        stats.put("queueRemainingCapacity", queue.remainingCapacity());
+        stats.put("enqueued", enqueued.get());
+        stats.put("dropped", dropped.get());
+        stats.put("written", written.get());
+        stats.put("failed", failed.get());
+        stats.put("deadLettered", deadLettered.get());
+        stats.put("batches", batches.get());
+        stats.put("overflowPolicy", overflowPolicy.name());
+        stats.put("writeAheadLog", clickLog.getStats());
+        return stats;
+    }
+}
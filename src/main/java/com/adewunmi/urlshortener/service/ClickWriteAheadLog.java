@@ -0,0 +1,523 @@
+package com.adewunmi.urlshortener.service;
+
+import com.adewunmi.urlshortener.config.BackgroundThreadFactory;
+import com.adewunmi.urlshortener.dto.ClickEvent;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableSet;
+import java.util.concurrent.ConcurrentSkipListSet;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.zip.CRC32C;
+
+/**
+ * Durable local log of accepted clicks, shipped to the database by
+ * {@link ClickIngestionService}. Records are appended to fixed-size memory-mapped segment
+ * files, so an append is a copy into the page cache: it survives the process being killed
+ * as soon as it returns, without a system call on the redirect path. A background thread
+ * forces new records to disk every {@code click.wal.sync-interval-ms} (group commit), which
+ * bounds what a machine crash can lose.
+ *
+ * <p>The shipper reads from a checkpoint and advances it only after a batch is in the
+ * database, so a crash in between ships that batch again on restart (at-least-once).
+ * Fully shipped segments are deleted, apart from the newest {@code retained-segments}.
+ *
+ * <pre>
+ * record   int payload length, int CRC32C of payload, payload
+ * payload  long url id, long clicked at (epoch micros, UTC), then short code, ip address,
+ *          user agent and referrer as varint (UTF-8 length + 1, 0 = null) and bytes
+ * </pre>
+ *
+ * Segments are zero-filled when created, so a zero length marks the end of a segment's
+ * records; a record whose checksum does not match (torn by a crash) ends it too.
+ */
+@Component
+@Slf4j
+public class ClickWriteAheadLog {
+
+    private static final String SEGMENT_PREFIX = "clicks-";
+    private static final String SEGMENT_SUFFIX = ".log";
+    private static final String CHECKPOINT = "checkpoint";
+    private static final int RECORD_HEADER_BYTES = 8;
+
+    /** Where the shipper has read or committed up to. */
+    public record Position(long segment, int offset) {
+    }
+
+    private final BackgroundThreadFactory threadFactory;
+    private final boolean enabled;
+    private final Path directory;
+    private final int segmentBytes;
+    private final int maxSegments;
+    private final int retainedSegments;
+    private final long syncIntervalMillis;
+    private final MeterRegistry meterRegistry;
+
+    // Every segment on disk, shipped or not
+    private final NavigableSet<Long> segments = new ConcurrentSkipListSet<>();
+
+    // Appends, guarded by appendLock. Forcing to disk happens outside it, so a redirect never
+    // waits for an msync (and a virtual thread never blocks while pinned to its carrier)
+    private final ReentrantLock appendLock = new ReentrantLock();
+    private long activeSegment;
+    private MappedByteBuffer activeBuffer;
+    private int writeOffset;
+    private int syncedOffset;
+    // Segment (high 32 bits) and offset (low 32 bits) below which records are complete
+    private volatile long tail;
+
+    // Reads, only touched by the shipper thread
+    private long readSegment;
+    private int readOffset;
+    private ByteBuffer readBuffer;
+    private volatile Position committed;
+
+    private final AtomicLong appended = new AtomicLong();
+    private final AtomicLong rejected = new AtomicLong();
+    private final AtomicLong tornSegments = new AtomicLong();
+    private final Timer syncTimer;
+
+    private volatile boolean running;
+    private Thread syncThread;
+
+    public ClickWriteAheadLog(BackgroundThreadFactory threadFactory,
+            @Value("${click.wal.enabled:false}") boolean enabled,
+            @Value("${click.wal.directory:data/clicks}") String directory,
+            @Value("${click.wal.segment-bytes:67108864}") int segmentBytes,
+            @Value("${click.wal.max-segments:64}") int maxSegments,
+            @Value("${click.wal.retained-segments:2}") int retainedSegments,
+            @Value("${click.wal.sync-interval-ms:100}") long syncIntervalMillis,
+            MeterRegistry meterRegistry) {
+        this.threadFactory = threadFactory;
+        this.enabled = enabled;
+        this.directory = Paths.get(directory);
+        this.segmentBytes = segmentBytes;
+        this.maxSegments = maxSegments;
+        this.retainedSegments = retainedSegments;
+        this.syncIntervalMillis = syncIntervalMillis;
+        this.meterRegistry = meterRegistry;
+
+        this.syncTimer = Timer.builder("urlshortener.clicks.wal.sync")
+                .description("Forcing appended click records to disk")
+                .register(meterRegistry);
+    }
+
+    /**
+     * Resumes from the checkpoint left by the previous run, so clicks it logged but did not
+     * ship are replayed, and starts a fresh segment for new appends.
+     */
+    @PostConstruct
+    void open() throws IOException {
+        Gauge.builder("urlshortener.clicks.wal.backlog", this, ClickWriteAheadLog::backlogBytes)
+                .description("Logged click bytes not yet shipped to the database (approximate)")
+                .baseUnit("bytes")
+                .register(meterRegistry);
+        if (!enabled) {
+            return;
+        }
+        Files.createDirectories(directory);
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(directory,
+                SEGMENT_PREFIX + "*" + SEGMENT_SUFFIX)) {
+            for (Path file : files) {
+                String name = file.getFileName().toString();
+                segments.add(Long.parseLong(name, SEGMENT_PREFIX.length(),
+                        name.length() - SEGMENT_SUFFIX.length(), 10));
+            }
+        }
+
+        Position checkpoint = readCheckpoint();
+        readSegment = checkpoint.segment();
+        readOffset = checkpoint.offset();
+        committed = checkpoint;
+        long pending = segments.tailSet(readSegment).size();
+
+        appendLock.lock();
+        try {
+            startSegment(Math.max(segments.isEmpty() ? 0 : segments.last(), checkpoint.segment()) + 1);
+        } finally {
+            appendLock.unlock();
+        }
+        running = true;
+        syncThread = threadFactory.newThread("click-wal-sync", this::runSync);
+        syncThread.start();
+        log.info("Click write-ahead log opened in {} ({} segments to replay from {})", directory, pending,
+                checkpoint);
+    }
+
+    @PreDestroy
+    void close() throws InterruptedException {
+        if (!running) {
+            return;
+        }
+        running = false;
+        syncThread.interrupt();
+        syncThread.join(TimeUnit.SECONDS.toMillis(5));
+        sync();
+        log.info("Click write-ahead log closed ({} bytes left to ship on next start)", backlogBytes());
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * Appends a click. Returns false if it could not be logged: the unshipped backlog has
+     * reached {@code max-segments}, or the disk failed.
+     */
+    public boolean append(ClickEvent event) {
+        byte[] record = encode(event);
+        if (record.length > segmentBytes) {
+            rejected.incrementAndGet();
+            return false;
+        }
+        Unsynced sealed = null;
+        appendLock.lock();
+        try {
+            if (writeOffset + record.length > segmentBytes) {
+                sealed = unsynced();
+                if (!roll()) {
+                    rejected.incrementAndGet();
+                    return false;
+                }
+            }
+            activeBuffer.put(writeOffset, record);
+            writeOffset += record.length;
+            tail = activeSegment << 32 | writeOffset;
+        } finally {
+            appendLock.unlock();
+        }
+        appended.incrementAndGet();
+        if (sealed != null) {
+            // The sync thread only follows the active segment; finish the one just sealed
+            force(sealed);
+        }
+        return true;
+    }
+
+    // Caller holds the lock
+    private boolean roll() {
+        Position shipped = committed;
+        if (activeSegment - shipped.segment() + 1 >= maxSegments) {
+            return false;
+        }
+        try {
+            startSegment(activeSegment + 1);
+            return true;
+        } catch (IOException e) {
+            log.error("Failed to start click log segment {}", activeSegment + 1, e);
+            return false;
+        }
+    }
+
+    // Caller holds the lock
+    private void startSegment(long segment) throws IOException {
+        try (FileChannel channel = FileChannel.open(segmentPath(segment), StandardOpenOption.CREATE_NEW,
+                StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+            activeBuffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, segmentBytes);
+        }
+        segments.add(segment);
+        activeSegment = segment;
+        writeOffset = 0;
+        syncedOffset = 0;
+        tail = segment << 32;
+    }
+
+    private void runSync() {
+        while (running) {
+            try {
+                Thread.sleep(syncIntervalMillis);
+                sync();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            } catch (Exception e) {
+                log.error("Failed to sync click write-ahead log", e);
+            }
+        }
+    }
+
+    /** A range of a segment appended since it was last forced to disk. */
+    private record Unsynced(MappedByteBuffer buffer, int from, int to) {
+    }
+
+    private void sync() {
+        Unsynced pending;
+        appendLock.lock();
+        try {
+            pending = unsynced();
+        } finally {
+            appendLock.unlock();
+        }
+        force(pending);
+    }
+
+    // Caller holds the lock
+    private Unsynced unsynced() {
+        return writeOffset == syncedOffset ? null : new Unsynced(activeBuffer, syncedOffset, writeOffset);
+    }
+
+    /**
+     * Forces a range to disk without holding the append lock, then records it as synced if
+     * its segment is still the active one. Ranges forced twice by racing calls are harmless.
+     */
+    private void force(Unsynced range) {
+        if (range == null) {
+            return;
+        }
+        long start = System.nanoTime();
+        range.buffer().force(range.from(), range.to() - range.from());
+        syncTimer.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+        appendLock.lock();
+        try {
+            if (activeBuffer == range.buffer() && syncedOffset < range.to()) {
+                syncedOffset = range.to();
+            }
+        } finally {
+            appendLock.unlock();
+        }
+    }
+
+    /**
+     * Adds up to {@code max} logged clicks past the read position to {@code into} and moves
+     * the read position past them. Only the shipper thread may call this.
+     *
+     * @return the position to {@link #commit} once these clicks are in the database
+     */
+    public Position read(List<ClickEvent> into, int max) throws IOException {
+        int added = 0;
+        while (added < max) {
+            long current = tail;
+            long tailSegment = current >>> 32;
+            if (readSegment > tailSegment) {
+                break;
+            }
+            if (!segments.contains(readSegment)) {
+                // Checkpoint from before a segment was removed by hand; skip to the next one
+                Long next = segments.higher(readSegment);
+                if (next == null || next > tailSegment) {
+                    break;
+                }
+                moveTo(next);
+                continue;
+            }
+
+            boolean sealed = readSegment < tailSegment;
+            ByteBuffer buffer = mapForRead(readSegment);
+            int limit = sealed ? buffer.capacity() : (int) current;
+            boolean endOfRecords = false;
+            while (added < max && readOffset + RECORD_HEADER_BYTES <= limit) {
+                int length = buffer.getInt(readOffset);
+                if (length <= 0 || readOffset + RECORD_HEADER_BYTES + length > limit) {
+                    endOfRecords = true;
+                    break;
+                }
+                ByteBuffer payload = buffer.slice(readOffset + RECORD_HEADER_BYTES, length);
+                CRC32C crc = new CRC32C();
+                crc.update(payload.duplicate());
+                if ((int) crc.getValue() != buffer.getInt(readOffset + 4)) {
+                    tornSegments.incrementAndGet();
+                    log.warn("Click log segment {} has a torn record at offset {}; skipping the rest of it",
+                            readSegment, readOffset);
+                    endOfRecords = true;
+                    break;
+                }
+                into.add(decode(payload));
+                added++;
+                readOffset += RECORD_HEADER_BYTES + length;
+            }
+
+            if (sealed && (endOfRecords || readOffset + RECORD_HEADER_BYTES > limit)) {
+                Long next = segments.higher(readSegment);
+                moveTo(next != null ? next : readSegment + 1);
+            } else {
+                break;
+            }
+        }
+        return new Position(readSegment, readOffset);
+    }
+
+    private void moveTo(long segment) {
+        readSegment = segment;
+        readOffset = 0;
+        readBuffer = null;
+    }
+
+    private ByteBuffer mapForRead(long segment) throws IOException {
+        if (readBuffer == null) {
+            // A second, read-only mapping of the same file sees the appender's writes
+            try (FileChannel channel = FileChannel.open(segmentPath(segment), StandardOpenOption.READ)) {
+                readBuffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            }
+        }
+        return readBuffer;
+    }
+
+    /**
+     * Records that everything before {@code position} is in the database, and deletes
+     * shipped segments beyond the retained ones. The checkpoint is replaced atomically but
+     * not synced: losing it only means shipping some clicks twice.
+     */
+    public void commit(Position position) throws IOException {
+        Path temp = directory.resolve(CHECKPOINT + ".tmp");
+        Files.writeString(temp, position.segment() + " " + position.offset());
+        Files.move(temp, directory.resolve(CHECKPOINT), StandardCopyOption.ATOMIC_MOVE,
+                StandardCopyOption.REPLACE_EXISTING);
+        committed = position;
+
+        NavigableSet<Long> shipped = segments.headSet(position.segment(), false);
+        while (shipped.size() > retainedSegments) {
+            long oldest = shipped.first();
+            Files.deleteIfExists(segmentPath(oldest));
+            segments.remove(oldest);
+        }
+    }
+
+    private Position readCheckpoint() throws IOException {
+        Path checkpoint = directory.resolve(CHECKPOINT);
+        if (Files.exists(checkpoint)) {
+            String value = Files.readString(checkpoint).trim();
+            try {
+                int space = value.indexOf(' ');
+                return new Position(Long.parseLong(value, 0, space, 10),
+                        Integer.parseInt(value, space + 1, value.length(), 10));
+            } catch (RuntimeException e) {
+                log.warn("Ignoring unreadable click log checkpoint '{}', replaying every segment", value);
+            }
+        }
+        return new Position(segments.isEmpty() ? 1 : segments.first(), 0);
+    }
+
+    private Path segmentPath(long segment) {
+        return directory.resolve(String.format("%s%020d%s", SEGMENT_PREFIX, segment, SEGMENT_SUFFIX));
+    }
+
+    private long backlogBytes() {
+        if (!enabled || committed == null) {
+            return 0;
+        }
+        long current = tail;
+        Position shipped = committed;
+        return ((current >>> 32) - shipped.segment()) * segmentBytes + (int) current - shipped.offset();
+    }
+
+    private static byte[] encode(ClickEvent event) {
+        byte[] shortCode = utf8(event.getShortCode());
+        byte[] ipAddress = utf8(event.getIpAddress());
+        byte[] userAgent = utf8(event.getUserAgent());
+        byte[] referrer = utf8(event.getReferrer());
+        int payloadLength = 16 + fieldLength(shortCode) + fieldLength(ipAddress)
+                + fieldLength(userAgent) + fieldLength(referrer);
+
+        ByteBuffer record = ByteBuffer.allocate(RECORD_HEADER_BYTES + payloadLength);
+        record.putInt(payloadLength).putInt(0);
+        record.putLong(event.getUrlId());
+        LocalDateTime clickedAt = event.getClickedAt();
+        record.putLong(clickedAt.toEpochSecond(ZoneOffset.UTC) * 1_000_000 + clickedAt.getNano() / 1_000);
+        putField(record, shortCode);
+        putField(record, ipAddress);
+        putField(record, userAgent);
+        putField(record, referrer);
+
+        CRC32C crc = new CRC32C();
+        crc.update(record.array(), RECORD_HEADER_BYTES, payloadLength);
+        record.putInt(4, (int) crc.getValue());
+        return record.array();
+    }
+
+    private static ClickEvent decode(ByteBuffer payload) {
+        long urlId = payload.getLong();
+        long micros = payload.getLong();
+        LocalDateTime clickedAt = LocalDateTime.ofEpochSecond(Math.floorDiv(micros, 1_000_000),
+                Math.floorMod(micros, 1_000_000) * 1_000, ZoneOffset.UTC);
+        return new ClickEvent(urlId, getField(payload), clickedAt, getField(payload), getField(payload),
+                getField(payload));
+    }
+
+    private static byte[] utf8(String value) {
+        return value != null ? value.getBytes(StandardCharsets.UTF_8) : null;
+    }
+
+    private static int fieldLength(byte[] value) {
+        if (value == null) {
+            return 1;
+        }
+        int varint = 1;
+        for (int rest = (value.length + 1) >>> 7; rest != 0; rest >>>= 7) {
+            varint++;
+        }
+        return varint + value.length;
+    }
+
+    private static void putField(ByteBuffer buffer, byte[] value) {
+        int header = value != null ? value.length + 1 : 0;
+        while ((header & ~0x7F) != 0) {
+            buffer.put((byte) (header & 0x7F | 0x80));
+            header >>>= 7;
+        }
+        buffer.put((byte) header);
+        if (value != null) {
+            buffer.put(value);
+        }
+    }
+
+    private static String getField(ByteBuffer buffer) {
+        int header = 0;
+        int shift = 0;
+        byte b;
+        do {
+            b = buffer.get();
+            header |= (b & 0x7F) << shift;
+            shift += 7;
+        } while (b < 0);
+        if (header == 0) {
+            return null;
+        }
+        byte[] value = new byte[header - 1];
+        buffer.get(value);
+        return new String(value, StandardCharsets.UTF_8);
+    }
+
+    public Map<String, Object> getStats() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("enabled", enabled);
+        if (!enabled) {
+            return stats;
+        }
+        long current = tail;
+        stats.put("directory", directory.toAbsolutePath().toString());
+        stats.put("segments", segments.size());
+        stats.put("appendSegment", current >>> 32);
+        stats.put("appendOffset", (int) current);
+        stats.put("committed", committed);
+        stats.put("backlogBytes", backlogBytes());
+        stats.put("appended", appended.get());
+        stats.put("rejected", rejected.get());
+        stats.put("tornSegments", tornSegments.get());
+        stats.put("syncs", syncTimer.count());
+        return stats;
+    }
+}
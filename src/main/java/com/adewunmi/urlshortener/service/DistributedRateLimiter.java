@@ -0,0 +1,246 @@
+package com.adewunmi.urlshortener.service;
+
+import com.adewunmi.urlshortener.config.BackgroundThreadFactory;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.io.ClassPathResource;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.core.script.RedisScript;
+import org.springframework.stereotype.Component;
+
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Cluster-wide rate limiting on Redis. Each decision that reaches Redis is one call to a
+ * GCRA Lua script, so it is atomic and the key can never be left without an expiry. To
+ * keep Redis off the hot path, a node asks for a few extra tokens (a lease) and serves
+ * following requests for the same key from memory until the lease runs out or goes
+ * stale. Leased tokens are already deducted in Redis, so nodes can never jointly exceed
+ * the limit; unused leases are simply forfeited.
+ *
+ * <p>When Redis cannot be reached, or does not answer within
+ * {@code rate.limit.distributed.timeout-ms}, the caller is told so and falls back to its
+ * node-local bucket, and Redis is not retried until
+ * {@code rate.limit.distributed.retry-after-ms} has passed. The script runs on a thread of
+ * its own so that wait stays short however long the connection's own timeout is.
+ */
+@Component
+@Slf4j
+public class DistributedRateLimiter {
+
+    public enum Decision {
+        ALLOWED, DENIED, UNAVAILABLE
+    }
+
+    private static final String KEY_PREFIX = "ratelimit:";
+
+    private static final class Lease {
+        // Not synchronized: the wait for Redis below blocks while holding it, which would
+        // pin a virtual thread to its carrier
+        final ReentrantLock lock = new ReentrantLock();
+        long tokens;
+        long remoteRemaining;
+        long grantedAtNanos;
+    }
+
+    private final StringRedisTemplate redisTemplate;
+    private final boolean enabled;
+    private final long leaseSize;
+    private final long leaseTtlNanos;
+    private final long retryAfterNanos;
+    private final long timeoutMillis;
+    private final RedisScript<List<Long>> script;
+    private final ExecutorService redisExecutor;
+    private final Cache<RateLimitKey, Lease> leases;
+
+    private final LongAdder leaseHits = new LongAdder();
+    private final LongAdder redisCalls = new LongAdder();
+    private final LongAdder unavailable = new LongAdder();
+
+    private volatile long redisRetryAtNanos;
+    private volatile boolean redisDown;
+
+    public DistributedRateLimiter(@Autowired(required = false) StringRedisTemplate redisTemplate,
+            BackgroundThreadFactory threadFactory,
+            @Value("${rate.limit.distributed.enabled:false}") boolean enabled,
+            @Value("${rate.limit.distributed.lease-size:10}") long leaseSize,
+            @Value("${rate.limit.distributed.lease-ttl-ms:1000}") long leaseTtlMs,
+            @Value("${rate.limit.distributed.retry-after-ms:5000}") long retryAfterMs,
+            @Value("${rate.limit.distributed.timeout-ms:10}") long timeoutMs,
+            @Value("${rate.limit.buckets.maximum-size:100000}") long maximumKeys) {
+        this.redisTemplate = redisTemplate;
+        this.enabled = enabled && redisTemplate != null;
+        this.leaseSize = leaseSize;
+        this.leaseTtlNanos = TimeUnit.MILLISECONDS.toNanos(leaseTtlMs);
+        this.retryAfterNanos = TimeUnit.MILLISECONDS.toNanos(retryAfterMs);
+        this.timeoutMillis = timeoutMs;
+        this.script = gcraScript();
+        // Threads only live while a call is outstanding; one abandoned at the deadline is interrupted
+        this.redisExecutor = Executors.newCachedThreadPool(task -> threadFactory.newThread("rate-limit-redis", task));
+        this.leases = Caffeine.newBuilder()
+                .maximumSize(maximumKeys)
+                .expireAfterAccess(leaseTtlMs, TimeUnit.MILLISECONDS)
+                .build();
+
+        if (enabled && redisTemplate == null) {
+            log.warn("Distributed rate limiting is enabled but Redis is not configured; limits stay per node");
+        }
+    }
+
+    // The script returns {granted, remaining}; there is no class literal for List<Long>
+    @SuppressWarnings("unchecked")
+    private static RedisScript<List<Long>> gcraScript() {
+        return (RedisScript<List<Long>>) (RedisScript<?>) RedisScript.of(
+                new ClassPathResource("scripts/rate_limit_gcra.lua"), List.class);
+    }
+
+    @PreDestroy
+    void shutdown() {
+        redisExecutor.shutdownNow();
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * Takes {@code tokens} from the cluster-wide bucket for {@code key}: from this node's
+     * lease if it holds enough, otherwise from Redis.
+     */
+    Decision tryAcquire(RateLimitKey key, long tokens, RateLimit limit) {
+        Lease lease = leases.get(key, k -> new Lease());
+        // Per-key lock: concurrent requests for one client wait for a single Redis call
+        lease.lock.lock();
+        try {
+            long now = System.nanoTime();
+            if (now - lease.grantedAtNanos > leaseTtlNanos) {
+                lease.tokens = 0;
+            }
+            if (lease.tokens >= tokens) {
+                lease.tokens -= tokens;
+                leaseHits.increment();
+                return Decision.ALLOWED;
+            }
+            if (redisDown && now - redisRetryAtNanos < 0) {
+                unavailable.increment();
+                return Decision.UNAVAILABLE;
+            }
+
+            long needed = tokens - lease.tokens;
+            List<Long> result;
+            try {
+                redisCalls.increment();
+                result = callScript(key, limit, needed);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                unavailable.increment();
+                return Decision.UNAVAILABLE;
+            } catch (Exception e) {
+                markDown(e);
+                unavailable.increment();
+                return Decision.UNAVAILABLE;
+            }
+            markUp();
+
+            long granted = result.get(0);
+            lease.remoteRemaining = result.get(1);
+            if (granted == 0) {
+                return Decision.DENIED;
+            }
+            lease.tokens += granted - tokens;
+            lease.grantedAtNanos = now;
+            return Decision.ALLOWED;
+        } finally {
+            lease.lock.unlock();
+        }
+    }
+
+    /**
+     * Runs the script, waiting at most {@code timeoutMillis}. A call that misses the deadline
+     * is cancelled; any tokens it still takes in Redis are forfeited like an unused lease.
+     */
+    private List<Long> callScript(RateLimitKey key, RateLimit limit, long needed)
+            throws InterruptedException, ExecutionException, TimeoutException {
+        Future<List<Long>> call = redisExecutor.submit(() -> redisTemplate.execute(script, List.of(redisKey(key)),
+                Long.toString(limit.emissionIntervalMicros()),
+                Long.toString(limit.capacity()),
+                Long.toString(needed + leaseSizeFor(limit)),
+                Long.toString(needed)));
+        try {
+            return call.get(timeoutMillis, TimeUnit.MILLISECONDS);
+        } catch (TimeoutException e) {
+            throw new TimeoutException("No answer from Redis within " + timeoutMillis + " ms");
+        } finally {
+            // A no-op once the call has finished
+            call.cancel(true);
+        }
+    }
+
+    /**
+     * Tokens this node last saw available for {@code key}, including its own lease, or -1
+     * if it holds no recent state for the key.
+     */
+    long approximateRemaining(RateLimitKey key) {
+        Lease lease = leases.getIfPresent(key);
+        if (lease == null) {
+            return -1;
+        }
+        lease.lock.lock();
+        try {
+            return lease.tokens + lease.remoteRemaining;
+        } finally {
+            lease.lock.unlock();
+        }
+    }
+
+    // Small limits are not leased at all, so one node cannot sit on a client's whole allowance
+    private long leaseSizeFor(RateLimit limit) {
+        return Math.min(leaseSize, limit.capacity() / 10);
+    }
+
+    static String redisKey(RateLimitKey key) {
+        return KEY_PREFIX + key.operation().name().toLowerCase(Locale.ROOT) + ':'
+                + Long.toHexString(key.high()) + ':' + Long.toHexString(key.low());
+    }
+
+    private void markDown(Exception e) {
+        redisRetryAtNanos = System.nanoTime() + retryAfterNanos;
+        if (!redisDown) {
+            redisDown = true;
+            log.warn("Redis rate limiter unavailable, falling back to per-node limits: {}", e.getMessage());
+        }
+    }
+
+    private void markUp() {
+        if (redisDown) {
+            redisDown = false;
+            log.info("Redis rate limiter available again");
+        }
+    }
+
+    public Map<String, Object> getStats() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("enabled", enabled);
+        stats.put("redisAvailable", enabled && !redisDown);
+        stats.put("leasedKeys", leases.estimatedSize());
+        stats.put("leaseHits", leaseHits.sum());
+        stats.put("redisCalls", redisCalls.sum());
+        stats.put("fallbacks", unavailable.sum());
+        return stats;
+    }
+}
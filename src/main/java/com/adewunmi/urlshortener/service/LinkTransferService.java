@@ -0,0 +1,310 @@
+package com.adewunmi.urlshortener.service;
+
+import com.adewunmi.urlshortener.dto.CachedUrl;
+import com.adewunmi.urlshortener.dto.LinkImportResult;
+import com.adewunmi.urlshortener.dto.LinkRecord;
+import com.adewunmi.urlshortener.entity.LinkImportCheckpoint;
+import com.adewunmi.urlshortener.entity.RedirectType;
+import com.adewunmi.urlshortener.repository.LinkTransferRepository;
+import com.adewunmi.urlshortener.repository.UrlUpsertRepository;
+import com.adewunmi.urlshortener.util.Csv;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+import tools.jackson.core.JacksonException;
+import tools.jackson.databind.ObjectMapper;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.time.DateTimeException;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Streams urls out as NDJSON or CSV and loads such files back in. Both directions work
+ * row by row (export) or chunk by chunk (import), so heap use does not grow with the size
+ * of the file. Imports skip short codes that already exist and checkpoint after every
+ * chunk; re-sending the same file with the same job id resumes after the last chunk.
+ */
+@Service
+@Slf4j
+public class LinkTransferService {
+
+    public enum Format {
+        NDJSON, CSV;
+
+        public static Format fromParameter(String value) {
+            for (Format format : values()) {
+                if (format.name().equalsIgnoreCase(value)) {
+                    return format;
+                }
+            }
+            throw new IllegalArgumentException("Unsupported format: " + value + " (expected ndjson or csv)");
+        }
+    }
+
+    private static final int MAX_SHORT_CODE_LENGTH = 10;
+    private static final int CACHE_BATCH_SIZE = 1000;
+
+    private final LinkTransferRepository linkTransferRepository;
+    private final UrlUpsertRepository urlUpsertRepository;
+    private final CacheService cacheService;
+    private final CacheInvalidationBus cacheInvalidationBus;
+    private final UrlService urlService;
+    private final ObjectMapper objectMapper;
+    private final int fetchSize;
+    private final int chunkSize;
+    private final boolean copyEnabled;
+
+    private final Set<String> runningJobs = ConcurrentHashMap.newKeySet();
+
+    public LinkTransferService(LinkTransferRepository linkTransferRepository,
+            UrlUpsertRepository urlUpsertRepository,
+            CacheService cacheService,
+            CacheInvalidationBus cacheInvalidationBus,
+            UrlService urlService,
+            ObjectMapper objectMapper,
+            @Value("${links.transfer.fetch-size:1000}") int fetchSize,
+            @Value("${links.import.chunk-size:10000}") int chunkSize,
+            @Value("${links.import.copy-enabled:true}") boolean copyEnabled) {
+        this.linkTransferRepository = linkTransferRepository;
+        this.urlUpsertRepository = urlUpsertRepository;
+        this.cacheService = cacheService;
+        this.cacheInvalidationBus = cacheInvalidationBus;
+        this.urlService = urlService;
+        this.objectMapper = objectMapper;
+        this.fetchSize = fetchSize;
+        this.chunkSize = chunkSize;
+        this.copyEnabled = copyEnabled;
+    }
+
+    /**
+     * Writes every url to {@code out}. Runs in one read-only transaction so the rows come
+     * from a server-side cursor, {@code links.transfer.fetch-size} at a time.
+     *
+     * @return the number of urls written
+     * @throws UncheckedIOException if writing to {@code out} fails
+     */
+    @Transactional(readOnly = true)
+    public long exportLinks(Format format, OutputStream out) {
+        long[] exported = { 0 };
+        StringBuilder line = new StringBuilder(256);
+        try {
+            if (format == Format.CSV) {
+                out.write((LinkRecord.CSV_HEADER + "\n").getBytes(StandardCharsets.UTF_8));
+            }
+            linkTransferRepository.streamAll(fetchSize, link -> {
+                try {
+                    if (format == Format.CSV) {
+                        line.setLength(0);
+                        link.appendCsv(line);
+                        out.write(line.toString().getBytes(StandardCharsets.UTF_8));
+                    } else {
+                        out.write(objectMapper.writeValueAsBytes(link));
+                        out.write('\n');
+                    }
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+                exported[0]++;
+            });
+            out.flush();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return exported[0];
+    }
+
+    /**
+     * Imports links from {@code in}. Rows that cannot be parsed, or whose short code or URL
+     * would be refused by the shorten API, are counted as rejected; rows whose short code
+     * already exists as duplicates. When
+     * the job id has a checkpoint, that many input rows are skipped first.
+     *
+     * @param jobId identifies the import for resuming; generated when null
+     */
+    public LinkImportResult importLinks(String jobId, Format format, InputStream in) throws IOException {
+        if (jobId == null || jobId.isBlank()) {
+            jobId = UUID.randomUUID().toString();
+        } else if (jobId.length() > LinkImportCheckpoint.MAX_JOB_ID_LENGTH) {
+            throw new IllegalArgumentException("Job id must be at most "
+                    + LinkImportCheckpoint.MAX_JOB_ID_LENGTH + " characters");
+        }
+        if (!runningJobs.add(jobId)) {
+            throw new IllegalArgumentException("Import job '" + jobId + "' is already running");
+        }
+
+        try {
+            return runImport(jobId, format, in);
+        } finally {
+            runningJobs.remove(jobId);
+        }
+    }
+
+    private LinkImportResult runImport(String jobId, Format format, InputStream in) throws IOException {
+        long startedAt = System.nanoTime();
+        boolean useCopy = copyEnabled && linkTransferRepository.supportsCopy();
+        long resumeFrom = linkTransferRepository.findRowsCommitted(jobId);
+        long maxIdBefore = urlUpsertRepository.findMaxId();
+
+        LinkImportResult result = new LinkImportResult();
+        result.setJobId(jobId);
+        result.setMethod(useCopy ? "copy" : "jdbc-batch");
+        result.setResumedFrom(resumeFrom);
+
+        BufferedReader reader = new BufferedReader(new InputStreamReader(in, StandardCharsets.UTF_8));
+        Map<String, Integer> columns = format == Format.CSV ? readCsvHeader(reader) : null;
+
+        List<LinkRecord> chunk = new ArrayList<>(chunkSize);
+        long row = 0;
+        long committed = resumeFrom;
+        String line;
+        while ((line = reader.readLine()) != null) {
+            if (line.isBlank()) {
+                continue;
+            }
+            row++;
+            if (row <= resumeFrom) {
+                continue;
+            }
+
+            LinkRecord link = format == Format.CSV ? parseCsv(line, columns) : parseNdjson(line);
+            if (link == null) {
+                result.setRejected(result.getRejected() + 1);
+            } else {
+                chunk.add(link);
+            }
+            if (row - committed == chunkSize) {
+                commitChunk(jobId, chunk, row, useCopy, result);
+                committed = row;
+            }
+        }
+        if (row > committed) {
+            commitChunk(jobId, chunk, row, useCopy, result);
+        }
+        result.setRowsRead(Math.max(0, row - resumeFrom));
+
+        if (result.getInserted() > 0) {
+            result.setCached(preloadCaches(maxIdBefore));
+        }
+        result.setDurationMs((System.nanoTime() - startedAt) / 1_000_000);
+        log.info("Link import {} finished via {}: {} rows read, {} inserted, {} duplicates, {} rejected in {} ms",
+                jobId, result.getMethod(), result.getRowsRead(), result.getInserted(),
+                result.getDuplicates(), result.getRejected(), result.getDurationMs());
+        return result;
+    }
+
+    private void commitChunk(String jobId, List<LinkRecord> chunk, long rowsCommitted, boolean useCopy,
+            LinkImportResult result) {
+        List<String> inserted = linkTransferRepository.importChunk(jobId, chunk, rowsCommitted, useCopy);
+        // Imported rows keep their exported created_at, so only ids and announcements reach other nodes
+        cacheInvalidationBus.announceCreated(inserted);
+        result.setInserted(result.getInserted() + inserted.size());
+        result.setDuplicates(result.getDuplicates() + chunk.size() - inserted.size());
+        log.debug("Link import {} committed through row {}", jobId, rowsCommitted);
+        chunk.clear();
+    }
+
+    // Rows inserted by an earlier, interrupted run of the same job fill the cache on demand
+    private long preloadCaches(long afterId) {
+        if (!cacheService.isRedisEnabled()) {
+            return 0;
+        }
+        Map<String, CachedUrl> batch = new LinkedHashMap<>();
+        long[] cached = { 0 };
+        linkTransferRepository.streamCacheEntries(afterId, fetchSize, (shortCode, cachedUrl) -> {
+            batch.put(shortCode, cachedUrl);
+            if (batch.size() == CACHE_BATCH_SIZE) {
+                cached[0] += cacheService.preloadRedis(batch);
+                batch.clear();
+            }
+        });
+        cached[0] += cacheService.preloadRedis(batch);
+        return cached[0];
+    }
+
+    private LinkRecord parseNdjson(String line) {
+        try {
+            return validated(objectMapper.readValue(line, LinkRecord.class));
+        } catch (JacksonException e) {
+            return null;
+        }
+    }
+
+    private static Map<String, Integer> readCsvHeader(BufferedReader reader) throws IOException {
+        String header;
+        do {
+            header = reader.readLine();
+        } while (header != null && header.isBlank());
+        if (header == null) {
+            return Map.of();
+        }
+
+        Map<String, Integer> columns = new HashMap<>();
+        List<String> names = Csv.parseLine(header.strip());
+        for (int i = 0; i < names.size(); i++) {
+            if (names.get(i) != null) {
+                columns.put(names.get(i).strip().toLowerCase(Locale.ROOT), i);
+            }
+        }
+        if (!columns.containsKey("short_code") || !columns.containsKey("original_url")) {
+            throw new IllegalArgumentException("CSV header must name at least short_code and original_url");
+        }
+        return columns;
+    }
+
+    private LinkRecord parseCsv(String line, Map<String, Integer> columns) {
+        try {
+            List<String> fields = Csv.parseLine(line);
+            String redirectType = field(fields, columns, "redirect_type");
+            String createdAt = field(fields, columns, "created_at");
+            String expiresAt = field(fields, columns, "expires_at");
+            String clickCount = field(fields, columns, "click_count");
+            return validated(new LinkRecord(
+                    field(fields, columns, "short_code"),
+                    field(fields, columns, "original_url"),
+                    redirectType != null ? RedirectType.valueOf(redirectType) : null,
+                    createdAt != null ? LocalDateTime.parse(createdAt) : null,
+                    expiresAt != null ? LocalDateTime.parse(expiresAt) : null,
+                    clickCount != null ? Long.valueOf(clickCount) : null));
+        } catch (IllegalArgumentException | DateTimeException e) {
+            return null;
+        }
+    }
+
+    private static String field(List<String> fields, Map<String, Integer> columns, String name) {
+        Integer index = columns.get(name);
+        return index != null && index < fields.size() ? fields.get(index) : null;
+    }
+
+    /**
+     * Applies the shorten API's rules for custom codes and URLs, so an imported link can
+     * always be redirected; the column also caps codes at {@value #MAX_SHORT_CODE_LENGTH}.
+     */
+    private LinkRecord validated(LinkRecord link) {
+        if (link == null || link.getShortCode() == null || link.getOriginalUrl() == null) {
+            return null;
+        }
+        try {
+            link.setShortCode(urlService.validateAndSanitizeCustomCode(link.getShortCode()));
+            urlService.validateUrl(link.getOriginalUrl());
+        } catch (IllegalArgumentException e) {
+            return null;
+        }
+        return link.getShortCode().length() <= MAX_SHORT_CODE_LENGTH ? link : null;
+    }
+}
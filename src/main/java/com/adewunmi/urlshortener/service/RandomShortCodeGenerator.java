@@ -0,0 +1,51 @@
+package com.adewunmi.urlshortener.service;
+
+import com.adewunmi.urlshortener.repository.UrlRepository;
+import com.adewunmi.urlshortener.util.Base62;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+
+import java.security.SecureRandom;
+
+/**
+ * Draws random codes and retries on collision. Kept as an alternative to
+ * {@link SegmentShortCodeGenerator}; the database is only consulted when the short code
+ * filter cannot rule the code out.
+ */
+@Component
+@ConditionalOnProperty(name = "shortcode.generator", havingValue = "random")
+@RequiredArgsConstructor
+@Slf4j
+public class RandomShortCodeGenerator implements ShortCodeGenerator {
+
+    private static final int SHORT_CODE_LENGTH = 7;
+    private static final int MAX_ATTEMPTS = 10;
+    private static final SecureRandom RANDOM = new SecureRandom();
+
+    private final UrlRepository urlRepository;
+    private final ShortCodeFilterService shortCodeFilterService;
+
+    @Override
+    public String nextCode() {
+        for (int attempt = 0; attempt < MAX_ATTEMPTS; attempt++) {
+            String shortCode = generateRandomString();
+            if (!shortCodeFilterService.mightExist(shortCode) || !urlRepository.existsByShortCode(shortCode)) {
+                return shortCode;
+            }
+        }
+
+        log.error("Failed to generate unique short code after {} attempts", MAX_ATTEMPTS);
+        throw new RuntimeException("Unable to generate unique short code. Please try again.");
+    }
+
+    // Package-private for the JMH benchmarks (src/jmh)
+    String generateRandomString() {
+        StringBuilder sb = new StringBuilder(SHORT_CODE_LENGTH);
+        for (int i = 0; i < SHORT_CODE_LENGTH; i++) {
+            sb.append(Base62.ALPHABET.charAt(RANDOM.nextInt(Base62.ALPHABET.length())));
+        }
+        return sb.toString();
+    }
+}
@@ -0,0 +1,31 @@
+package com.adewunmi.urlshortener.service;
+
+import io.github.bucket4j.Bandwidth;
+import io.github.bucket4j.Bucket;
+import io.github.bucket4j.Refill;
+
+import java.time.Duration;
+
+/**
+ * A configured limit: bursts of up to {@code capacity} tokens, with {@code refillTokens}
+ * added every {@code refillPeriod}.
+ */
+record RateLimit(long capacity, long refillTokens, Duration refillPeriod) {
+
+    Bucket newBucket() {
+        return Bucket.builder()
+                .addLimit(Bandwidth.classic(capacity, Refill.intervally(refillTokens, refillPeriod)))
+                .build();
+    }
+
+    // Untouched for this long, a drained bucket is full again
+    long fullRefillNanos() {
+        long periods = (capacity + refillTokens - 1) / refillTokens;
+        return periods * refillPeriod.toNanos();
+    }
+
+    // GCRA spreads the refill evenly: one token every interval
+    long emissionIntervalMicros() {
+        return Math.max(1, refillPeriod.toNanos() / 1000 / refillTokens);
+    }
+}
@@ -0,0 +1,161 @@
+package com.adewunmi.urlshortener.service;
+
+/**
+ * Identifies one rate-limit bucket: an operation and a client address packed into 128
+ * bits, so lookups neither concatenate strings nor keep the address text on the heap.
+ * IPv4 addresses are stored in their IPv4-mapped IPv6 form ({@code ::ffff:a.b.c.d}), so
+ * both spellings of the same client share a bucket.
+ */
+public record RateLimitKey(RateLimitOperation operation, long high, long low) {
+
+    private static final long IPV4_MAPPED_PREFIX = 0xFFFF_0000_0000L;
+
+    // Client ids that are not address literals (e.g. "unknown") are hashed under a multicast
+    // prefix, which can never be the source address of a real client
+    private static final long NON_ADDRESS_HIGH = 0xFFFF_FFFF_FFFF_FFFFL;
+
+    public static RateLimitKey of(RateLimitOperation operation, String clientIp) {
+        long ipv4 = parseIpv4(clientIp, 0, clientIp.length());
+        if (ipv4 >= 0) {
+            return new RateLimitKey(operation, 0, IPV4_MAPPED_PREFIX | ipv4);
+        }
+        int[] groups = parseIpv6(clientIp);
+        if (groups != null) {
+            return new RateLimitKey(operation, pack(groups, 0), pack(groups, 4));
+        }
+        return new RateLimitKey(operation, NON_ADDRESS_HIGH, hash(clientIp));
+    }
+
+    /**
+     * Parses a dotted-quad IPv4 address in {@code s[from, to)}.
+     *
+     * @return the address as an unsigned 32-bit value, or -1 if it is not one
+     */
+    static long parseIpv4(String s, int from, int to) {
+        long address = 0;
+        int octets = 0;
+        int i = from;
+        while (i <= to) {
+            int start = i;
+            int value = 0;
+            while (i < to && s.charAt(i) >= '0' && s.charAt(i) <= '9' && i - start < 3) {
+                value = value * 10 + (s.charAt(i) - '0');
+                i++;
+            }
+            if (i == start || value > 255) {
+                return -1;
+            }
+            address = (address << 8) | value;
+            octets++;
+            if (i == to) {
+                return octets == 4 ? address : -1;
+            }
+            if (s.charAt(i) != '.' || octets == 4) {
+                return -1;
+            }
+            i++;
+        }
+        return -1;
+    }
+
+    /**
+     * Parses an IPv6 literal, optionally bracketed and with a zone id, into eight 16-bit
+     * groups. Supports {@code ::} compression and a trailing dotted IPv4 part.
+     *
+     * @return the groups, or null if {@code s} is not an IPv6 literal
+     */
+    static int[] parseIpv6(String s) {
+        int from = 0;
+        int to = s.length();
+        if (to > 1 && s.charAt(0) == '[' && s.charAt(to - 1) == ']') {
+            from++;
+            to--;
+        }
+        int zone = s.indexOf('%', from);
+        if (zone >= 0 && zone < to) {
+            to = zone;
+        }
+
+        int gap = s.indexOf("::", from);
+        if (gap >= to) {
+            gap = -1;
+        }
+        int[] groups = new int[8];
+        if (gap < 0) {
+            return parseGroups(s, from, to, groups, 0, 8) == 8 ? groups : null;
+        }
+        int second = s.indexOf("::", gap + 1);
+        if (second >= 0 && second < to) {
+            // A second "::", or ":::"
+            return null;
+        }
+
+        int head = parseGroups(s, from, gap, groups, 0, 7);
+        if (head < 0) {
+            return null;
+        }
+        int[] tail = new int[8];
+        int tailCount = parseGroups(s, gap + 2, to, tail, 0, 7 - head);
+        if (tailCount < 0) {
+            return null;
+        }
+        System.arraycopy(tail, 0, groups, 8 - tailCount, tailCount);
+        return groups;
+    }
+
+    // Parses colon-separated hex groups in s[from, to) into out; the last may be dotted IPv4.
+    // Returns the number of groups written, or -1 if the text is malformed or too long.
+    private static int parseGroups(String s, int from, int to, int[] out, int offset, int max) {
+        if (from == to) {
+            return 0;
+        }
+        int count = 0;
+        int i = from;
+        while (true) {
+            int end = s.indexOf(':', i);
+            if (end < 0 || end > to) {
+                end = to;
+            }
+            if (end == to && s.indexOf('.', i) >= 0 && s.indexOf('.', i) < to) {
+                long ipv4 = parseIpv4(s, i, to);
+                if (ipv4 < 0 || count + 2 > max) {
+                    return -1;
+                }
+                out[offset + count++] = (int) (ipv4 >>> 16);
+                out[offset + count++] = (int) (ipv4 & 0xFFFF);
+                return count;
+            }
+            if (end - i < 1 || end - i > 4 || count == max) {
+                return -1;
+            }
+            int value = 0;
+            for (int j = i; j < end; j++) {
+                int digit = Character.digit(s.charAt(j), 16);
+                if (digit < 0) {
+                    return -1;
+                }
+                value = (value << 4) | digit;
+            }
+            out[offset + count++] = value;
+            if (end == to) {
+                return count;
+            }
+            i = end + 1;
+        }
+    }
+
+    private static long pack(int[] groups, int from) {
+        return ((long) groups[from] << 48) | ((long) groups[from + 1] << 32)
+                | ((long) groups[from + 2] << 16) | groups[from + 3];
+    }
+
+    // 64-bit FNV-1a
+    private static long hash(String value) {
+        long h = 0xCBF29CE484222325L;
+        for (int i = 0; i < value.length(); i++) {
+            h ^= value.charAt(i);
+            h *= 0x100000001B3L;
+        }
+        return h;
+    }
+}
@@ -0,0 +1,10 @@
+package com.adewunmi.urlshortener.service;
+
+/**
+ * Operations with their own rate limit. Each client gets a separate bucket per operation.
+ */
+public enum RateLimitOperation {
+    SHORTEN,
+    SHORTEN_BATCH,
+    REDIRECT
+}
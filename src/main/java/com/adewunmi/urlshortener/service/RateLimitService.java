@@ -1,34 +1,87 @@
 package com.adewunmi.urlshortener.service;
 
-import io.github.bucket4j.Bandwidth;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.Expiry;
+import com.github.benmanes.caffeine.cache.RemovalCause;
+import com.github.benmanes.caffeine.cache.stats.CacheStats;
 import io.github.bucket4j.Bucket;
-import io.github.bucket4j.Refill;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import jakarta.annotation.PostConstruct;
 import lombok.extern.slf4j.Slf4j;
-import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Value;
-import org.springframework.data.redis.core.RedisTemplate;
 import org.springframework.stereotype.Service;
 
 import java.time.Duration;
+import java.util.EnumMap;
+import java.util.LinkedHashMap;
 import java.util.Map;
-import java.util.concurrent.ConcurrentHashMap;
-
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Per-client token buckets for each {@link RateLimitOperation}. Buckets live in a bounded
+ * Caffeine cache keyed by {@link RateLimitKey}; an idle bucket expires once it would have
+ * refilled completely, since recreating it full then loses nothing. Bucket4j buckets are
+ * lock-free and the cache is striped, so concurrent clients do not contend on a lock.
+ *
+ * <p>With {@code rate.limit.distributed.enabled} the limits apply cluster-wide through
+ * {@link DistributedRateLimiter}, and the local buckets only serve while Redis is down.
+ */
 @Service
 @Slf4j
 public class RateLimitService {
 
-    private final RedisTemplate<String, Object> redisTemplate;
-    private final boolean redisEnabled;
+    private final DistributedRateLimiter distributedRateLimiter;
+
+    private final Map<RateLimitOperation, RateLimit> limits = new EnumMap<>(RateLimitOperation.class);
+    private final Cache<RateLimitKey, Bucket> buckets;
+    private final LongAdder expiredBuckets = new LongAdder();
+    private final LongAdder evictedBuckets = new LongAdder();
+
+    // Check latency per operation, split by outcome
+    private final Map<RateLimitOperation, Timer> allowedTimers = new EnumMap<>(RateLimitOperation.class);
+    private final Map<RateLimitOperation, Timer> deniedTimers = new EnumMap<>(RateLimitOperation.class);
+
+    public RateLimitService(DistributedRateLimiter distributedRateLimiter,
+            @Value("${rate.limit.buckets.maximum-size:100000}") long maximumBuckets,
+            MeterRegistry meterRegistry) {
+        this.distributedRateLimiter = distributedRateLimiter;
+        this.buckets = Caffeine.newBuilder()
+                .maximumSize(maximumBuckets)
+                .expireAfter(Expiry.accessing((RateLimitKey key, Bucket bucket) ->
+                        Duration.ofNanos(limits.get(key.operation()).fullRefillNanos())))
+                .removalListener((RateLimitKey key, Bucket bucket, RemovalCause cause) -> {
+                    if (cause == RemovalCause.EXPIRED) {
+                        expiredBuckets.increment();
+                    } else if (cause == RemovalCause.SIZE) {
+                        evictedBuckets.increment();
+                    }
+                })
+                .recordStats()
+                .build();
+
+        CaffeineCacheMetrics.monitor(meterRegistry, buckets, "ratelimit.buckets");
+        for (RateLimitOperation operation : RateLimitOperation.values()) {
+            allowedTimers.put(operation, checkTimer(meterRegistry, operation, "allowed"));
+            deniedTimers.put(operation, checkTimer(meterRegistry, operation, "denied"));
+        }
 
-    public RateLimitService(@Autowired(required = false) RedisTemplate<String, Object> redisTemplate) {
-        this.redisTemplate = redisTemplate;
-        this.redisEnabled = redisTemplate != null;
-        
-        if (!redisEnabled) {
-            log.warn("Redis is not available. Rate limiting will use in-memory buckets only.");
+        if (!distributedRateLimiter.isEnabled()) {
+            log.warn("Distributed rate limiting is off. Limits are enforced per node with in-memory buckets.");
         }
     }
 
+    private static Timer checkTimer(MeterRegistry meterRegistry, RateLimitOperation operation, String outcome) {
+        return Timer.builder("urlshortener.ratelimit.check")
+                .description("Rate-limit checks per operation")
+                .tag("operation", operation.name().toLowerCase())
+                .tag("outcome", outcome)
+                .register(meterRegistry);
+    }
+
     @Value("${rate.limit.enabled:true}")
     private boolean rateLimitEnabled;
 
@@ -41,6 +94,15 @@ public class RateLimitService {
     @Value("${rate.limit.shorten.refill-duration-minutes:60}")
     private long shortenRefillDuration;
 
+    @Value("${rate.limit.shorten-batch.capacity:10000}")
+    private long shortenBatchCapacity;
+
+    @Value("${rate.limit.shorten-batch.refill-tokens:10000}")
+    private long shortenBatchRefillTokens;
+
+    @Value("${rate.limit.shorten-batch.refill-duration-minutes:60}")
+    private long shortenBatchRefillDuration;
+
     @Value("${rate.limit.redirect.capacity:100}")
     private long redirectCapacity;
 
@@ -50,20 +112,22 @@ public class RateLimitService {
     @Value("${rate.limit.redirect.refill-duration-minutes:1}")
     private long redirectRefillDuration;
 
-    // In-memory cache for buckets (for development)
-    // In production, consider using Redis-backed buckets
-    private final Map<String, Bucket> buckets = new ConcurrentHashMap<>();
+    @PostConstruct
+    void initLimits() {
+        limits.put(RateLimitOperation.SHORTEN, new RateLimit(shortenCapacity, shortenRefillTokens,
+                Duration.ofMinutes(shortenRefillDuration)));
+        limits.put(RateLimitOperation.SHORTEN_BATCH, new RateLimit(shortenBatchCapacity, shortenBatchRefillTokens,
+                Duration.ofMinutes(shortenBatchRefillDuration)));
+        limits.put(RateLimitOperation.REDIRECT, new RateLimit(redirectCapacity, redirectRefillTokens,
+                Duration.ofMinutes(redirectRefillDuration)));
+    }
 
     public boolean allowShortenRequest(String clientIp) {
         if (!rateLimitEnabled) {
             return true;
         }
 
-        String key = "rate:shorten:" + clientIp;
-        Bucket bucket = getBucket(key, shortenCapacity, shortenRefillTokens,
-                Duration.ofMinutes(shortenRefillDuration));
-
-        boolean allowed = bucket.tryConsume(1);
+        boolean allowed = tryConsume(RateLimitOperation.SHORTEN, clientIp, 1);
 
         if (!allowed) {
             log.warn("Rate limit exceeded for shortening from IP: {}", clientIp);
@@ -72,16 +136,30 @@ public class RateLimitService {
         return allowed;
     }
 
-    public boolean allowRedirectRequest(String clientIp) {
+    /**
+     * Batch shortens draw from their own bucket, one token per item, so bulk jobs neither
+     * eat into nor are limited by the per-request shorten limit.
+     */
+    public boolean allowShortenBatch(String clientIp, int items) {
         if (!rateLimitEnabled) {
             return true;
         }
 
-        String key = "rate:redirect:" + clientIp;
-        Bucket bucket = getBucket(key, redirectCapacity, redirectRefillTokens,
-                Duration.ofMinutes(redirectRefillDuration));
+        boolean allowed = tryConsume(RateLimitOperation.SHORTEN_BATCH, clientIp, items);
+
+        if (!allowed) {
+            log.warn("Batch rate limit exceeded for {} items from IP: {}", items, clientIp);
+        }
+
+        return allowed;
+    }
+
+    public boolean allowRedirectRequest(String clientIp) {
+        if (!rateLimitEnabled) {
+            return true;
+        }
 
-        boolean allowed = bucket.tryConsume(1);
+        boolean allowed = tryConsume(RateLimitOperation.REDIRECT, clientIp, 1);
 
         if (!allowed) {
             log.warn("Rate limit exceeded for redirects from IP: {}", clientIp);
@@ -90,54 +168,63 @@ public class RateLimitService {
         return allowed;
     }
 
-    public long getRemainingTokens(String clientIp, String operation) {
+    public long getRemainingTokens(String clientIp, RateLimitOperation operation) {
         if (!rateLimitEnabled) {
             return Long.MAX_VALUE;
         }
 
-        String key = "rate:" + operation + ":" + clientIp;
-        Bucket bucket = buckets.get(key);
+        RateLimitKey key = RateLimitKey.of(operation, clientIp);
+        if (distributedRateLimiter.isEnabled()) {
+            long remaining = distributedRateLimiter.approximateRemaining(key);
+            if (remaining >= 0) {
+                return remaining;
+            }
+        }
+
+        Bucket bucket = buckets.getIfPresent(key);
 
         if (bucket == null) {
-            return operation.equals("shorten") ? shortenCapacity : redirectCapacity;
+            return limits.get(operation).capacity();
         }
 
         return bucket.getAvailableTokens();
     }
 
-    private Bucket getBucket(String key, long capacity, long refillTokens, Duration refillDuration) {
-        return buckets.computeIfAbsent(key, k -> {
-            Bandwidth limit = Bandwidth.classic(capacity,
-                    Refill.intervally(refillTokens, refillDuration));
-            return Bucket.builder()
-                    .addLimit(limit)
-                    .build();
-        });
+    private boolean tryConsume(RateLimitOperation operation, String clientIp, long tokens) {
+        long start = System.nanoTime();
+        boolean allowed = consume(operation, clientIp, tokens);
+        (allowed ? allowedTimers : deniedTimers).get(operation)
+                .record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+        return allowed;
     }
 
-    // Redis-based rate limiting (alternative implementation)
-    public boolean checkRateLimitRedis(String key, int maxRequests, Duration window) {
-        if (!redisEnabled) {
-            log.warn("Redis not available for rate limiting, using in-memory buckets");
-            return true; // Fallback to allowing the request
-        }
-        
-        try {
-            String redisKey = "ratelimit:" + key;
-            Long currentCount = redisTemplate.opsForValue().increment(redisKey);
-
-            if (currentCount == null) {
-                currentCount = 0L;
-            }
-
-            if (currentCount == 1) {
-                redisTemplate.expire(redisKey, window);
+    private boolean consume(RateLimitOperation operation, String clientIp, long tokens) {
+        RateLimitKey key = RateLimitKey.of(operation, clientIp);
+        RateLimit limit = limits.get(operation);
+        if (distributedRateLimiter.isEnabled()) {
+            DistributedRateLimiter.Decision decision = distributedRateLimiter.tryAcquire(key, tokens, limit);
+            if (decision != DistributedRateLimiter.Decision.UNAVAILABLE) {
+                return decision == DistributedRateLimiter.Decision.ALLOWED;
             }
-
-            return currentCount <= maxRequests;
-        } catch (Exception e) {
-            log.error("Failed to check rate limit in Redis", e);
-            return true; // Fail open - allow the request
         }
+        return buckets.get(key, k -> limit.newBucket()).tryConsume(tokens);
+    }
+
+    public Map<String, Object> getStats() {
+        CacheStats stats = buckets.stats();
+        Map<String, Object> result = new LinkedHashMap<>();
+        result.put("enabled", rateLimitEnabled);
+        result.put("buckets", buckets.estimatedSize());
+        result.put("maximumBuckets", buckets.policy().eviction()
+                .map(eviction -> eviction.getMaximum())
+                .orElse(0L));
+        result.put("lookups", stats.requestCount());
+        result.put("bucketsCreated", stats.missCount());
+        // Idle buckets dropped after refilling completely; harmless
+        result.put("expiredBuckets", expiredBuckets.sum());
+        // Buckets dropped because the store was full; those clients start over with a full bucket
+        result.put("evictedBuckets", evictedBuckets.sum());
+        result.put("distributed", distributedRateLimiter.getStats());
+        return result;
     }
-}
\ No newline at end of file
+}
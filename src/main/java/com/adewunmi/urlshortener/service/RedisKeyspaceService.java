@@ -0,0 +1,208 @@
+package com.adewunmi.urlshortener.service;
+
+import com.adewunmi.urlshortener.config.BackgroundThreadFactory;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.redis.core.Cursor;
+import org.springframework.data.redis.core.ScanOptions;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.stereotype.Service;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Inspects and clears our Redis keyspace without KEYS, which blocks Redis for a full
+ * keyspace walk and returns every key at once. Totals come from DBSIZE; per-namespace
+ * counts from a SCAN that stops at a time budget and extrapolates. Clearing walks a
+ * namespace with SCAN in the background and removes keys in UNLINK batches, so memory is
+ * reclaimed off Redis's main thread.
+ */
+@Service
+@Slf4j
+public class RedisKeyspaceService {
+
+    public enum Namespace {
+        MAPPINGS("url:mapping:"),
+        STATS("url:stats:"),
+        CLICKS("url:clicks:"),
+        RATE_LIMITS("ratelimit:");
+
+        private final String prefix;
+
+        Namespace(String prefix) {
+            this.prefix = prefix;
+        }
+
+        public String prefix() {
+            return prefix;
+        }
+
+        public static Namespace fromParameter(String value) {
+            for (Namespace namespace : values()) {
+                if (namespace.name().equalsIgnoreCase(value.replace('-', '_'))) {
+                    return namespace;
+                }
+            }
+            throw new IllegalArgumentException("Unknown cache namespace: " + value);
+        }
+    }
+
+    private final StringRedisTemplate redisTemplate;
+    private final BackgroundThreadFactory threadFactory;
+    private final long scanBudgetNanos;
+    private final int scanCount;
+    private final int unlinkBatchSize;
+    private final AtomicBoolean clearing = new AtomicBoolean();
+
+    private volatile List<Namespace> clearNamespaces = List.of();
+    private volatile long keysScanned;
+    private volatile long keysUnlinked;
+    private volatile LocalDateTime clearStartedAt;
+    private volatile LocalDateTime clearFinishedAt;
+    private volatile String clearError;
+
+    public RedisKeyspaceService(@Autowired(required = false) StringRedisTemplate redisTemplate,
+            BackgroundThreadFactory threadFactory,
+            @Value("${cache.admin.scan-budget-ms:100}") long scanBudgetMs,
+            @Value("${cache.admin.scan-count:1000}") int scanCount,
+            @Value("${cache.admin.unlink-batch-size:500}") int unlinkBatchSize) {
+        this.redisTemplate = redisTemplate;
+        this.threadFactory = threadFactory;
+        this.scanBudgetNanos = TimeUnit.MILLISECONDS.toNanos(scanBudgetMs);
+        this.scanCount = scanCount;
+        this.unlinkBatchSize = unlinkBatchSize;
+    }
+
+    public boolean isAvailable() {
+        return redisTemplate != null;
+    }
+
+    /**
+     * Key counts per namespace. Exact when the sampling SCAN covered the whole keyspace
+     * within the time budget, otherwise extrapolated from the sample against DBSIZE.
+     *
+     * @throws org.springframework.dao.DataAccessException if Redis cannot be reached
+     */
+    public Map<String, Object> getKeyspaceStats() {
+        Long dbSize = redisTemplate.execute(connection -> connection.serverCommands().dbSize(), true);
+        long totalKeys = dbSize != null ? dbSize : 0;
+
+        Map<Namespace, Long> sampled = new EnumMap<>(Namespace.class);
+        long sampledKeys = 0;
+        boolean complete = true;
+        long deadline = System.nanoTime() + scanBudgetNanos;
+        try (Cursor<String> cursor = redisTemplate.scan(ScanOptions.scanOptions().count(scanCount).build())) {
+            while (cursor.hasNext()) {
+                String key = cursor.next();
+                sampledKeys++;
+                for (Namespace namespace : Namespace.values()) {
+                    if (key.startsWith(namespace.prefix())) {
+                        sampled.merge(namespace, 1L, Long::sum);
+                        break;
+                    }
+                }
+                if (System.nanoTime() - deadline > 0) {
+                    complete = false;
+                    break;
+                }
+            }
+        }
+
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("totalKeys", totalKeys);
+        stats.put("countsExact", complete);
+        stats.put("sampledKeys", sampledKeys);
+        Map<String, Long> namespaces = new LinkedHashMap<>();
+        for (Namespace namespace : Namespace.values()) {
+            long seen = sampled.getOrDefault(namespace, 0L);
+            long count = complete || sampledKeys == 0 ? seen : Math.round((double) seen / sampledKeys * totalKeys);
+            namespaces.put(namespace.name().toLowerCase(Locale.ROOT), count);
+        }
+        stats.put("namespaces", namespaces);
+        return stats;
+    }
+
+    /**
+     * Starts removing every key in the given namespaces in the background.
+     *
+     * @return false if a clear is already running
+     */
+    public boolean startClear(List<Namespace> namespaces) {
+        if (!clearing.compareAndSet(false, true)) {
+            return false;
+        }
+
+        clearNamespaces = List.copyOf(namespaces);
+        keysScanned = 0;
+        keysUnlinked = 0;
+        clearStartedAt = LocalDateTime.now();
+        clearFinishedAt = null;
+        clearError = null;
+
+        threadFactory.newThread("cache-clear", this::runClear).start();
+        return true;
+    }
+
+    private void runClear() {
+        try {
+            for (Namespace namespace : clearNamespaces) {
+                clearNamespace(namespace);
+            }
+            log.info("Cleared {} Redis keys from {}", keysUnlinked, clearNamespaces);
+        } catch (Exception e) {
+            clearError = e.getMessage();
+            log.error("Redis cache clear failed after {} keys", keysUnlinked, e);
+        } finally {
+            clearFinishedAt = LocalDateTime.now();
+            clearing.set(false);
+        }
+    }
+
+    private void clearNamespace(Namespace namespace) {
+        ScanOptions options = ScanOptions.scanOptions()
+                .match(namespace.prefix() + "*")
+                .count(scanCount)
+                .build();
+        List<String> batch = new ArrayList<>(unlinkBatchSize);
+        try (Cursor<String> cursor = redisTemplate.scan(options)) {
+            while (cursor.hasNext()) {
+                batch.add(cursor.next());
+                keysScanned++;
+                if (batch.size() == unlinkBatchSize) {
+                    unlink(batch);
+                }
+            }
+        }
+        unlink(batch);
+    }
+
+    private void unlink(List<String> batch) {
+        if (batch.isEmpty()) {
+            return;
+        }
+        Long removed = redisTemplate.unlink(batch);
+        keysUnlinked += removed != null ? removed : 0;
+        batch.clear();
+    }
+
+    public Map<String, Object> getClearStatus() {
+        Map<String, Object> status = new LinkedHashMap<>();
+        status.put("running", clearing.get());
+        status.put("namespaces", clearNamespaces);
+        status.put("startedAt", clearStartedAt);
+        status.put("finishedAt", clearFinishedAt);
+        status.put("keysScanned", keysScanned);
+        status.put("keysUnlinked", keysUnlinked);
+        status.put("error", clearError);
+        return status;
+    }
+}
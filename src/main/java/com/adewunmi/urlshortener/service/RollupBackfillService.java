@@ -0,0 +1,90 @@
+package com.adewunmi.urlshortener.service;
+
+import com.adewunmi.urlshortener.config.BackgroundThreadFactory;
+import com.adewunmi.urlshortener.repository.ClickBatchRepository;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.time.LocalDateTime;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Rebuilds the daily click rollups from the raw clicks table, e.g. for data recorded
+ * before the rollups existed. Runs in the background in small url id ranges; progress is
+ * reported through {@link #getStatus()}.
+ */
+@Service
+@Slf4j
+public class RollupBackfillService {
+
+    private final ClickBatchRepository clickBatchRepository;
+    private final BackgroundThreadFactory threadFactory;
+    private final int rangeSize;
+    private final AtomicBoolean running = new AtomicBoolean();
+
+    private volatile long maxUrlId;
+    private volatile long processedThroughId;
+    private volatile long clicksAggregated;
+    private volatile LocalDateTime startedAt;
+    private volatile LocalDateTime finishedAt;
+    private volatile String error;
+
+    public RollupBackfillService(ClickBatchRepository clickBatchRepository,
+            BackgroundThreadFactory threadFactory,
+            @Value("${click.rollup.backfill-range-size:500}") int rangeSize) {
+        this.clickBatchRepository = clickBatchRepository;
+        this.threadFactory = threadFactory;
+        this.rangeSize = rangeSize;
+    }
+
+    /**
+     * @return false if a backfill is already running
+     */
+    public boolean start() {
+        if (!running.compareAndSet(false, true)) {
+            return false;
+        }
+
+        startedAt = LocalDateTime.now();
+        finishedAt = null;
+        error = null;
+        processedThroughId = 0;
+        clicksAggregated = 0;
+
+        threadFactory.newThread("rollup-backfill", this::run).start();
+        return true;
+    }
+
+    private void run() {
+        try {
+            maxUrlId = clickBatchRepository.findMaxUrlId();
+            for (long afterId = 0; afterId < maxUrlId; afterId += rangeSize) {
+                clicksAggregated += clickBatchRepository.rebuildRollups(afterId, afterId + rangeSize);
+                processedThroughId = Math.min(afterId + rangeSize, maxUrlId);
+            }
+            log.info("Rollup backfill finished: {} clicks aggregated for urls up to id {}",
+                    clicksAggregated, maxUrlId);
+        } catch (Exception e) {
+            error = e.getMessage();
+            log.error("Rollup backfill failed after url id {}", processedThroughId, e);
+        } finally {
+            finishedAt = LocalDateTime.now();
+            running.set(false);
+        }
+    }
+
+    public Map<String, Object> getStatus() {
+        Map<String, Object> status = new LinkedHashMap<>();
+        status.put("running", running.get());
+        status.put("startedAt", startedAt);
+        status.put("finishedAt", finishedAt);
+        status.put("maxUrlId", maxUrlId);
+        status.put("processedThroughUrlId", processedThroughId);
+        status.put("clicksAggregated", clicksAggregated);
+        status.put("error", error);
+        return status;
+    }
+}
@@ -0,0 +1,129 @@
+package com.adewunmi.urlshortener.service;
+
+import com.adewunmi.urlshortener.util.Base62;
+import com.adewunmi.urlshortener.util.FeistelPermutation;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Derives codes from numeric ids handed out in blocks (hi/lo). Each node leases a block
+ * of ids with one nextval() on {@code short_code_seq}, whose increment is the block size,
+ * and then issues ids from it in memory. Blocks never overlap across nodes, so a new
+ * code needs no existence check. A rare clash with a custom or legacy random code is left
+ * to the insert, which replaces a taken generated code and retries.
+ *
+ * <p>With scrambling enabled the id is run through a keyed permutation of the 7-character
+ * code space before base62 encoding, so consecutive links do not get guessable codes.
+ * The key must be the same on every node and must never change.
+ */
+@Component
+@ConditionalOnProperty(name = "shortcode.generator", havingValue = "segment", matchIfMissing = true)
+@Slf4j
+public class SegmentShortCodeGenerator implements ShortCodeGenerator {
+
+    private static final String SEQUENCE_NAME = "short_code_seq";
+    private static final int SHORT_CODE_LENGTH = 7;
+    private static final long CODE_SPACE = Base62.capacity(SHORT_CODE_LENGTH);
+
+    private final JdbcTemplate jdbcTemplate;
+    private final int configuredBlockSize;
+    private final FeistelPermutation permutation;
+
+    private final ReentrantLock lock = new ReentrantLock();
+    private long blockSize;
+    private long nextId;
+    private long blockEnd;
+
+    public SegmentShortCodeGenerator(JdbcTemplate jdbcTemplate,
+            @Value("${shortcode.segment.block-size:1000}") int blockSize,
+            @Value("${shortcode.segment.scramble:true}") boolean scramble,
+            @Value("${shortcode.segment.scramble-key:6148914691236517205}") long scrambleKey) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.configuredBlockSize = blockSize;
+        this.permutation = scramble ? new FeistelPermutation(CODE_SPACE, scrambleKey) : null;
+    }
+
+    @Override
+    public String nextCode() {
+        return encode(nextId());
+    }
+
+    /**
+     * Takes all ids under one lock acquisition.
+     */
+    @Override
+    public List<String> nextCodes(int count) {
+        long[] ids = new long[count];
+        lock.lock();
+        try {
+            for (int i = 0; i < count; i++) {
+                if (nextId >= blockEnd) {
+                    leaseBlock();
+                }
+                ids[i] = nextId++;
+            }
+        } finally {
+            lock.unlock();
+        }
+
+        List<String> codes = new ArrayList<>(count);
+        for (long id : ids) {
+            codes.add(encode(id));
+        }
+        return codes;
+    }
+
+    // Package-private for the JMH benchmarks (src/jmh)
+    String encode(long id) {
+        if (id >= CODE_SPACE) {
+            throw new IllegalStateException("Short code space exhausted");
+        }
+        return Base62.encode(permutation != null ? permutation.permute(id) : id, SHORT_CODE_LENGTH);
+    }
+
+    private long nextId() {
+        lock.lock();
+        try {
+            if (nextId >= blockEnd) {
+                leaseBlock();
+            }
+            return nextId++;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private void leaseBlock() {
+        if (blockSize == 0) {
+            blockSize = initSequence();
+        }
+        Long start = jdbcTemplate.queryForObject("SELECT nextval('" + SEQUENCE_NAME + "')", Long.class);
+        nextId = start;
+        blockEnd = start + blockSize;
+        log.info("Leased short code id block [{}, {})", nextId, blockEnd);
+    }
+
+    /**
+     * Creates the sequence on first use and returns its increment, which is the block size
+     * every node must use so leased blocks never overlap.
+     */
+    private long initSequence() {
+        jdbcTemplate.execute("CREATE SEQUENCE IF NOT EXISTS " + SEQUENCE_NAME
+                + " START WITH 1 INCREMENT BY " + configuredBlockSize);
+        Long increment = jdbcTemplate.queryForObject(
+                "SELECT increment_by FROM pg_sequences WHERE schemaname = current_schema() AND sequencename = ?",
+                Long.class, SEQUENCE_NAME);
+        if (increment != configuredBlockSize) {
+            log.warn("{} was created with increment {}; using that as the block size instead of {}",
+                    SEQUENCE_NAME, increment, configuredBlockSize);
+        }
+        return increment;
+    }
+}
@@ -0,0 +1,232 @@
+package com.adewunmi.urlshortener.service;
+
+import com.adewunmi.urlshortener.config.BackgroundThreadFactory;
+import com.adewunmi.urlshortener.util.ScalableBloomFilter;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.time.LocalDateTime;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Negative cache for short codes. Holds a Bloom filter of every code in the urls table
+ * so that lookups for codes that were never created can be answered without touching
+ * Redis or the database.
+ *
+ * <p>A code created on another node has to reach this filter before anyone asks for it.
+ * With the cache invalidation bus enabled, new codes are announced on it and added here
+ * as they arrive, and negatives are only trusted while the bus is subscribed. A periodic
+ * refresh reads the codes added to the table since the last one, by id, as a backstop.
+ */
+@Service
+@Slf4j
+public class ShortCodeFilterService {
+
+    private static final int PAGE_SIZE = 10_000;
+
+    // Ids are assigned at insert but become visible at commit, so each refresh re-reads a
+    // few ids below the last one seen to pick up rows that committed out of order
+    private static final long REFRESH_ID_OVERLAP = 1000;
+
+    private final JdbcTemplate jdbcTemplate;
+    private final BackgroundThreadFactory threadFactory;
+    private final boolean enabled;
+    private final ScalableBloomFilter filter;
+    private final Counter rejected;
+
+    // Held for every read of the table, so a catch-up cannot overlap the build or a refresh
+    private final ReentrantLock loadLock = new ReentrantLock();
+    private volatile boolean ready;
+    private volatile long lastSeenId;
+    private volatile LocalDateTime lastRefreshAt;
+    // Cleared while new codes are announced but the announcements are not being received
+    private volatile boolean announcementsLive = true;
+    // Guarded by loadLock; set when the next successful read makes negatives final again
+    private boolean catchUpPending;
+
+    public ShortCodeFilterService(JdbcTemplate jdbcTemplate,
+            BackgroundThreadFactory threadFactory,
+            @Value("${shortcode.filter.enabled:true}") boolean enabled,
+            @Value("${shortcode.filter.expected-insertions:1000000}") long expectedInsertions,
+            @Value("${shortcode.filter.fpp:0.01}") double fpp,
+            MeterRegistry meterRegistry) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.threadFactory = threadFactory;
+        this.enabled = enabled;
+        this.filter = new ScalableBloomFilter(expectedInsertions, fpp);
+        this.rejected = Counter.builder("urlshortener.shortcode.filter.rejected")
+                .description("Lookups answered as not found by the Bloom filter")
+                .register(meterRegistry);
+        Gauge.builder("urlshortener.shortcode.filter.elements", filter, ScalableBloomFilter::approximateElementCount)
+                .description("Approximate number of codes in the Bloom filter")
+                .register(meterRegistry);
+        Gauge.builder("urlshortener.shortcode.filter.memory", filter, ScalableBloomFilter::memoryBytes)
+                .baseUnit("bytes")
+                .register(meterRegistry);
+    }
+
+    /**
+     * Returns false only when the code definitely does not exist. Until the initial
+     * build has finished, and while announcements of new codes are missed, every code is
+     * reported as possibly present.
+     */
+    public boolean mightExist(String shortCode) {
+        if (!enabled || !ready || !announcementsLive || filter.mightContain(shortCode)) {
+            return true;
+        }
+        rejected.increment();
+        return false;
+    }
+
+    public void add(String shortCode) {
+        if (enabled) {
+            filter.add(shortCode);
+        }
+    }
+
+    /**
+     * Called by the invalidation bus when it is not receiving announcements of new codes,
+     * including before its first subscription. Negatives stop being final until
+     * {@link #announcementsResumed()} has caught up.
+     */
+    void announcementsStopped() {
+        loadLock.lock();
+        try {
+            announcementsLive = false;
+            catchUpPending = false;
+        } finally {
+            loadLock.unlock();
+        }
+    }
+
+    /**
+     * Called by the invalidation bus once it is subscribed again, or after it missed a
+     * message. Codes announced from now on arrive as messages; the ones created before are
+     * read from the table. Negatives are final again after that read succeeds, here or on
+     * a later refresh.
+     */
+    void announcementsResumed() {
+        loadLock.lock();
+        try {
+            catchUpPending = true;
+            if (ready) {
+                loadRecent();
+            }
+        } finally {
+            loadLock.unlock();
+        }
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void build() {
+        if (!enabled) {
+            return;
+        }
+
+        Thread builder = threadFactory.newThread("shortcode-filter-builder", () -> {
+            loadLock.lock();
+            try {
+                long loaded = loadAfter(0);
+                // Second pass for rows that committed out of order while the first was paging
+                loaded += loadAfter(Math.max(0, lastSeenId - REFRESH_ID_OVERLAP));
+                lastRefreshAt = LocalDateTime.now();
+                if (catchUpPending) {
+                    catchUpPending = false;
+                    announcementsLive = true;
+                }
+                ready = true;
+                log.info("Short code filter built with {} codes ({} bytes, estimated fpp {})",
+                        loaded, filter.memoryBytes(), filter.estimatedFpp());
+            } catch (Exception e) {
+                log.error("Failed to build short code filter; negative lookups stay disabled", e);
+            } finally {
+                loadLock.unlock();
+            }
+        });
+        builder.start();
+    }
+
+    /**
+     * Adds the codes with ids above {@code afterId}, a page at a time, and advances
+     * {@code lastSeenId}.
+     */
+    private long loadAfter(long afterId) {
+        long lastId = afterId;
+        long loaded = 0;
+        while (true) {
+            long[] maxId = { lastId };
+            int[] rows = { 0 };
+            jdbcTemplate.query("SELECT id, short_code FROM urls WHERE id > ? ORDER BY id LIMIT ?",
+                    rs -> {
+                        filter.add(rs.getString("short_code"));
+                        maxId[0] = rs.getLong("id");
+                        rows[0]++;
+                    },
+                    lastId, PAGE_SIZE);
+            loaded += rows[0];
+            lastId = maxId[0];
+            if (lastId > lastSeenId) {
+                lastSeenId = lastId;
+            }
+            if (rows[0] < PAGE_SIZE) {
+                return loaded;
+            }
+        }
+    }
+
+    /**
+     * Picks up codes added to the table since the last refresh, by any node or import.
+     */
+    @Scheduled(fixedDelayString = "${shortcode.filter.refresh-interval-ms:5000}")
+    public void refresh() {
+        if (!enabled || !ready) {
+            return;
+        }
+
+        loadLock.lock();
+        try {
+            loadRecent();
+        } finally {
+            loadLock.unlock();
+        }
+    }
+
+    // Caller holds loadLock
+    private void loadRecent() {
+        try {
+            loadAfter(Math.max(0, lastSeenId - REFRESH_ID_OVERLAP));
+            lastRefreshAt = LocalDateTime.now();
+            if (catchUpPending) {
+                catchUpPending = false;
+                announcementsLive = true;
+            }
+        } catch (Exception e) {
+            log.error("Failed to refresh short code filter", e);
+        }
+    }
+
+    public Map<String, Object> getStats() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("enabled", enabled);
+        stats.put("ready", ready);
+        stats.put("approximateElements", filter.approximateElementCount());
+        stats.put("slices", filter.sliceCount());
+        stats.put("memoryBytes", filter.memoryBytes());
+        stats.put("targetFpp", filter.targetFpp());
+        stats.put("estimatedFpp", filter.estimatedFpp());
+        stats.put("announcementsLive", announcementsLive);
+        stats.put("lastSeenId", lastSeenId);
+        stats.put("lastRefreshAt", lastRefreshAt);
+        return stats;
+    }
+}
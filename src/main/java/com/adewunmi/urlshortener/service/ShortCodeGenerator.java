@@ -0,0 +1,27 @@
+package com.adewunmi.urlshortener.service;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Produces short codes for new links. The implementation is picked with the
+ * {@code shortcode.generator} property ({@code segment} or {@code random}).
+ */
+public interface ShortCodeGenerator {
+
+    /**
+     * Returns a code that is not yet used by any link.
+     */
+    String nextCode();
+
+    /**
+     * Returns {@code count} distinct unused codes, for batch creation.
+     */
+    default List<String> nextCodes(int count) {
+        List<String> codes = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            codes.add(nextCode());
+        }
+        return codes;
+    }
+}
@@ -0,0 +1,218 @@
+package com.adewunmi.urlshortener.service;
+
+import com.adewunmi.urlshortener.dto.CachedUrl;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.function.Function;
+
+/**
+ * Loads URL mappings on a cache miss with at most one load per short code in flight on
+ * this node. The first caller (the leader) runs the load and caches the result; concurrent
+ * callers for the same code wait for it, up to {@code cache.load.wait-timeout-ms}, and
+ * then load on their own rather than fail the redirect.
+ *
+ * <p>With {@code cache.load.distributed.enabled} the leader also takes a short Redis lock
+ * so that one node loads for the whole cluster. The lock holder writes its result into the
+ * lock key; leaders on other nodes poll that key for a short while and fall back to their
+ * own load if nothing arrives.
+ */
+@Component
+@Slf4j
+public class SingleFlightUrlLoader {
+
+    private static final String LOCK_PREFIX = "url:load:";
+    private static final String PENDING = "?";
+    private static final String NOT_FOUND = "-";
+    private static final char RESULT_MARKER = '=';
+
+    private final CacheService cacheService;
+    private final StringRedisTemplate redisTemplate;
+    private final boolean distributed;
+    private final long waitTimeoutMillis;
+    private final Duration lockTtl;
+    private final Duration remoteWait;
+    private final long remoteWaitNanos;
+    private final long pollMillis;
+
+    private final ConcurrentHashMap<String, CompletableFuture<CachedUrl>> inFlight = new ConcurrentHashMap<>();
+
+    private final Counter leaderLoads;
+    private final Counter coalesced;
+    private final Counter timeouts;
+    private final Counter remoteLoads;
+
+    public SingleFlightUrlLoader(CacheService cacheService,
+            @Autowired(required = false) StringRedisTemplate redisTemplate,
+            @Value("${cache.load.wait-timeout-ms:2000}") long waitTimeoutMillis,
+            @Value("${cache.load.distributed.enabled:false}") boolean distributed,
+            @Value("${cache.load.distributed.lock-ttl-ms:2000}") long lockTtlMillis,
+            @Value("${cache.load.distributed.wait-ms:500}") long remoteWaitMillis,
+            @Value("${cache.load.distributed.poll-ms:10}") long pollMillis,
+            MeterRegistry meterRegistry) {
+        this.cacheService = cacheService;
+        this.redisTemplate = redisTemplate;
+        this.distributed = distributed && redisTemplate != null;
+        this.waitTimeoutMillis = waitTimeoutMillis;
+        this.lockTtl = Duration.ofMillis(lockTtlMillis);
+        this.remoteWait = Duration.ofMillis(remoteWaitMillis);
+        this.remoteWaitNanos = remoteWait.toNanos();
+        this.pollMillis = pollMillis;
+
+        this.leaderLoads = loadCounter(meterRegistry, "leader");
+        this.coalesced = loadCounter(meterRegistry, "coalesced");
+        this.timeouts = loadCounter(meterRegistry, "timeout");
+        this.remoteLoads = loadCounter(meterRegistry, "remote");
+        Gauge.builder("urlshortener.cache.load.inflight", inFlight, Map::size)
+                .description("Short codes with a load in flight on this node")
+                .register(meterRegistry);
+
+        if (distributed && redisTemplate == null) {
+            log.warn("Distributed load coalescing is enabled but Redis is not configured; coalescing per node only");
+        }
+    }
+
+    private static Counter loadCounter(MeterRegistry meterRegistry, String outcome) {
+        return Counter.builder("urlshortener.cache.load")
+                .description("Cache-miss loads by how they were served")
+                .tag("outcome", outcome)
+                .register(meterRegistry);
+    }
+
+    /**
+     * Returns the mapping for {@code shortCode}, or null if it does not exist. Found
+     * mappings are cached before any waiting caller is released.
+     *
+     * @param loader looks the code up in the database; returns null when it does not exist
+     */
+    public CachedUrl load(String shortCode, Function<String, CachedUrl> loader) {
+        CompletableFuture<CachedUrl> mine = new CompletableFuture<>();
+        CompletableFuture<CachedUrl> existing = inFlight.putIfAbsent(shortCode, mine);
+        if (existing != null) {
+            return await(shortCode, existing, loader);
+        }
+
+        leaderLoads.increment();
+        long epoch = cacheService.currentEpoch();
+        try {
+            CachedUrl value = loadCoordinated(shortCode, loader);
+            if (value != null) {
+                cacheService.cacheUrlMapping(shortCode, value, epoch);
+            }
+            mine.complete(value);
+            return value;
+        } catch (RuntimeException e) {
+            mine.completeExceptionally(e);
+            throw e;
+        } finally {
+            inFlight.remove(shortCode, mine);
+        }
+    }
+
+    private CachedUrl await(String shortCode, CompletableFuture<CachedUrl> leader,
+            Function<String, CachedUrl> loader) {
+        coalesced.increment();
+        try {
+            return leader.get(waitTimeoutMillis, TimeUnit.MILLISECONDS);
+        } catch (TimeoutException e) {
+            timeouts.increment();
+            log.debug("Timed out waiting for in-flight load of {}, loading directly", shortCode);
+            return loader.apply(shortCode);
+        } catch (ExecutionException e) {
+            // The leader's load failed; ours would almost certainly fail the same way
+            throw e.getCause() instanceof RuntimeException runtime ? runtime : new IllegalStateException(e.getCause());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted waiting for load of " + shortCode, e);
+        }
+    }
+
+    private CachedUrl loadCoordinated(String shortCode, Function<String, CachedUrl> loader) {
+        if (!distributed) {
+            return loader.apply(shortCode);
+        }
+
+        String key = LOCK_PREFIX + shortCode;
+        Boolean acquired;
+        try {
+            acquired = redisTemplate.opsForValue().setIfAbsent(key, PENDING, lockTtl);
+        } catch (Exception e) {
+            log.debug("Load lock unavailable for {}: {}", shortCode, e.getMessage());
+            return loader.apply(shortCode);
+        }
+
+        if (Boolean.TRUE.equals(acquired)) {
+            CachedUrl value = loader.apply(shortCode);
+            publish(key, value);
+            return value;
+        }
+
+        String remote = awaitRemote(key);
+        if (remote != null) {
+            remoteLoads.increment();
+            return NOT_FOUND.equals(remote) ? null : CachedUrl.decode(remote.substring(1));
+        }
+        return loader.apply(shortCode);
+    }
+
+    // Hands the result to leaders on other nodes that are polling the lock key. It only lives
+    // as long as they would poll, so later misses read the database rather than a stale copy
+    private void publish(String key, CachedUrl value) {
+        String encoded = value != null ? RESULT_MARKER + value.encode() : NOT_FOUND;
+        try {
+            redisTemplate.opsForValue().set(key, encoded, remoteWait);
+        } catch (Exception e) {
+            log.debug("Failed to publish load result for {}: {}", key, e.getMessage());
+        }
+    }
+
+    /**
+     * Polls the lock key until the holder publishes a result. Returns null if the wait runs
+     * out, the lock disappears, or Redis fails, in which case the caller loads itself.
+     */
+    private String awaitRemote(String key) {
+        long deadline = System.nanoTime() + remoteWaitNanos;
+        try {
+            while (System.nanoTime() - deadline < 0) {
+                String value = redisTemplate.opsForValue().get(key);
+                if (value == null) {
+                    return null;
+                }
+                if (NOT_FOUND.equals(value) || value.charAt(0) == RESULT_MARKER) {
+                    return value;
+                }
+                Thread.sleep(pollMillis);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (Exception e) {
+            log.debug("Failed to read load result for {}: {}", key, e.getMessage());
+        }
+        return null;
+    }
+
+    public Map<String, Object> getStats() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("distributed", distributed);
+        stats.put("inFlight", inFlight.size());
+        stats.put("leaderLoads", (long) leaderLoads.count());
+        stats.put("coalesced", (long) coalesced.count());
+        stats.put("timeouts", (long) timeouts.count());
+        stats.put("remoteLoads", (long) remoteLoads.count());
+        return stats;
+    }
+}
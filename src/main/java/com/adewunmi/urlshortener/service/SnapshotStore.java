@@ -0,0 +1,457 @@
+package com.adewunmi.urlshortener.service;
+
+import com.adewunmi.urlshortener.config.BackgroundThreadFactory;
+import com.adewunmi.urlshortener.dto.CachedUrl;
+import com.adewunmi.urlshortener.repository.LinkTransferRepository;
+import com.adewunmi.urlshortener.util.MappedUrlTable;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Every short code mapping in memory-mapped files on local disk, consulted after the local
+ * cache and before Redis. Lookups are a hash probe into the page cache: no network I/O and
+ * no heap beyond the result, so redirects keep working with Redis and the database down.
+ *
+ * <p>A base generation holding every url is rebuilt periodically; between rebuilds, small
+ * delta generations add the urls created since. Each build is written to new files and
+ * swapped in atomically, on disk through the manifest and in memory through one volatile
+ * view, so readers never see a partial snapshot. A restarted node maps the files it
+ * already has instead of waiting for a rebuild.
+ *
+ * <p>Links are immutable once created, but one changed directly in the database can be
+ * invalidated; invalidated codes bypass the snapshot until the next base rebuild. After a
+ * flush, when invalidations may have been missed, the whole snapshot is bypassed instead.
+ */
+@Service
+@Slf4j
+public class SnapshotStore {
+
+    private static final String MANIFEST = "snapshot.manifest";
+    private static final String EXTENSION = ".snap";
+
+    // Ids are assigned at insert but become visible at commit, so each delta re-reads a
+    // few ids below the last one seen to pick up rows that committed out of order
+    private static final long DELTA_ID_OVERLAP = 1000;
+
+    // Half the 2 GB mapping limit, as the size estimate ignores hashing imbalance
+    private static final long TARGET_PARTITION_BYTES = 1L << 30;
+
+    private final LinkTransferRepository linkTransferRepository;
+    private final BackgroundThreadFactory threadFactory;
+    private final boolean enabled;
+    private final Path directory;
+    private final long rebuildIntervalMillis;
+    private final int maxDeltas;
+    private final int fetchSize;
+    private final MeterRegistry meterRegistry;
+
+    private volatile View view = View.EMPTY;
+    // Invalidated short code -> when, in epoch millis; dropped by a base build started later
+    private final Map<String, Long> bypassed = new ConcurrentHashMap<>();
+    // When the local tiers were last flushed, in epoch millis; older bases are not consulted
+    private volatile long flushedAt;
+
+    private ExecutorService builder;
+    private final AtomicBoolean building = new AtomicBoolean();
+    private volatile boolean rebuildRequested;
+
+    private final Timer baseBuilds;
+    private final Timer deltaBuilds;
+    private final Counter buildFailures;
+
+    public SnapshotStore(LinkTransferRepository linkTransferRepository,
+            BackgroundThreadFactory threadFactory,
+            @Value("${snapshot.enabled:false}") boolean enabled,
+            @Value("${snapshot.directory:data/snapshot}") String directory,
+            @Value("${snapshot.rebuild-interval-ms:3600000}") long rebuildIntervalMillis,
+            @Value("${snapshot.max-deltas:16}") int maxDeltas,
+            @Value("${snapshot.fetch-size:5000}") int fetchSize,
+            MeterRegistry meterRegistry) {
+        this.linkTransferRepository = linkTransferRepository;
+        this.threadFactory = threadFactory;
+        this.enabled = enabled;
+        this.directory = Paths.get(directory);
+        this.rebuildIntervalMillis = rebuildIntervalMillis;
+        this.maxDeltas = maxDeltas;
+        this.fetchSize = fetchSize;
+        this.meterRegistry = meterRegistry;
+
+        this.baseBuilds = buildTimer(meterRegistry, "base");
+        this.deltaBuilds = buildTimer(meterRegistry, "delta");
+        this.buildFailures = Counter.builder("urlshortener.snapshot.build.failures")
+                .description("Snapshot builds that failed; the previous snapshot stays in use")
+                .register(meterRegistry);
+    }
+
+    private static Timer buildTimer(MeterRegistry meterRegistry, String kind) {
+        return Timer.builder("urlshortener.snapshot.build")
+                .description("Time to write and map a snapshot generation")
+                .tag("kind", kind)
+                .register(meterRegistry);
+    }
+
+    /**
+     * Maps the generations listed in the manifest left by a previous run, if any.
+     */
+    @PostConstruct
+    void open() throws IOException {
+        Gauge.builder("urlshortener.snapshot.entries", this, store -> store.view.entryCount())
+                .description("Entries in the mapped snapshot, deltas included")
+                .register(meterRegistry);
+        Gauge.builder("urlshortener.snapshot.mapped", this, store -> store.view.sizeBytes())
+                .baseUnit("bytes")
+                .register(meterRegistry);
+        if (!enabled) {
+            return;
+        }
+        Files.createDirectories(directory);
+        builder = Executors.newSingleThreadExecutor(task -> threadFactory.newThread("snapshot-builder", task));
+
+        Path manifest = directory.resolve(MANIFEST);
+        if (!Files.exists(manifest)) {
+            return;
+        }
+        try {
+            List<Generation> generations = new ArrayList<>();
+            for (String line : Files.readAllLines(manifest, StandardCharsets.UTF_8)) {
+                if (!line.isBlank()) {
+                    generations.add(openGeneration(line.trim()));
+                }
+            }
+            if (!generations.isEmpty()) {
+                view = new View(generations.get(0), List.copyOf(generations.subList(1, generations.size())));
+                log.info("Mapped snapshot {} with {} deltas ({} links, built {})", view.base.name,
+                        view.deltas.size(), view.entryCount(), Instant.ofEpochMilli(view.base.createdAtMillis()));
+            }
+        } catch (Exception e) {
+            log.warn("Ignoring unreadable snapshot in {}, rebuilding: {}", directory, e.getMessage());
+        }
+    }
+
+    @PreDestroy
+    void close() {
+        if (builder != null) {
+            builder.shutdownNow();
+        }
+    }
+
+    /**
+     * Returns the mapping for {@code shortCode}, or null if the snapshot does not have it
+     * (created after the last delta, bypassed after an invalidation or flush, or the store is off).
+     */
+    public CachedUrl lookup(String shortCode) {
+        View current = view;
+        if (current.base == null || current.base.createdAtMillis() < flushedAt
+                || !bypassed.isEmpty() && bypassed.containsKey(shortCode)) {
+            return null;
+        }
+        long hash = MappedUrlTable.hash(shortCode);
+        for (Generation delta : current.deltas) {
+            CachedUrl value = delta.get(shortCode, hash);
+            if (value != null) {
+                return value;
+            }
+        }
+        return current.base.get(shortCode, hash);
+    }
+
+    /**
+     * Stops serving {@code shortCode} from the snapshot until the next base rebuild.
+     */
+    public void bypass(String shortCode) {
+        if (enabled) {
+            bypassed.put(shortCode, System.currentTimeMillis());
+        }
+    }
+
+    /**
+     * Stops serving from the snapshot until a base started after now is built, and requests
+     * one. Used when the local tiers are flushed because invalidations may have been missed.
+     */
+    public void flush() {
+        if (enabled) {
+            flushedAt = System.currentTimeMillis();
+            requestRebuild();
+        }
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * Builds a new base on the next run instead of a delta.
+     */
+    public void requestRebuild() {
+        rebuildRequested = true;
+        maintain();
+    }
+
+    /**
+     * Adds a delta of the urls created since the last build, or rebuilds the base when it is
+     * missing or due. Builds run one at a time on a background thread; a run that finds one
+     * still going is skipped.
+     */
+    @Scheduled(fixedDelayString = "${snapshot.delta-interval-ms:30000}")
+    public void maintain() {
+        if (!enabled || !building.compareAndSet(false, true)) {
+            return;
+        }
+        builder.execute(() -> {
+            try {
+                View current = view;
+                if (rebuildRequested || current.base == null
+                        || System.currentTimeMillis() - current.base.createdAtMillis() >= rebuildIntervalMillis) {
+                    rebuildRequested = false;
+                    buildBase();
+                } else {
+                    buildDelta(current);
+                }
+            } catch (Exception e) {
+                buildFailures.increment();
+                log.warn("Snapshot build failed, still serving the previous snapshot: {}", e.getMessage());
+            } finally {
+                building.set(false);
+            }
+        });
+    }
+
+    private void buildBase() throws IOException {
+        long startedAt = System.currentTimeMillis();
+        long start = System.nanoTime();
+        long throughId = linkTransferRepository.findMaxId();
+        Generation base = write("base-" + startedAt, 0, throughId, startedAt);
+        install(new View(base, List.of()));
+        // The base read the database after these were invalidated, so it has their current state
+        bypassed.values().removeIf(invalidatedAt -> invalidatedAt < startedAt);
+        baseBuilds.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+        log.info("Snapshot base {} built with {} links through id {} in {} ms ({} bytes in {} files)", base.name,
+                base.entryCount(), throughId, TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start),
+                base.sizeBytes(), base.tables.length);
+    }
+
+    private void buildDelta(View current) throws IOException {
+        long start = System.nanoTime();
+        long watermark = current.deltas.isEmpty() ? current.base.throughId() : current.deltas.get(0).throughId();
+        long throughId = linkTransferRepository.findMaxId();
+        if (throughId <= watermark) {
+            return;
+        }
+
+        long createdAt = System.currentTimeMillis();
+        List<Generation> deltas = new ArrayList<>();
+        Generation delta;
+        if (current.deltas.size() < maxDeltas) {
+            delta = write("delta-" + createdAt, Math.max(0, watermark - DELTA_ID_OVERLAP), throughId, createdAt);
+            deltas.add(delta);
+            deltas.addAll(current.deltas);
+        } else {
+            // Each delta costs every miss a probe, so fold them into one covering the whole range
+            delta = write("delta-" + createdAt, Math.max(0, current.base.throughId() - DELTA_ID_OVERLAP),
+                    throughId, createdAt);
+            deltas.add(delta);
+        }
+        install(new View(current.base, List.copyOf(deltas)));
+        deltaBuilds.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+        log.debug("Snapshot delta {} added with {} links through id {}", delta.name, delta.entryCount(), throughId);
+    }
+
+    /**
+     * Writes the urls with ids in {@code (afterId, throughId]} as a new generation, split
+     * into as many partitions as needed to keep each file well within one mapping.
+     */
+    private Generation write(String name, long afterId, long throughId, long createdAt) throws IOException {
+        LinkTransferRepository.RangeSize size = linkTransferRepository.measureRange(afterId, throughId);
+        long estimatedBytes = size.bytes() + size.rows() * MappedUrlTable.ENTRY_OVERHEAD_BYTES;
+        int partitions = (int) Math.max(1, (estimatedBytes + TARGET_PARTITION_BYTES - 1) / TARGET_PARTITION_BYTES);
+        // Headroom for hashing imbalance and rows committed after the count
+        int expectedPerPartition = (int) Math.min(Integer.MAX_VALUE, size.rows() / partitions * 11 / 10 + 1024);
+
+        MappedUrlTable.Writer[] writers = new MappedUrlTable.Writer[partitions];
+        try {
+            for (int i = 0; i < partitions; i++) {
+                writers[i] = new MappedUrlTable.Writer(tablePath(name, i), expectedPerPartition);
+            }
+            linkTransferRepository.streamCacheEntries(afterId, throughId, fetchSize, (shortCode, cachedUrl) -> {
+                try {
+                    writers[MappedUrlTable.partition(MappedUrlTable.hash(shortCode), partitions)].add(shortCode, cachedUrl);
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            });
+            for (MappedUrlTable.Writer writer : writers) {
+                writer.finish(throughId, createdAt);
+            }
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        } finally {
+            for (MappedUrlTable.Writer writer : writers) {
+                if (writer != null) {
+                    writer.close();
+                }
+            }
+        }
+        return openGeneration(name + ' ' + partitions);
+    }
+
+    private Generation openGeneration(String manifestLine) throws IOException {
+        int space = manifestLine.indexOf(' ');
+        String name = manifestLine.substring(0, space);
+        int partitions = Integer.parseInt(manifestLine.substring(space + 1));
+        MappedUrlTable[] tables = new MappedUrlTable[partitions];
+        for (int i = 0; i < partitions; i++) {
+            tables[i] = MappedUrlTable.open(tablePath(name, i));
+        }
+        return new Generation(name, tables);
+    }
+
+    private Path tablePath(String name, int partition) {
+        return directory.resolve(name + '.' + partition + EXTENSION);
+    }
+
+    /**
+     * Publishes a view: first the manifest, replaced atomically so a restart maps either the
+     * old or the new set, then the in-memory reference. Files no longer listed are deleted,
+     * along with any left over from an interrupted build; lookups still holding the old view
+     * keep reading through their mappings.
+     */
+    private void install(View next) throws IOException {
+        List<String> lines = new ArrayList<>();
+        lines.add(next.base.manifestLine());
+        next.deltas.forEach(delta -> lines.add(delta.manifestLine()));
+        Path temp = directory.resolve(MANIFEST + ".tmp");
+        Files.write(temp, lines, StandardCharsets.UTF_8);
+        Files.move(temp, directory.resolve(MANIFEST), StandardCopyOption.ATOMIC_MOVE,
+                StandardCopyOption.REPLACE_EXISTING);
+
+        view = next;
+
+        Set<Path> live = new HashSet<>();
+        next.generations().forEach(generation -> {
+            for (MappedUrlTable table : generation.tables) {
+                live.add(table.path());
+            }
+        });
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(directory, "*.{snap,snap.tmp}")) {
+            for (Path file : files) {
+                if (!live.contains(file)) {
+                    Files.deleteIfExists(file);
+                }
+            }
+        }
+    }
+
+    public Map<String, Object> getStats() {
+        View current = view;
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("enabled", enabled);
+        stats.put("ready", current.base != null);
+        stats.put("building", building.get());
+        if (current.base != null) {
+            stats.put("base", current.base.name);
+            stats.put("baseBuiltAt", Instant.ofEpochMilli(current.base.createdAtMillis()));
+            stats.put("baseEntries", current.base.entryCount());
+            stats.put("partitions", current.base.tables.length);
+            stats.put("deltas", current.deltas.size());
+            stats.put("throughId", current.deltas.isEmpty()
+                    ? current.base.throughId() : current.deltas.get(0).throughId());
+        }
+        stats.put("entries", current.entryCount());
+        stats.put("mappedBytes", current.sizeBytes());
+        stats.put("bypassedCodes", bypassed.size());
+        stats.put("flushedAt", flushedAt == 0 ? null : Instant.ofEpochMilli(flushedAt));
+        stats.put("baseBuilds", baseBuilds.count());
+        stats.put("deltaBuilds", deltaBuilds.count());
+        stats.put("buildFailures", (long) buildFailures.count());
+        return stats;
+    }
+
+    /**
+     * One build: a url table per partition, all covering the same id range.
+     */
+    private record Generation(String name, MappedUrlTable[] tables) {
+
+        CachedUrl get(String shortCode, long hash) {
+            return tables[MappedUrlTable.partition(hash, tables.length)].get(shortCode, hash);
+        }
+
+        long throughId() {
+            return tables[0].throughId();
+        }
+
+        long createdAtMillis() {
+            return tables[0].createdAtMillis();
+        }
+
+        long entryCount() {
+            long entries = 0;
+            for (MappedUrlTable table : tables) {
+                entries += table.entryCount();
+            }
+            return entries;
+        }
+
+        long sizeBytes() {
+            long bytes = 0;
+            for (MappedUrlTable table : tables) {
+                bytes += table.sizeBytes();
+            }
+            return bytes;
+        }
+
+        String manifestLine() {
+            return name + ' ' + tables.length;
+        }
+    }
+
+    /**
+     * What lookups read: a base and the deltas built on it, newest first.
+     */
+    private record View(Generation base, List<Generation> deltas) {
+
+        static final View EMPTY = new View(null, List.of());
+
+        List<Generation> generations() {
+            List<Generation> all = new ArrayList<>(deltas);
+            all.add(base);
+            return all;
+        }
+
+        long entryCount() {
+            return generations().stream().filter(g -> g != null).mapToLong(Generation::entryCount).sum();
+        }
+
+        long sizeBytes() {
+            return generations().stream().filter(g -> g != null).mapToLong(Generation::sizeBytes).sum();
+        }
+    }
+}
@@ -0,0 +1,52 @@
+package com.adewunmi.urlshortener.service;
+
+import com.adewunmi.urlshortener.config.BackgroundThreadFactory;
+import com.adewunmi.urlshortener.repository.UrlUpsertRepository;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Service;
+
+/**
+ * Computes url_hash for rows created before dedup was digest-based, then drops the old
+ * btree index on the URL text. Runs once in the background after startup; both steps
+ * are idempotent, so it is safe on every node and every restart.
+ */
+@Service
+@Slf4j
+public class UrlHashBackfillService {
+
+    private final UrlUpsertRepository urlUpsertRepository;
+    private final BackgroundThreadFactory threadFactory;
+    private final int rangeSize;
+
+    public UrlHashBackfillService(UrlUpsertRepository urlUpsertRepository,
+            BackgroundThreadFactory threadFactory,
+            @Value("${url.hash.backfill-range-size:5000}") int rangeSize) {
+        this.urlUpsertRepository = urlUpsertRepository;
+        this.threadFactory = threadFactory;
+        this.rangeSize = rangeSize;
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void start() {
+        threadFactory.newThread("url-hash-backfill", this::run).start();
+    }
+
+    private void run() {
+        try {
+            long maxId = urlUpsertRepository.findMaxId();
+            long updated = 0;
+            for (long afterId = 0; afterId < maxId; afterId += rangeSize) {
+                updated += urlUpsertRepository.backfillHashes(afterId, afterId + rangeSize);
+            }
+            if (updated > 0) {
+                log.info("Backfilled url_hash for {} urls", updated);
+            }
+            urlUpsertRepository.dropOriginalUrlIndex();
+        } catch (Exception e) {
+            log.error("url_hash backfill failed; it will be retried on the next start", e);
+        }
+    }
+}
@@ -1,145 +1,249 @@
 package com.adewunmi.urlshortener.service;
 
+import com.adewunmi.urlshortener.dto.CachedUrl;
+import com.adewunmi.urlshortener.dto.ClickEvent;
 import com.adewunmi.urlshortener.dto.ShortenUrlRequest;
 import com.adewunmi.urlshortener.dto.ShortenUrlResponse;
-import com.adewunmi.urlshortener.entity.Click;
+import com.adewunmi.urlshortener.entity.RedirectType;
 import com.adewunmi.urlshortener.entity.Url;
-import com.adewunmi.urlshortener.repository.ClickRepository;
 import com.adewunmi.urlshortener.repository.UrlRepository;
+import com.adewunmi.urlshortener.repository.UrlUpsertRepository;
+import com.adewunmi.urlshortener.util.UrlDigest;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
 import jakarta.servlet.http.HttpServletRequest;
-import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DuplicateKeyException;
 import org.springframework.stereotype.Service;
-import org.springframework.transaction.annotation.Transactional;
 
 import java.net.MalformedURLException;
 import java.net.URL;
-import java.security.SecureRandom;
 import java.time.LocalDateTime;
+import java.util.List;
 import java.util.Optional;
+import java.util.concurrent.TimeUnit;
 
 @Service
-@RequiredArgsConstructor
 @Slf4j
 public class UrlService {
 
     private final UrlRepository urlRepository;
-    private final ClickRepository clickRepository;
+    private final UrlUpsertRepository urlUpsertRepository;
     private final CacheService cacheService;
+    private final ClickIngestionService clickIngestionService;
+    private final ShortCodeFilterService shortCodeFilterService;
+    private final CacheInvalidationBus cacheInvalidationBus;
+    private final ShortCodeGenerator shortCodeGenerator;
+    private final SingleFlightUrlLoader singleFlightUrlLoader;
+
+    private final Timer dbLookupFound;
+    private final Timer dbLookupNotFound;
+    private final Timer upsertTimer;
+    private final Timer generateTimer;
+    private final Counter dedupDigestCache;
+    private final Counter dedupExisting;
+    private final Counter dedupCreated;
 
     @Value("${app.base-url:http://localhost:8080}")
     private String baseUrl;
 
-    private static final String CHARACTERS = "abcdefghijklmnopqrstuvwxyzABCDEFGHIJKLMNOPQRSTUVWXYZ0123456789";
-    private static final int SHORT_CODE_LENGTH = 7;
     private static final int MAX_CUSTOM_CODE_LENGTH = 20;
-    private static final SecureRandom RANDOM = new SecureRandom();
+    private static final int MAX_INSERT_ATTEMPTS = 3;
+
+    public UrlService(UrlRepository urlRepository,
+            UrlUpsertRepository urlUpsertRepository,
+            CacheService cacheService,
+            ClickIngestionService clickIngestionService,
+            ShortCodeFilterService shortCodeFilterService,
+            CacheInvalidationBus cacheInvalidationBus,
+            ShortCodeGenerator shortCodeGenerator,
+            SingleFlightUrlLoader singleFlightUrlLoader,
+            MeterRegistry meterRegistry) {
+        this.urlRepository = urlRepository;
+        this.urlUpsertRepository = urlUpsertRepository;
+        this.cacheService = cacheService;
+        this.clickIngestionService = clickIngestionService;
+        this.shortCodeFilterService = shortCodeFilterService;
+        this.cacheInvalidationBus = cacheInvalidationBus;
+        this.shortCodeGenerator = shortCodeGenerator;
+        this.singleFlightUrlLoader = singleFlightUrlLoader;
+
+        this.dbLookupFound = dbLookupTimer(meterRegistry, "found");
+        this.dbLookupNotFound = dbLookupTimer(meterRegistry, "not_found");
+        this.upsertTimer = Timer.builder("urlshortener.db.upsert")
+                .description("Insert-or-get of a shortened link")
+                .register(meterRegistry);
+        this.generateTimer = Timer.builder("urlshortener.shortcode.generate")
+                .description("Short code generation")
+                .register(meterRegistry);
+        this.dedupDigestCache = dedupCounter(meterRegistry, "digest_cache");
+        this.dedupExisting = dedupCounter(meterRegistry, "existing");
+        this.dedupCreated = dedupCounter(meterRegistry, "created");
+    }
+
+    private static Timer dbLookupTimer(MeterRegistry meterRegistry, String result) {
+        return Timer.builder("urlshortener.db.lookup")
+                .description("Short code lookups that reached the database")
+                .tag("result", result)
+                .register(meterRegistry);
+    }
+
+    private static Counter dedupCounter(MeterRegistry meterRegistry, String source) {
+        return Counter.builder("urlshortener.shorten.dedup")
+                .description("Shorten requests by where the short code came from")
+                .tag("source", source)
+                .register(meterRegistry);
+    }
 
-    @Transactional
     public ShortenUrlResponse shortenUrl(ShortenUrlRequest request) {
         // Validate URL format
         validateUrl(request.getUrl());
+        byte[] urlHash = UrlDigest.sha256(request.getUrl());
 
-        // Check if URL was already shortened
-        Optional<Url> existingUrl = urlRepository.findByOriginalUrl(request.getUrl());
-        if (existingUrl.isPresent()) {
-            Url url = existingUrl.get();
-            String shortUrl = baseUrl + "/" + url.getShortCode();
-
-            // Ensure it's cached
-            cacheService.cacheUrlMapping(url.getShortCode(), url.getOriginalUrl());
-
+        // URLs shortened recently on this node are answered without a database round trip
+        String knownCode = cacheService.getShortCodeForDigest(urlHash);
+        if (knownCode != null) {
+            dedupDigestCache.increment();
             log.info("Returning existing short URL for: {}", request.getUrl());
-            return new ShortenUrlResponse(url.getOriginalUrl(), shortUrl, url.getShortCode());
+            return new ShortenUrlResponse(request.getUrl(), baseUrl + "/" + knownCode, knownCode);
         }
 
-        String shortCode;
-
-        // If custom code provided, validate and use it
+        String customCode = null;
         if (request.getCustomCode() != null && !request.getCustomCode().isEmpty()) {
-            shortCode = validateAndSanitizeCustomCode(request.getCustomCode());
-            if (urlRepository.existsByShortCode(shortCode)) {
-                throw new IllegalArgumentException("Custom short code '" + shortCode + "' is already in use");
-            }
-        } else {
-            // Generate random short code
-            shortCode = generateShortCode();
+            customCode = validateAndSanitizeCustomCode(request.getCustomCode());
         }
+        RedirectType redirectType = request.getRedirectType() != null
+                ? request.getRedirectType()
+                : RedirectType.PERMANENT;
 
-        Url url = new Url();
-        url.setOriginalUrl(request.getUrl());
-        url.setShortCode(shortCode);
-
-        url = urlRepository.save(url);
+        UrlUpsertRepository.UpsertResult result = insertOrGet(request.getUrl(), urlHash, customCode, redirectType);
+        Url url = result.url();
+        String shortCode = url.getShortCode();
 
         // Cache the mapping
-        cacheService.cacheUrlMapping(shortCode, request.getUrl());
+        cacheService.cacheUrlMapping(shortCode, CachedUrl.from(url));
+        cacheService.cacheDigest(urlHash, shortCode);
+
+        if (result.inserted()) {
+            // Other nodes would otherwise answer 404 for it until their next filter refresh
+            cacheInvalidationBus.announceCreated(List.of(shortCode));
+            dedupCreated.increment();
+            log.info("Created short URL: {} -> {}", shortCode, request.getUrl());
+        } else {
+            shortCodeFilterService.add(shortCode);
+            dedupExisting.increment();
+            log.info("Returning existing short URL for: {}", request.getUrl());
+        }
+
+        return new ShortenUrlResponse(url.getOriginalUrl(), baseUrl + "/" + shortCode, shortCode);
+    }
 
-        String shortUrl = baseUrl + "/" + shortCode;
+    /**
+     * Inserts the link, or returns the existing link for the same URL, in one statement.
+     * A custom code that is taken is rejected; a generated code that turns out to be taken
+     * (created a moment ago on another node) is replaced and the insert retried.
+     */
+    private UrlUpsertRepository.UpsertResult insertOrGet(String originalUrl, byte[] urlHash,
+            String customCode, RedirectType redirectType) {
+        for (int attempt = 1; ; attempt++) {
+            String shortCode = customCode != null ? customCode : generateTimer.record(shortCodeGenerator::nextCode);
+            long start = System.nanoTime();
+            try {
+                return urlUpsertRepository.insertOrGet(originalUrl, urlHash, shortCode, redirectType);
+            } catch (DuplicateKeyException e) {
+                if (customCode != null) {
+                    throw new IllegalArgumentException("Custom short code '" + customCode + "' is already in use");
+                }
+                if (attempt >= MAX_INSERT_ATTEMPTS) {
+                    log.error("Failed to insert a unique short code after {} attempts", MAX_INSERT_ATTEMPTS);
+                    throw new RuntimeException("Unable to generate unique short code. Please try again.");
+                }
+            } finally {
+                upsertTimer.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+            }
+        }
+    }
 
-        log.info("Created short URL: {} -> {}", shortCode, request.getUrl());
+    /**
+     * Outcome of resolving a short code for a redirect. Not-found and expired are plain
+     * values rather than exceptions, so scanners and dead links cost no stack traces.
+     */
+    public record Resolution(Status status, CachedUrl target) {
+
+        public enum Status {
+            FOUND,
+            NOT_FOUND,
+            EXPIRED
+        }
 
-        return new ShortenUrlResponse(url.getOriginalUrl(), shortUrl, shortCode);
+        public static final Resolution NOT_FOUND = new Resolution(Status.NOT_FOUND, null);
+        public static final Resolution EXPIRED = new Resolution(Status.EXPIRED, null);
     }
 
-    @Transactional
-    public String getOriginalUrl(String shortCode, HttpServletRequest request) {
-        // Try to get from cache first
-        String cachedUrl = cacheService.getCachedUrl(shortCode);
+    /**
+     * Resolves a short code and records the click. Runs without a transaction: a cache hit
+     * never touches the connection pool, and a miss holds a connection only for the lookup.
+     */
+    public Resolution resolve(String shortCode, HttpServletRequest request) {
+        // Codes that were never created are rejected before any cache or database lookup
+        if (!shortCodeFilterService.mightExist(shortCode)) {
+            return Resolution.NOT_FOUND;
+        }
+
+        // Try to get from cache first; a hit carries everything the redirect needs
+        CachedUrl cachedUrl = cacheService.getCachedUrl(shortCode);
 
-        if (cachedUrl != null) {
+        if (cachedUrl == null) {
+            // Cache miss - one database load per code; concurrent misses wait for it
+            cachedUrl = singleFlightUrlLoader.load(shortCode, this::findInDatabase);
+            if (cachedUrl == null) {
+                return Resolution.NOT_FOUND;
+            }
+        } else {
             log.debug("Retrieved URL from cache: {}", shortCode);
-            // Still track the click
-            trackClickAsync(shortCode, request);
-            return cachedUrl;
         }
 
-        // Cache miss - get from database
-        Url url = urlRepository.findByShortCode(shortCode)
-                .orElseThrow(() -> new IllegalArgumentException("Short code '" + shortCode + "' not found"));
-
         // Check if URL is expired
-        if (url.getExpiresAt() != null && url.getExpiresAt().isBefore(LocalDateTime.now())) {
-            log.warn("Attempted to access expired URL: {}", shortCode);
-            throw new IllegalArgumentException("This short URL has expired");
+        if (cachedUrl.isExpired(LocalDateTime.now())) {
+            log.debug("Attempted to access expired URL: {}", shortCode);
+            return Resolution.EXPIRED;
         }
 
-        // Cache it for next time
-        cacheService.cacheUrlMapping(shortCode, url.getOriginalUrl());
-
         // Track the click
-        trackClick(url, request);
-
-        log.info("Redirecting {} to {} (Total clicks: {})",
-                shortCode, url.getOriginalUrl(), clickRepository.countByUrlId(url.getId()));
+        trackClick(shortCode, cachedUrl, request);
 
-        return url.getOriginalUrl();
+        return new Resolution(Resolution.Status.FOUND, cachedUrl);
     }
 
-    private void trackClick(Url url, HttpServletRequest request) {
-        Click click = new Click();
-        click.setUrl(url);
-        click.setIpAddress(getClientIp(request));
-        click.setUserAgent(request.getHeader("User-Agent"));
-        click.setReferrer(request.getHeader("Referer"));
-
-        clickRepository.save(click);
-
-        // Increment Redis counter for quick stats
-        cacheService.incrementClickCount(url.getShortCode());
+    private CachedUrl findInDatabase(String shortCode) {
+        long start = System.nanoTime();
+        Optional<Url> found = urlRepository.findByShortCode(shortCode);
+        (found.isPresent() ? dbLookupFound : dbLookupNotFound)
+                .record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+        if (found.isEmpty()) {
+            return null;
+        }
+        Url url = found.get();
+        log.debug("Loaded {} -> {} from the database (Total clicks: {})",
+                shortCode, url.getOriginalUrl(), url.getClickCount());
+        return CachedUrl.from(url);
     }
 
-    private void trackClickAsync(String shortCode, HttpServletRequest request) {
-        // For cached URLs, we still need to track clicks
-        // This is a simplified version - in production, use @Async
-        Url url = urlRepository.findByShortCode(shortCode).orElse(null);
-        if (url != null) {
-            trackClick(url, request);
-        }
+    private void trackClick(String shortCode, CachedUrl cachedUrl, HttpServletRequest request) {
+        // Hand the click to the background writer; the redirect never waits on the clicks table
+        clickIngestionService.submit(new ClickEvent(
+                cachedUrl.getUrlId(),
+                shortCode,
+                LocalDateTime.now(),
+                getClientIp(request),
+                request.getHeader("User-Agent"),
+                request.getHeader("Referer")));
     }
 
-    private void validateUrl(String urlString) {
+    // The helpers below are not private so the JMH benchmarks (src/jmh) can call them
+    void validateUrl(String urlString) {
         try {
             URL url = new URL(urlString);
 
@@ -158,7 +262,7 @@ public class UrlService {
         }
     }
 
-    private String validateAndSanitizeCustomCode(String customCode) {
+    String validateAndSanitizeCustomCode(String customCode) {
         customCode = customCode.trim();
 
         if (customCode.length() < 3) {
@@ -184,33 +288,7 @@ public class UrlService {
         return customCode;
     }
 
-    private String generateShortCode() {
-        String shortCode;
-        int attempts = 0;
-        int maxAttempts = 10;
-
-        do {
-            shortCode = generateRandomString();
-            attempts++;
-
-            if (attempts >= maxAttempts) {
-                log.error("Failed to generate unique short code after {} attempts", maxAttempts);
-                throw new RuntimeException("Unable to generate unique short code. Please try again.");
-            }
-        } while (urlRepository.existsByShortCode(shortCode));
-
-        return shortCode;
-    }
-
-    private String generateRandomString() {
-        StringBuilder sb = new StringBuilder(SHORT_CODE_LENGTH);
-        for (int i = 0; i < SHORT_CODE_LENGTH; i++) {
-            sb.append(CHARACTERS.charAt(RANDOM.nextInt(CHARACTERS.length())));
-        }
-        return sb.toString();
-    }
-
-    private String getClientIp(HttpServletRequest request) {
+    public String getClientIp(HttpServletRequest request) {
         String ip = request.getHeader("X-Forwarded-For");
 
         if (ip == null || ip.isEmpty() || "unknown".equalsIgnoreCase(ip)) {
@@ -0,0 +1,134 @@
+package com.adewunmi.urlshortener.service;
+
+import com.adewunmi.urlshortener.entity.BrowserFamily;
+import com.adewunmi.urlshortener.entity.DeviceType;
+import com.adewunmi.urlshortener.entity.OsFamily;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+/**
+ * Classifies User-Agent strings into device, browser and OS families. Matching is done
+ * case-insensitively in place (no lowercased copies), and results are memoized because
+ * real traffic only carries a small number of distinct user agents.
+ */
+@Component
+public class UserAgentClassifier {
+
+    public record Classification(DeviceType deviceType, BrowserFamily browser, OsFamily os) {
+    }
+
+    public static final Classification UNKNOWN =
+            new Classification(DeviceType.UNKNOWN, BrowserFamily.UNKNOWN, OsFamily.UNKNOWN);
+
+    // Longer values are classified but not memoized, so junk headers cannot flood the cache
+    private static final int MAX_CACHEABLE_LENGTH = 512;
+
+    private static final String[] BOT_MARKERS = { "bot", "crawler", "spider", "slurp", "curl/", "wget/",
+            "python-requests", "facebookexternalhit", "headlesschrome" };
+
+    private final Cache<String, Classification> memo;
+
+    public UserAgentClassifier(@Value("${useragent.cache.maximum-size:10000}") long maximumSize) {
+        this.memo = Caffeine.newBuilder()
+                .maximumSize(maximumSize)
+                .build();
+    }
+
+    public Classification classify(String userAgent) {
+        if (userAgent == null || userAgent.isEmpty()) {
+            return UNKNOWN;
+        }
+        if (userAgent.length() > MAX_CACHEABLE_LENGTH) {
+            return compute(userAgent);
+        }
+        return memo.get(userAgent, UserAgentClassifier::compute);
+    }
+
+    // Package-private so the JMH benchmarks can measure the unmemoized path
+    static Classification compute(String ua) {
+        return new Classification(deviceType(ua), browser(ua), os(ua));
+    }
+
+    private static DeviceType deviceType(String ua) {
+        for (String marker : BOT_MARKERS) {
+            if (containsIgnoreCase(ua, marker)) {
+                return DeviceType.BOT;
+            }
+        }
+        if (containsIgnoreCase(ua, "ipad") || containsIgnoreCase(ua, "tablet")) {
+            return DeviceType.TABLET;
+        }
+        if (containsIgnoreCase(ua, "mobile") || containsIgnoreCase(ua, "iphone")) {
+            return DeviceType.MOBILE;
+        }
+        if (containsIgnoreCase(ua, "android")) {
+            // Android tablets omit the "Mobile" token
+            return DeviceType.TABLET;
+        }
+        if (containsIgnoreCase(ua, "windows") || containsIgnoreCase(ua, "macintosh")
+                || containsIgnoreCase(ua, "linux") || containsIgnoreCase(ua, "cros ")) {
+            return DeviceType.DESKTOP;
+        }
+        return DeviceType.UNKNOWN;
+    }
+
+    private static BrowserFamily browser(String ua) {
+        // Order matters: Edge and Opera also advertise Chrome, Chrome also advertises Safari
+        if (containsIgnoreCase(ua, "edg/") || containsIgnoreCase(ua, "edge/")) {
+            return BrowserFamily.EDGE;
+        }
+        if (containsIgnoreCase(ua, "opr/") || containsIgnoreCase(ua, "opera")) {
+            return BrowserFamily.OPERA;
+        }
+        if (containsIgnoreCase(ua, "firefox/") || containsIgnoreCase(ua, "fxios/")) {
+            return BrowserFamily.FIREFOX;
+        }
+        if (containsIgnoreCase(ua, "chrome/") || containsIgnoreCase(ua, "crios/")) {
+            return BrowserFamily.CHROME;
+        }
+        if (containsIgnoreCase(ua, "safari/")) {
+            return BrowserFamily.SAFARI;
+        }
+        if (containsIgnoreCase(ua, "msie") || containsIgnoreCase(ua, "trident/")) {
+            return BrowserFamily.INTERNET_EXPLORER;
+        }
+        return BrowserFamily.UNKNOWN;
+    }
+
+    private static OsFamily os(String ua) {
+        if (containsIgnoreCase(ua, "windows")) {
+            return OsFamily.WINDOWS;
+        }
+        if (containsIgnoreCase(ua, "iphone") || containsIgnoreCase(ua, "ipad") || containsIgnoreCase(ua, "ipod")) {
+            return OsFamily.IOS;
+        }
+        if (containsIgnoreCase(ua, "android")) {
+            return OsFamily.ANDROID;
+        }
+        if (containsIgnoreCase(ua, "cros ")) {
+            return OsFamily.CHROME_OS;
+        }
+        if (containsIgnoreCase(ua, "mac os x") || containsIgnoreCase(ua, "macintosh")) {
+            return OsFamily.MACOS;
+        }
+        if (containsIgnoreCase(ua, "linux")) {
+            return OsFamily.LINUX;
+        }
+        return OsFamily.UNKNOWN;
+    }
+
+    // Needles are lowercase ASCII, so only the haystack needs case folding
+    static boolean containsIgnoreCase(String haystack, String needle) {
+        int last = haystack.length() - needle.length();
+        char first = needle.charAt(0);
+        for (int i = 0; i <= last; i++) {
+            if (Character.toLowerCase(haystack.charAt(i)) == first
+                    && haystack.regionMatches(true, i + 1, needle, 1, needle.length() - 1)) {
+                return true;
+            }
+        }
+        return false;
+    }
+}
@@ -0,0 +1,68 @@
+package com.adewunmi.urlshortener.util;
+
+/**
+ * Fixed-width base62 encoding of non-negative longs.
+ */
+public final class Base62 {
+
+    public static final String ALPHABET = "abcdefghijklmnopqrstuvwxyzABCDEFGHIJKLMNOPQRSTUVWXYZ0123456789";
+    private static final int RADIX = ALPHABET.length();
+
+    private Base62() {
+    }
+
+    /**
+     * Number of distinct values representable in {@code width} characters.
+     */
+    public static long capacity(int width) {
+        long capacity = 1;
+        for (int i = 0; i < width; i++) {
+            capacity = Math.multiplyExact(capacity, RADIX);
+        }
+        return capacity;
+    }
+
+    /**
+     * Encodes {@code value} left-padded to exactly {@code width} characters.
+     *
+     * @throws IllegalArgumentException if the value does not fit in {@code width} characters
+     */
+    public static String encode(long value, int width) {
+        if (value < 0) {
+            throw new IllegalArgumentException("Value must not be negative: " + value);
+        }
+
+        char[] chars = new char[width];
+        long remaining = value;
+        for (int i = width - 1; i >= 0; i--) {
+            chars[i] = ALPHABET.charAt((int) (remaining % RADIX));
+            remaining /= RADIX;
+        }
+        if (remaining != 0) {
+            throw new IllegalArgumentException("Value " + value + " does not fit in " + width + " base62 characters");
+        }
+        return new String(chars);
+    }
+
+    /**
+     * Decodes a code produced by {@link #encode}; leading padding characters are zeros.
+     *
+     * @throws IllegalArgumentException if the code has a character outside the alphabet or
+     *                                  its value does not fit in a long
+     */
+    public static long decode(CharSequence code) {
+        long value = 0;
+        for (int i = 0; i < code.length(); i++) {
+            int digit = ALPHABET.indexOf(code.charAt(i));
+            if (digit < 0) {
+                throw new IllegalArgumentException("Not a base62 code: " + code);
+            }
+            try {
+                value = Math.addExact(Math.multiplyExact(value, RADIX), digit);
+            } catch (ArithmeticException e) {
+                throw new IllegalArgumentException("Base62 code out of range: " + code);
+            }
+        }
+        return value;
+    }
+}
@@ -0,0 +1,98 @@
+package com.adewunmi.urlshortener.util;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Minimal RFC 4180 CSV support for the link import/export files. Records are one per
+ * line: quoted fields may contain commas and quotes but not line breaks, which valid
+ * URLs never do.
+ */
+public final class Csv {
+
+    private Csv() {
+    }
+
+    /**
+     * Appends a field, quoting it only when needed. Null is written as an empty field and
+     * the empty string as {@code ""}, matching what PostgreSQL's CSV COPY reads as NULL and
+     * as an empty string respectively.
+     */
+    public static void appendField(StringBuilder line, String value) {
+        if (value == null) {
+            return;
+        }
+        if (!value.isEmpty() && !needsQuoting(value)) {
+            line.append(value);
+            return;
+        }
+        line.append('"');
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            if (c == '"') {
+                line.append('"');
+            }
+            line.append(c);
+        }
+        line.append('"');
+    }
+
+    /**
+     * Splits one line into fields. Empty unquoted fields come back as null.
+     *
+     * @throws IllegalArgumentException on an unterminated quoted field
+     */
+    public static List<String> parseLine(String line) {
+        List<String> fields = new ArrayList<>();
+        int i = 0;
+        int length = line.length();
+        while (true) {
+            if (i < length && line.charAt(i) == '"') {
+                StringBuilder field = new StringBuilder();
+                i++;
+                while (true) {
+                    if (i >= length) {
+                        throw new IllegalArgumentException("Unterminated quoted field");
+                    }
+                    char c = line.charAt(i++);
+                    if (c == '"') {
+                        if (i < length && line.charAt(i) == '"') {
+                            field.append('"');
+                            i++;
+                        } else {
+                            break;
+                        }
+                    } else {
+                        field.append(c);
+                    }
+                }
+                fields.add(field.toString());
+            } else {
+                int end = line.indexOf(',', i);
+                if (end < 0) {
+                    end = length;
+                }
+                fields.add(end > i ? line.substring(i, end) : null);
+                i = end;
+            }
+
+            if (i >= length) {
+                return fields;
+            }
+            if (line.charAt(i) != ',') {
+                throw new IllegalArgumentException("Unexpected character after quoted field");
+            }
+            i++;
+        }
+    }
+
+    private static boolean needsQuoting(String value) {
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            if (c == ',' || c == '"' || c == '\n' || c == '\r') {
+                return true;
+            }
+        }
+        return false;
+    }
+}
@@ -0,0 +1,73 @@
+package com.adewunmi.urlshortener.util;
+
+/**
+ * Keyed bijection on [0, domainSize). A balanced Feistel network permutes the smallest
+ * even-width power-of-two range covering the domain, and cycle-walking maps results
+ * that land outside the domain back into it. Consecutive inputs therefore produce
+ * outputs that look unrelated, yet no two inputs ever share an output.
+ */
+public class FeistelPermutation {
+
+    private static final int ROUNDS = 4;
+
+    private final long domainSize;
+    private final int halfBits;
+    private final long halfMask;
+    private final long[] roundKeys = new long[ROUNDS];
+
+    public FeistelPermutation(long domainSize, long key) {
+        if (domainSize < 2) {
+            throw new IllegalArgumentException("Domain must contain at least two values");
+        }
+        this.domainSize = domainSize;
+
+        int bits = 64 - Long.numberOfLeadingZeros(domainSize - 1);
+        this.halfBits = (bits + 1) / 2;
+        if (halfBits > 31) {
+            throw new IllegalArgumentException("Domain too large: " + domainSize);
+        }
+        this.halfMask = (1L << halfBits) - 1;
+
+        // SplitMix64 expansion of the key into independent round keys
+        long state = key;
+        for (int i = 0; i < ROUNDS; i++) {
+            state += 0x9E3779B97F4A7C15L;
+            roundKeys[i] = mix(state);
+        }
+    }
+
+    public long permute(long value) {
+        if (value < 0 || value >= domainSize) {
+            throw new IllegalArgumentException("Value outside domain: " + value);
+        }
+
+        // Each pass is a bijection on [0, 2^(2*halfBits)), so walking the cycle from an
+        // in-domain value reaches another in-domain value; on average within 2 passes
+        long result = value;
+        do {
+            result = encrypt(result);
+        } while (result >= domainSize);
+        return result;
+    }
+
+    private long encrypt(long value) {
+        long left = value >>> halfBits;
+        long right = value & halfMask;
+        for (long roundKey : roundKeys) {
+            long next = left ^ (mix(right ^ roundKey) & halfMask);
+            left = right;
+            right = next;
+        }
+        return (left << halfBits) | right;
+    }
+
+    // MurmurHash3 fmix64 finalizer
+    private static long mix(long h) {
+        h ^= h >>> 33;
+        h *= 0xFF51AFD7ED558CCDL;
+        h ^= h >>> 33;
+        h *= 0xC4CEB9FE1A85EC53L;
+        h ^= h >>> 33;
+        return h;
+    }
+}
@@ -0,0 +1,298 @@
+package com.adewunmi.urlshortener.util;
+
+import com.adewunmi.urlshortener.dto.CachedUrl;
+import com.adewunmi.urlshortener.entity.RedirectType;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+
+/**
+ * Read-only short code -> {@link CachedUrl} table in a single memory-mapped file. The file
+ * is an open-addressing hash table of fixed-size slots followed by a blob of variable-size
+ * records, so a lookup touches one or two slots and one record, all off-heap, and only
+ * allocates the result.
+ *
+ * <pre>
+ * header   magic, version, slot count, entry count, through id, created at (48 bytes)
+ * slots    slot count x (int fingerprint, int record offset), offset 0 = empty
+ * records  byte code length, code (ASCII), long url id, long expiry epoch second (-1 = none),
+ *          short status code, int url length, url (UTF-8)
+ * </pre>
+ *
+ * A mapped buffer is limited to 2 GB, so larger sets are split across several tables by
+ * {@link #partition}. Codes must be unique within a table; the writer does not check.
+ */
+public final class MappedUrlTable {
+
+    private static final int MAGIC = 0x55524C54; // "URLT"
+    private static final int VERSION = 1;
+    private static final int HEADER_BYTES = 48;
+    private static final int SLOT_BYTES = 8;
+    private static final long NO_EXPIRY = -1;
+    // Sparse enough that a miss usually stops at the first or second slot
+    private static final double MAX_LOAD = 0.5;
+
+    /** Largest file a single table can map. */
+    public static final long MAX_FILE_BYTES = Integer.MAX_VALUE;
+
+    /** Fixed bytes per entry on top of the code and URL, including its share of the slots. */
+    public static final int ENTRY_OVERHEAD_BYTES = 23 + (int) (SLOT_BYTES / MAX_LOAD);
+
+    private final Path path;
+    private final MappedByteBuffer buffer;
+    private final int slotMask;
+    private final int entryCount;
+    private final long throughId;
+    private final long createdAtMillis;
+
+    private MappedUrlTable(Path path, MappedByteBuffer buffer) {
+        this.path = path;
+        this.buffer = buffer;
+        if (buffer.capacity() < HEADER_BYTES || buffer.getInt(0) != MAGIC || buffer.getInt(4) != VERSION) {
+            throw new IllegalArgumentException("Not a url table: " + path);
+        }
+        int slotCount = buffer.getInt(8);
+        if (Integer.bitCount(slotCount) != 1 || HEADER_BYTES + (long) slotCount * SLOT_BYTES > buffer.capacity()) {
+            throw new IllegalArgumentException("Corrupt url table header: " + path);
+        }
+        this.slotMask = slotCount - 1;
+        this.entryCount = buffer.getInt(12);
+        this.throughId = buffer.getLong(16);
+        this.createdAtMillis = buffer.getLong(24);
+    }
+
+    public static MappedUrlTable open(Path path) throws IOException {
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            long size = channel.size();
+            if (size > MAX_FILE_BYTES) {
+                throw new IllegalArgumentException("Url table too large to map: " + path);
+            }
+            // The mapping stays valid after the channel is closed
+            return new MappedUrlTable(path, channel.map(FileChannel.MapMode.READ_ONLY, 0, size));
+        }
+    }
+
+    /**
+     * Stable 64-bit hash of a short code; the same value picks the partition and the slot.
+     */
+    public static long hash(CharSequence code) {
+        long h = 0xCBF29CE484222325L;
+        for (int i = 0; i < code.length(); i++) {
+            h ^= code.charAt(i);
+            h *= 0x100000001B3L;
+        }
+        // FNV alone mixes the last characters poorly into the low (slot) bits
+        h ^= h >>> 33;
+        h *= 0xFF51AFD7ED558CCDL;
+        h ^= h >>> 33;
+        return h;
+    }
+
+    public static int partition(long hash, int partitionCount) {
+        return (int) Long.remainderUnsigned(hash >>> 32, partitionCount);
+    }
+
+    /**
+     * @param hash {@link #hash} of {@code code}
+     * @return the entry for {@code code}, or null if the table does not contain it
+     */
+    public CachedUrl get(String code, long hash) {
+        int fingerprint = (int) (hash >>> 32);
+        int slot = (int) hash & slotMask;
+        while (true) {
+            int position = HEADER_BYTES + slot * SLOT_BYTES;
+            int offset = buffer.getInt(position + 4);
+            if (offset == 0) {
+                return null;
+            }
+            if (buffer.getInt(position) == fingerprint && codeMatches(offset, code)) {
+                return readEntry(offset + 1 + code.length());
+            }
+            slot = (slot + 1) & slotMask;
+        }
+    }
+
+    private boolean codeMatches(int offset, String code) {
+        if ((buffer.get(offset) & 0xFF) != code.length()) {
+            return false;
+        }
+        for (int i = 0; i < code.length(); i++) {
+            if (buffer.get(offset + 1 + i) != code.charAt(i)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private CachedUrl readEntry(int offset) {
+        long urlId = buffer.getLong(offset);
+        long expiry = buffer.getLong(offset + 8);
+        int statusCode = buffer.getShort(offset + 16);
+        int urlLength = buffer.getInt(offset + 18);
+        byte[] url = new byte[urlLength];
+        buffer.get(offset + 22, url);
+        return new CachedUrl(
+                urlId,
+                new String(url, StandardCharsets.UTF_8),
+                expiry == NO_EXPIRY ? null : LocalDateTime.ofEpochSecond(expiry, 0, ZoneOffset.UTC),
+                RedirectType.fromStatusCode(statusCode));
+    }
+
+    public Path path() {
+        return path;
+    }
+
+    public int entryCount() {
+        return entryCount;
+    }
+
+    /** Highest url id the table was built through. */
+    public long throughId() {
+        return throughId;
+    }
+
+    public long createdAtMillis() {
+        return createdAtMillis;
+    }
+
+    public long sizeBytes() {
+        return buffer.capacity();
+    }
+
+    /**
+     * Writes a table to a temporary file next to the target and moves it into place on
+     * {@link #finish}, so readers never see a partial file. The slot array is sized up front
+     * from the expected entry count and filled through a writable mapping; records are
+     * appended behind it, so memory use does not grow with the table.
+     */
+    public static final class Writer implements Closeable {
+
+        private final Path target;
+        private final Path temp;
+        private final FileChannel channel;
+        private final MappedByteBuffer slots;
+        private final int slotMask;
+        private final int maxEntries;
+        private final ByteBuffer records = ByteBuffer.allocate(1 << 16);
+        private long position;
+        private int entryCount;
+        private boolean finished;
+
+        public Writer(Path target, int expectedEntries) throws IOException {
+            long wanted = Math.min(1 << 29, Math.max(16, (long) (expectedEntries / MAX_LOAD)));
+            int slotCount = Integer.highestOneBit((int) wanted * 2 - 1);
+            long dataStart = HEADER_BYTES + (long) slotCount * SLOT_BYTES;
+            if (dataStart > MAX_FILE_BYTES) {
+                throw new IllegalArgumentException("Too many entries for one url table: " + expectedEntries);
+            }
+            this.target = target;
+            this.temp = target.resolveSibling(target.getFileName() + ".tmp");
+            this.channel = FileChannel.open(temp, StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING,
+                    StandardOpenOption.READ, StandardOpenOption.WRITE);
+            this.slots = channel.map(FileChannel.MapMode.READ_WRITE, 0, dataStart);
+            this.slotMask = slotCount - 1;
+            // Headroom for rows created between counting and writing; beyond it probing degrades
+            this.maxEntries = (int) (slotCount * 0.9);
+            this.position = dataStart;
+        }
+
+        public void add(String code, CachedUrl entry) throws IOException {
+            byte[] url = entry.getOriginalUrl().getBytes(StandardCharsets.UTF_8);
+            int size = 1 + code.length() + 22 + url.length;
+            if (code.length() > 255) {
+                throw new IllegalArgumentException("Short code too long for url table: " + code);
+            }
+            if (position + size > MAX_FILE_BYTES) {
+                throw new IllegalStateException("Url table exceeds " + MAX_FILE_BYTES + " bytes: " + target);
+            }
+            if (entryCount == maxEntries) {
+                throw new IllegalStateException("Url table slots exhausted at " + entryCount + " entries: " + target);
+            }
+
+            long hash = hash(code);
+            int slot = (int) hash & slotMask;
+            while (slots.getInt(HEADER_BYTES + slot * SLOT_BYTES + 4) != 0) {
+                slot = (slot + 1) & slotMask;
+            }
+            slots.putInt(HEADER_BYTES + slot * SLOT_BYTES, (int) (hash >>> 32));
+            slots.putInt(HEADER_BYTES + slot * SLOT_BYTES + 4, (int) position);
+
+            if (records.remaining() < size) {
+                flushRecords();
+            }
+            ByteBuffer out = size <= records.capacity() ? records : ByteBuffer.allocate(size);
+            out.put((byte) code.length());
+            for (int i = 0; i < code.length(); i++) {
+                char c = code.charAt(i);
+                if (c > 0x7F) {
+                    throw new IllegalArgumentException("Short code is not ASCII: " + code);
+                }
+                out.put((byte) c);
+            }
+            out.putLong(entry.getUrlId());
+            out.putLong(entry.getExpiresAt() != null ? entry.getExpiresAt().toEpochSecond(ZoneOffset.UTC) : NO_EXPIRY);
+            out.putShort((short) entry.getRedirectType().getStatusCode());
+            out.putInt(url.length);
+            out.put(url);
+            if (out != records) {
+                out.flip();
+                while (out.hasRemaining()) {
+                    channel.write(out, position + out.position());
+                }
+            }
+            position += size;
+            entryCount++;
+        }
+
+        private void flushRecords() throws IOException {
+            records.flip();
+            long start = position - records.remaining();
+            while (records.hasRemaining()) {
+                channel.write(records, start + records.position());
+            }
+            records.clear();
+        }
+
+        /**
+         * Completes the header, syncs the file and moves it over the target.
+         *
+         * @param throughId highest url id included
+         */
+        public void finish(long throughId, long createdAtMillis) throws IOException {
+            flushRecords();
+            slots.putInt(0, MAGIC);
+            slots.putInt(4, VERSION);
+            slots.putInt(8, slotMask + 1);
+            slots.putInt(12, entryCount);
+            slots.putLong(16, throughId);
+            slots.putLong(24, createdAtMillis);
+            slots.force();
+            channel.force(true);
+            channel.close();
+            Files.move(temp, target, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+            finished = true;
+        }
+
+        public int entryCount() {
+            return entryCount;
+        }
+
+        @Override
+        public void close() throws IOException {
+            if (!finished) {
+                channel.close();
+                Files.deleteIfExists(temp);
+            }
+        }
+    }
+}
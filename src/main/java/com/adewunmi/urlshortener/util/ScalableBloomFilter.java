@@ -0,0 +1,183 @@
+package com.adewunmi.urlshortener.util;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Thread-safe scalable Bloom filter (Almeida et al.). When the newest slice reaches its
+ * capacity a larger slice with a tighter false-positive rate is appended, so the compound
+ * false-positive rate stays below the target no matter how many elements are added.
+ * Lookups never allocate.
+ */
+public class ScalableBloomFilter {
+
+    private static final double TIGHTENING_RATIO = 0.5;
+    private static final int GROWTH_FACTOR = 2;
+    private static final long SEED_1 = 0x9E3779B97F4A7C15L;
+    private static final long SEED_2 = 0xC2B2AE3D27D4EB4FL;
+
+    private final double targetFpp;
+    private final ReentrantLock growLock = new ReentrantLock();
+    private volatile Slice[] slices;
+
+    public ScalableBloomFilter(long initialCapacity, double targetFpp) {
+        if (initialCapacity <= 0 || targetFpp <= 0 || targetFpp >= 1) {
+            throw new IllegalArgumentException("Capacity must be positive and fpp must be in (0, 1)");
+        }
+        this.targetFpp = targetFpp;
+        // The per-slice rates form a geometric series that sums to the target
+        this.slices = new Slice[] { new Slice(initialCapacity, targetFpp * (1 - TIGHTENING_RATIO)) };
+    }
+
+    public boolean mightContain(CharSequence value) {
+        long h1 = hash(value, SEED_1);
+        long h2 = hash(value, SEED_2);
+        for (Slice slice : slices) {
+            if (slice.mightContain(h1, h2)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    public void add(CharSequence value) {
+        long h1 = hash(value, SEED_1);
+        long h2 = hash(value, SEED_2);
+
+        Slice[] current = slices;
+        for (Slice slice : current) {
+            if (slice.mightContain(h1, h2)) {
+                return;
+            }
+        }
+
+        Slice last = current[current.length - 1];
+        if (last.isFull()) {
+            last = grow(current);
+        }
+        last.put(h1, h2);
+    }
+
+    private Slice grow(Slice[] observed) {
+        growLock.lock();
+        try {
+            Slice[] current = slices;
+            Slice last = current[current.length - 1];
+            if (current != observed && !last.isFull()) {
+                return last;
+            }
+
+            Slice next = new Slice(last.capacity * GROWTH_FACTOR, last.fpp * TIGHTENING_RATIO);
+            Slice[] grown = new Slice[current.length + 1];
+            System.arraycopy(current, 0, grown, 0, current.length);
+            grown[current.length] = next;
+            slices = grown;
+            return next;
+        } finally {
+            growLock.unlock();
+        }
+    }
+
+    public long approximateElementCount() {
+        long count = 0;
+        for (Slice slice : slices) {
+            count += slice.count.get();
+        }
+        return count;
+    }
+
+    public long memoryBytes() {
+        long bytes = 0;
+        for (Slice slice : slices) {
+            bytes += (long) slice.bits.length() * Long.BYTES;
+        }
+        return bytes;
+    }
+
+    /**
+     * Estimated false-positive rate given the current fill of every slice.
+     */
+    public double estimatedFpp() {
+        double allNegative = 1.0;
+        for (Slice slice : slices) {
+            double fill = 1 - Math.exp(-(double) slice.hashFunctions * slice.count.get() / slice.bitCount);
+            allNegative *= 1 - Math.pow(fill, slice.hashFunctions);
+        }
+        return 1 - allNegative;
+    }
+
+    public double targetFpp() {
+        return targetFpp;
+    }
+
+    public int sliceCount() {
+        return slices.length;
+    }
+
+    // 64-bit FNV-1a over UTF-16 code units, finished with the MurmurHash3 fmix64 mixer
+    private static long hash(CharSequence value, long seed) {
+        long h = seed ^ 0xCBF29CE484222325L;
+        for (int i = 0; i < value.length(); i++) {
+            h ^= value.charAt(i);
+            h *= 0x100000001B3L;
+        }
+        h ^= h >>> 33;
+        h *= 0xFF51AFD7ED558CCDL;
+        h ^= h >>> 33;
+        h *= 0xC4CEB9FE1A85EC53L;
+        h ^= h >>> 33;
+        return h;
+    }
+
+    private static final class Slice {
+        final long capacity;
+        final double fpp;
+        final long bitCount;
+        final int hashFunctions;
+        final AtomicLongArray bits;
+        final AtomicLong count = new AtomicLong();
+
+        Slice(long capacity, double fpp) {
+            this.capacity = capacity;
+            this.fpp = fpp;
+            long m = (long) Math.ceil(-capacity * Math.log(fpp) / (Math.log(2) * Math.log(2)));
+            int words = (int) Math.min(Integer.MAX_VALUE - 8, (m + 63) / 64);
+            this.bitCount = (long) words * 64;
+            this.hashFunctions = Math.max(1, (int) Math.round((double) bitCount / capacity * Math.log(2)));
+            this.bits = new AtomicLongArray(words);
+        }
+
+        boolean isFull() {
+            return count.get() >= capacity;
+        }
+
+        boolean mightContain(long h1, long h2) {
+            long combined = h1;
+            for (int i = 0; i < hashFunctions; i++) {
+                long index = Math.floorMod(combined, bitCount);
+                if ((bits.get((int) (index >>> 6)) & (1L << index)) == 0) {
+                    return false;
+                }
+                combined += h2;
+            }
+            return true;
+        }
+
+        void put(long h1, long h2) {
+            long combined = h1;
+            for (int i = 0; i < hashFunctions; i++) {
+                long index = Math.floorMod(combined, bitCount);
+                int word = (int) (index >>> 6);
+                long mask = 1L << index;
+                long current;
+                while (((current = bits.get(word)) & mask) == 0
+                        && !bits.compareAndSet(word, current, current | mask)) {
+                    Thread.onSpinWait();
+                }
+                combined += h2;
+            }
+            count.incrementAndGet();
+        }
+    }
+}
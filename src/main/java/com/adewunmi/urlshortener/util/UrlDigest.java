@@ -0,0 +1,26 @@
+package com.adewunmi.urlshortener.util;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+
+/**
+ * Fixed-width SHA-256 digest of a URL, used as the dedup key instead of the URL text.
+ * Matches PostgreSQL's {@code sha256(convert_to(original_url, 'UTF8'))}.
+ */
+public final class UrlDigest {
+
+    public static final int LENGTH = 32;
+
+    private UrlDigest() {
+    }
+
+    public static byte[] sha256(String url) {
+        try {
+            return MessageDigest.getInstance("SHA-256").digest(url.getBytes(StandardCharsets.UTF_8));
+        } catch (NoSuchAlgorithmException e) {
+            // Every JRE is required to provide SHA-256
+            throw new IllegalStateException(e);
+        }
+    }
+}
@@ -0,0 +1,14 @@
+-- Publishes one cache invalidation message with the next bus sequence number.
+--
+-- Numbering and publishing happen in one script call, so messages reach subscribers in
+-- sequence order and a missing number always means a lost message.
+--
+-- KEYS[1]  sequence counter key
+-- ARGV[1]  channel
+-- ARGV[2]  message body (origin node and operation)
+--
+-- Returns the sequence number assigned.
+
+local seq = redis.call('INCR', KEYS[1])
+redis.call('PUBLISH', ARGV[1], seq .. '|' .. ARGV[2])
+return seq
@@ -0,0 +1,37 @@
+-- GCRA (generic cell rate algorithm) token grant for one rate-limit key.
+--
+-- The key holds the theoretical arrival time (TAT, microseconds on the Redis clock): the
+-- moment the bucket would be full again. Granting n tokens pushes it n emission
+-- intervals further out. Reading, deciding and writing happen in one script call, and the
+-- key is always written with an expiry at its TAT, so a full bucket simply disappears.
+--
+-- KEYS[1]  bucket key
+-- ARGV[1]  emission interval in microseconds (refill period / refill tokens)
+-- ARGV[2]  burst capacity in tokens
+-- ARGV[3]  tokens wanted (the caller's need plus a lease to serve later requests locally)
+-- ARGV[4]  tokens needed; nothing is granted unless at least this many are available
+--
+-- Returns {granted, remaining, retryAfterMillis}.
+
+local time = redis.call('TIME')
+local now = tonumber(time[1]) * 1000000 + tonumber(time[2])
+local interval = tonumber(ARGV[1])
+local capacity = tonumber(ARGV[2])
+local wanted = tonumber(ARGV[3])
+local needed = tonumber(ARGV[4])
+
+local tat = tonumber(redis.call('GET', KEYS[1]))
+if tat == nil or tat < now then
+    tat = now
+end
+
+local available = math.floor((now + capacity * interval - tat) / interval)
+if available < needed then
+    local retryAfter = math.ceil((tat + needed * interval - capacity * interval - now) / 1000)
+    return { 0, available, retryAfter }
+end
+
+local granted = math.min(wanted, available)
+tat = tat + granted * interval
+redis.call('SET', KEYS[1], string.format('%d', tat), 'PX', math.ceil((tat - now) / 1000))
+return { granted, available - granted, 0 }
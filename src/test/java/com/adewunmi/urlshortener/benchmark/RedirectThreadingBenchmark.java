@@ -0,0 +1,164 @@
+package com.adewunmi.urlshortener.benchmark;
+
+import com.sun.net.httpserver.HttpServer;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares platform-thread and virtual-thread request handling for the redirect path.
+ * Not a unit test; run it by hand:
+ *
+ * <pre>
+ * mvn -q test-compile
+ * java -cp target/test-classes com.adewunmi.urlshortener.benchmark.RedirectThreadingBenchmark \
+ *     [clients=2000] [seconds=20] [redisMs=5] [dbMs=40] [missRatio=0.1] [dbPool=20]
+ * </pre>
+ *
+ * Each request does what a redirect does on the blocking path: one Redis round trip,
+ * and on a cache miss a database query holding one of {@code dbPool} pooled connections.
+ * Both are stood in for by sleeps, so the result isolates the threading model from
+ * the real clients. The platform mode mirrors Tomcat's default of 200 worker threads;
+ * the virtual mode runs one virtual thread per request. A closed-loop load generator
+ * keeps {@code clients} requests in flight.
+ */
+public class RedirectThreadingBenchmark {
+
+    private static final int PLATFORM_WORKER_THREADS = 200;
+
+    public static void main(String[] args) throws Exception {
+        int clients = intArg(args, 0, 2000);
+        int seconds = intArg(args, 1, 20);
+        long redisMillis = intArg(args, 2, 5);
+        long dbMillis = intArg(args, 3, 40);
+        double missRatio = args.length > 4 ? Double.parseDouble(args[4]) : 0.1;
+        int dbPool = intArg(args, 5, 20);
+
+        System.out.printf("clients=%d seconds=%d redisMs=%d dbMs=%d missRatio=%.2f dbPool=%d%n",
+                clients, seconds, redisMillis, dbMillis, missRatio, dbPool);
+
+        for (String mode : new String[] { "platform", "virtual" }) {
+            ExecutorService handlers = mode.equals("virtual")
+                    ? Executors.newVirtualThreadPerTaskExecutor()
+                    : Executors.newFixedThreadPool(PLATFORM_WORKER_THREADS);
+            Semaphore connections = new Semaphore(dbPool, true);
+
+            HttpServer server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 4096);
+            server.createContext("/", exchange -> {
+                try {
+                    Thread.sleep(redisMillis);
+                    if (ThreadLocalRandom.current().nextDouble() < missRatio) {
+                        connections.acquire();
+                        try {
+                            Thread.sleep(dbMillis);
+                        } finally {
+                            connections.release();
+                        }
+                    }
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+                exchange.getResponseHeaders().add("Location", "https://example.com/");
+                exchange.sendResponseHeaders(301, -1);
+                exchange.close();
+            });
+            server.setExecutor(handlers);
+            server.start();
+
+            try {
+                URI target = URI.create("http://127.0.0.1:" + server.getAddress().getPort() + "/abc1234");
+                // Short warm-up so JIT and connection setup do not count
+                run(target, clients, Math.max(2, seconds / 5));
+                Result result = run(target, clients, seconds);
+                System.out.printf("%-8s throughput=%8.0f req/s  p50=%6.1f ms  p99=%7.1f ms  errors=%d%n",
+                        mode, result.throughput, result.p50Millis, result.p99Millis, result.errors);
+            } finally {
+                server.stop(0);
+                handlers.shutdownNow();
+            }
+        }
+    }
+
+    private record Result(double throughput, double p50Millis, double p99Millis, long errors) {
+    }
+
+    private static Result run(URI target, int clients, int seconds) throws InterruptedException {
+        HttpClient http = HttpClient.newBuilder()
+                .followRedirects(HttpClient.Redirect.NEVER)
+                .connectTimeout(Duration.ofSeconds(10))
+                .executor(Executors.newVirtualThreadPerTaskExecutor())
+                .build();
+        HttpRequest request = HttpRequest.newBuilder(target).timeout(Duration.ofSeconds(30)).build();
+
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(seconds);
+        long[][] latencies = new long[clients][];
+        int[] counts = new int[clients];
+        long[] errors = new long[clients];
+
+        try (ExecutorService load = Executors.newVirtualThreadPerTaskExecutor()) {
+            for (int c = 0; c < clients; c++) {
+                int client = c;
+                load.submit(() -> {
+                    long[] samples = new long[1024];
+                    int n = 0;
+                    while (System.nanoTime() < deadline) {
+                        long start = System.nanoTime();
+                        try {
+                            http.send(request, HttpResponse.BodyHandlers.discarding());
+                        } catch (IOException e) {
+                            errors[client]++;
+                            continue;
+                        } catch (InterruptedException e) {
+                            return;
+                        }
+                        if (n == samples.length) {
+                            samples = Arrays.copyOf(samples, n * 2);
+                        }
+                        samples[n++] = System.nanoTime() - start;
+                    }
+                    latencies[client] = samples;
+                    counts[client] = n;
+                });
+            }
+        }
+
+        int total = Arrays.stream(counts).sum();
+        long[] all = new long[total];
+        int offset = 0;
+        for (int c = 0; c < clients; c++) {
+            if (latencies[c] != null) {
+                System.arraycopy(latencies[c], 0, all, offset, counts[c]);
+                offset += counts[c];
+            }
+        }
+        Arrays.sort(all, 0, offset);
+        return new Result(
+                (double) offset / seconds,
+                percentileMillis(all, offset, 0.50),
+                percentileMillis(all, offset, 0.99),
+                Arrays.stream(errors).sum());
+    }
+
+    private static double percentileMillis(long[] sorted, int size, double percentile) {
+        if (size == 0) {
+            return Double.NaN;
+        }
+        int index = (int) Math.min(size - 1, Math.ceil(percentile * size) - 1);
+        return sorted[Math.max(0, index)] / 1_000_000.0;
+    }
+
+    private static int intArg(String[] args, int index, int defaultValue) {
+        return args.length > index ? Integer.parseInt(args[index]) : defaultValue;
+    }
+}
@@ -0,0 +1,143 @@
+package com.adewunmi.urlshortener.service;
+
+import com.adewunmi.urlshortener.config.BackgroundThreadFactory;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.mockito.InOrder;
+import org.springframework.data.redis.connection.DefaultMessage;
+
+import java.nio.charset.StandardCharsets;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.inOrder;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.verifyNoInteractions;
+
+/**
+ * Feeds messages straight to the listener, with the cache and short code filter mocked.
+ * Redis is not needed: the bus is built disabled, so nothing is published.
+ */
+class CacheInvalidationBusTest {
+
+    private static final byte[] CHANNEL = "cache:invalidation".getBytes(StandardCharsets.UTF_8);
+
+    private final CacheService cacheService = mock(CacheService.class);
+    private final ShortCodeFilterService shortCodeFilterService = mock(ShortCodeFilterService.class);
+    private final CacheInvalidationBus bus = new CacheInvalidationBus(cacheService, shortCodeFilterService,
+            new BackgroundThreadFactory(false), null, false, "cache:invalidation", 5000, new SimpleMeterRegistry());
+
+    @Test
+    void appliesConsecutiveMessagesWithoutFlushing() {
+        receive("1|other|Iabc1234");
+        receive("2|other|Idef5678");
+
+        verify(cacheService).invalidateLocal("abc1234");
+        verify(cacheService).invalidateLocal("def5678");
+        verify(cacheService, never()).clearLocalCache();
+        assertEquals(2L, bus.getStats().get("applied"));
+        assertEquals(2L, bus.getStats().get("lastSequence"));
+    }
+
+    @Test
+    void flushesWhenTheSequenceSkipsANumber() {
+        receive("1|other|Iabc1234");
+        receive("3|other|Idef5678");
+
+        // The flush comes first, then the message that revealed the gap is still applied
+        InOrder order = inOrder(cacheService, shortCodeFilterService);
+        order.verify(cacheService).clearLocalCache();
+        order.verify(shortCodeFilterService).announcementsResumed();
+        order.verify(cacheService).invalidateLocal("def5678");
+        assertEquals(1L, bus.getStats().get("gapFlushes"));
+
+        receive("4|other|Ighi9012");
+        verify(cacheService).clearLocalCache();
+    }
+
+    @Test
+    void flushesWhenTheSequenceGoesBackwards() {
+        receive("41|other|Iabc1234");
+        receive("42|other|Iabc1234");
+        // Redis was reset and numbering starts again
+        receive("1|other|Idef5678");
+
+        verify(cacheService).clearLocalCache();
+        assertEquals(1L, bus.getStats().get("gapFlushes"));
+        assertEquals(1L, bus.getStats().get("lastSequence"));
+    }
+
+    @Test
+    void skipsItsOwnMessagesButCountsTheirSequence() {
+        String nodeId = (String) bus.getStats().get("nodeId");
+        receive("1|" + nodeId + "|Iabc1234");
+        receive("2|" + nodeId + "|F");
+        receive("3|other|Idef5678");
+
+        verify(cacheService, never()).invalidateLocal("abc1234");
+        verify(cacheService).invalidateLocal("def5678");
+        verify(cacheService, never()).clearLocalCache();
+        assertEquals(1L, bus.getStats().get("applied"));
+    }
+
+    @Test
+    void appliesFlushesFromOtherNodes() {
+        receive("1|other|F");
+
+        verify(cacheService).clearLocalCache();
+        assertEquals(0L, bus.getStats().get("gapFlushes"));
+    }
+
+    @Test
+    void addsEachAnnouncedCodeToTheFilter() {
+        receive("1|other|Nabc1234\ndef5678\nghi9012");
+        receive("2|other|Nsingle");
+
+        InOrder order = inOrder(shortCodeFilterService);
+        order.verify(shortCodeFilterService).add("abc1234");
+        order.verify(shortCodeFilterService).add("def5678");
+        order.verify(shortCodeFilterService).add("ghi9012");
+        order.verify(shortCodeFilterService).add("single");
+        verify(shortCodeFilterService, times(4)).add(anyString());
+        verifyNoInteractions(cacheService);
+    }
+
+    @Test
+    void ignoresMalformedMessages() {
+        receive("garbage");
+        receive("x|other|Iabc1234");
+        receive("1|other|");
+        receive("2|other|Zabc1234");
+
+        verifyNoInteractions(cacheService, shortCodeFilterService);
+        assertEquals(0L, bus.getStats().get("applied"));
+    }
+
+    @Test
+    void flushesOnResubscribeButNotOnTheFirstSubscription() {
+        bus.onChannelSubscribed(CHANNEL, 1);
+        verify(shortCodeFilterService).announcementsResumed();
+        verify(cacheService, never()).clearLocalCache();
+
+        receive("7|other|Iabc1234");
+        bus.onChannelUnsubscribed(CHANNEL, 0);
+        verify(shortCodeFilterService).announcementsStopped();
+
+        bus.onChannelSubscribed(CHANNEL, 1);
+        verify(cacheService).clearLocalCache();
+        verify(shortCodeFilterService, times(2)).announcementsResumed();
+        assertEquals(1L, bus.getStats().get("gapFlushes"));
+
+        // Numbering is picked up afresh, so the first message after a resubscribe is no gap
+        receive("12|other|Idef5678");
+        verify(cacheService).clearLocalCache();
+        verify(cacheService).invalidateLocal("def5678");
+    }
+
+    private void receive(String body) {
+        bus.onMessage(new DefaultMessage(CHANNEL, body.getBytes(StandardCharsets.UTF_8)), null);
+    }
+}
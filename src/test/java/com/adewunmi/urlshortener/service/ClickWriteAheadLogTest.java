@@ -0,0 +1,180 @@
+package com.adewunmi.urlshortener.service;
+
+import com.adewunmi.urlshortener.config.BackgroundThreadFactory;
+import com.adewunmi.urlshortener.dto.ClickEvent;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.LocalDateTime;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Exercises the log against real segment files in a temporary directory.
+ */
+class ClickWriteAheadLogTest {
+
+    // Room for four of the clicks made by click(n)
+    private static final int SMALL_SEGMENT = 256;
+
+    @TempDir
+    Path directory;
+
+    private final List<ClickWriteAheadLog> opened = new ArrayList<>();
+
+    @AfterEach
+    void tearDown() throws InterruptedException {
+        for (ClickWriteAheadLog log : opened) {
+            log.close();
+        }
+    }
+
+    @Test
+    void recordsRoundTrip() throws IOException {
+        ClickWriteAheadLog log = open(65_536, 64);
+        List<ClickEvent> events = List.of(
+                new ClickEvent(1, "abc1234", LocalDateTime.of(2026, 10, 17, 12, 30, 15, 123_456_789),
+                        "203.0.113.7", "Mozilla/5.0", "https://example.com/"),
+                new ClickEvent(Long.MAX_VALUE, "x", LocalDateTime.of(2026, 1, 1, 0, 0), null, null, null),
+                // Before the epoch, so the micros are negative
+                new ClickEvent(3, "old", LocalDateTime.of(1969, 12, 31, 23, 59, 59, 500_000_000),
+                        "::1", "", null),
+                // One- to three-byte varint lengths, and multi-byte UTF-8
+                new ClickEvent(4, "ünï", LocalDateTime.of(2026, 5, 5, 5, 5), "10.0.0.1",
+                        "a".repeat(200), "b".repeat(20_000) + "€"));
+        for (ClickEvent event : events) {
+            assertTrue(log.append(event));
+        }
+
+        List<ClickEvent> read = new ArrayList<>();
+        log.read(read, 100);
+
+        assertEquals(events.size(), read.size());
+        for (int i = 0; i < events.size(); i++) {
+            ClickEvent expected = events.get(i);
+            assertEquals(new ClickEvent(expected.getUrlId(), expected.getShortCode(),
+                    expected.getClickedAt().truncatedTo(ChronoUnit.MICROS), expected.getIpAddress(),
+                    expected.getUserAgent(), expected.getReferrer()), read.get(i));
+        }
+    }
+
+    @Test
+    void readsAcrossSegments() throws IOException {
+        ClickWriteAheadLog log = open(SMALL_SEGMENT, 64);
+        List<ClickEvent> events = new ArrayList<>();
+        for (int i = 0; i < 20; i++) {
+            events.add(click(i));
+            assertTrue(log.append(events.get(i)));
+        }
+
+        List<ClickEvent> read = new ArrayList<>();
+        log.read(read, 100);
+
+        assertEquals(events, read);
+        assertTrue((int) log.getStats().get("segments") >= 5);
+    }
+
+    @Test
+    void rejectsAppendsOnceBacklogFillsMaxSegments() throws IOException {
+        ClickWriteAheadLog log = open(SMALL_SEGMENT, 3);
+        int accepted = 0;
+        while (log.append(click(accepted))) {
+            accepted++;
+            assertTrue(accepted < 100, "Expected appends to be rejected");
+        }
+        assertTrue(accepted > 0);
+        assertEquals(1L, log.getStats().get("rejected"));
+
+        // Shipping the backlog frees the space again
+        List<ClickEvent> read = new ArrayList<>();
+        ClickWriteAheadLog.Position position = log.read(read, 100);
+        assertEquals(accepted, read.size());
+        log.commit(position);
+
+        assertTrue(log.append(click(accepted)));
+    }
+
+    @Test
+    void replaysFromCheckpointAfterReopen() throws Exception {
+        ClickWriteAheadLog first = open(SMALL_SEGMENT, 64);
+        for (int i = 0; i < 5; i++) {
+            first.append(click(i));
+        }
+        List<ClickEvent> shipped = new ArrayList<>();
+        first.commit(first.read(shipped, 3));
+        // Read but never committed, so shipped again after a restart
+        first.read(new ArrayList<>(), 100);
+        first.close();
+
+        ClickWriteAheadLog second = open(SMALL_SEGMENT, 64);
+        List<ClickEvent> replayed = new ArrayList<>();
+        second.read(replayed, 100);
+
+        assertEquals(List.of(click(0), click(1), click(2)), shipped);
+        assertEquals(List.of(click(3), click(4)), replayed);
+    }
+
+    @Test
+    void stopsAtTornRecord() throws Exception {
+        ClickWriteAheadLog first = open(SMALL_SEGMENT, 64);
+        for (int i = 0; i < 3; i++) {
+            first.append(click(i));
+        }
+        first.close();
+
+        // Flip a byte in the second record's payload, as a crash mid-write would leave it
+        Path segment = onlySegment();
+        try (FileChannel channel = FileChannel.open(segment, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+            ByteBuffer length = ByteBuffer.allocate(4);
+            channel.read(length, 0);
+            long second = 8 + length.getInt(0);
+            ByteBuffer value = ByteBuffer.allocate(1);
+            channel.read(value, second + 8);
+            value.put(0, (byte) ~value.get(0));
+            channel.write(value.rewind(), second + 8);
+        }
+
+        ClickWriteAheadLog second = open(SMALL_SEGMENT, 64);
+        second.append(click(3));
+        List<ClickEvent> read = new ArrayList<>();
+        second.read(read, 100);
+
+        // The rest of the torn segment is skipped; the next segment is read as usual
+        assertEquals(List.of(click(0), click(3)), read);
+        assertEquals(1L, second.getStats().get("tornSegments"));
+    }
+
+    private ClickWriteAheadLog open(int segmentBytes, int maxSegments) throws IOException {
+        ClickWriteAheadLog log = new ClickWriteAheadLog(new BackgroundThreadFactory(false), true,
+                directory.toString(), segmentBytes, maxSegments, 1, 60_000, new SimpleMeterRegistry());
+        log.open();
+        opened.add(log);
+        return log;
+    }
+
+    private Path onlySegment() throws IOException {
+        try (Stream<Path> files = Files.list(directory)) {
+            List<Path> segments = files.filter(file -> file.getFileName().toString().endsWith(".log")).toList();
+            assertEquals(1, segments.size());
+            return segments.get(0);
+        }
+    }
+
+    private static ClickEvent click(int n) {
+        return new ClickEvent(n, "abc" + (1000 + n), LocalDateTime.of(2026, 10, 17, 12, 0, n),
+                "203.0.113.7", "Mozilla/5.0", null);
+    }
+}
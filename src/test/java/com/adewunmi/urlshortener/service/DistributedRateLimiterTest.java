@@ -0,0 +1,157 @@
+package com.adewunmi.urlshortener.service;
+
+import com.adewunmi.urlshortener.config.BackgroundThreadFactory;
+import com.adewunmi.urlshortener.service.DistributedRateLimiter.Decision;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.data.redis.connection.RedisStandaloneConfiguration;
+import org.springframework.data.redis.connection.lettuce.LettuceConnectionFactory;
+import org.springframework.data.redis.core.StringRedisTemplate;
+
+import java.io.IOException;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.junit.jupiter.api.Assumptions.assumeTrue;
+
+/**
+ * Runs the limiter against a real Redis at REDIS_HOST:REDIS_PORT (default localhost:6379).
+ * Tests that need Redis are skipped when it is not reachable.
+ */
+class DistributedRateLimiterTest {
+
+    // One token every three minutes, so nothing refills while a test runs
+    private static final RateLimit LIMIT = new RateLimit(20, 20, Duration.ofHours(1));
+
+    private final List<LettuceConnectionFactory> factories = new ArrayList<>();
+    private final RateLimitKey key = RateLimitKey.of(RateLimitOperation.REDIRECT,
+            "10.0." + ThreadLocalRandom.current().nextInt(256) + "." + ThreadLocalRandom.current().nextInt(256));
+
+    @AfterEach
+    void tearDown() {
+        for (LettuceConnectionFactory factory : factories) {
+            try {
+                new StringRedisTemplate(factory).delete(DistributedRateLimiter.redisKey(key));
+            } catch (Exception ignored) {
+                // Redis not reachable
+            }
+            factory.destroy();
+        }
+    }
+
+    @Test
+    void nodesShareOneLimit() {
+        StringRedisTemplate redis = redis(redisPort());
+        assumeTrue(isReachable(redis), "Redis is not running");
+        DistributedRateLimiter nodeA = limiter(redis);
+        DistributedRateLimiter nodeB = limiter(redis(redisPort()));
+
+        int allowed = 0;
+        for (int i = 0; i < 40; i++) {
+            DistributedRateLimiter node = i % 2 == 0 ? nodeA : nodeB;
+            if (node.tryAcquire(key, 1, LIMIT) == Decision.ALLOWED) {
+                allowed++;
+            }
+        }
+
+        assertEquals(LIMIT.capacity(), allowed);
+    }
+
+    @Test
+    void leasedTokensAreServedWithoutRedis() {
+        StringRedisTemplate redis = redis(redisPort());
+        assumeTrue(isReachable(redis), "Redis is not running");
+        DistributedRateLimiter node = limiter(redis);
+
+        for (int i = 0; i < 6; i++) {
+            assertEquals(Decision.ALLOWED, node.tryAcquire(key, 1, LIMIT));
+        }
+
+        // Each call asks for one token plus a lease of two (a tenth of the capacity)
+        assertEquals(2L, node.getStats().get("redisCalls"));
+        assertEquals(4L, node.getStats().get("leaseHits"));
+    }
+
+    @Test
+    void bucketKeyExpiresWhenFull() {
+        StringRedisTemplate redis = redis(redisPort());
+        assumeTrue(isReachable(redis), "Redis is not running");
+
+        limiter(redis).tryAcquire(key, 3, LIMIT);
+
+        // Three tokens plus a lease of two were taken, at three minutes each
+        Long ttlSeconds = redis.getExpire(DistributedRateLimiter.redisKey(key));
+        assertTrue(ttlSeconds != null && ttlSeconds > 4 * 180 && ttlSeconds <= 5 * 180,
+                "Expected the key to expire once refilled, got TTL " + ttlSeconds);
+    }
+
+    @Test
+    void reportsUnavailableWhenRedisIsDown() {
+        DistributedRateLimiter node = limiter(redis(1));
+
+        assertEquals(Decision.UNAVAILABLE, node.tryAcquire(key, 1, LIMIT));
+        assertEquals(Decision.UNAVAILABLE, node.tryAcquire(key, 1, LIMIT));
+        // The second call is answered without another connection attempt
+        assertEquals(1L, node.getStats().get("redisCalls"));
+    }
+
+    @Test
+    void fallsBackWhenRedisDoesNotAnswer() throws Exception {
+        // Accepts connections and never replies, like a hung Redis
+        try (ServerSocket silent = new ServerSocket(0)) {
+            List<Socket> accepted = new ArrayList<>();
+            Thread acceptor = new Thread(() -> {
+                try {
+                    while (true) {
+                        accepted.add(silent.accept());
+                    }
+                } catch (IOException e) {
+                    // Closed at the end of the test
+                }
+            });
+            acceptor.setDaemon(true);
+            acceptor.start();
+
+            DistributedRateLimiter node = new DistributedRateLimiter(redis(silent.getLocalPort()),
+                    new BackgroundThreadFactory(false), true, 10, 60_000, 60_000, 100, 1000);
+            long start = System.nanoTime();
+
+            assertEquals(Decision.UNAVAILABLE, node.tryAcquire(key, 1, LIMIT));
+            assertTrue(System.nanoTime() - start < TimeUnit.SECONDS.toNanos(2),
+                    "Expected the deadline to cut the call short");
+            node.shutdown();
+        }
+    }
+
+    private StringRedisTemplate redis(int port) {
+        String host = System.getenv().getOrDefault("REDIS_HOST", "localhost");
+        LettuceConnectionFactory factory = new LettuceConnectionFactory(new RedisStandaloneConfiguration(host, port));
+        factory.afterPropertiesSet();
+        factory.start();
+        factories.add(factory);
+        return new StringRedisTemplate(factory);
+    }
+
+    private static DistributedRateLimiter limiter(StringRedisTemplate redis) {
+        return new DistributedRateLimiter(redis, new BackgroundThreadFactory(false), true, 10, 60_000, 60_000, 1000, 1000);
+    }
+
+    private static int redisPort() {
+        return Integer.parseInt(System.getenv().getOrDefault("REDIS_PORT", "6379"));
+    }
+
+    private static boolean isReachable(StringRedisTemplate redis) {
+        try {
+            return "PONG".equals(redis.execute(connection -> connection.ping(), true));
+        } catch (Exception e) {
+            return false;
+        }
+    }
+}
@@ -0,0 +1,176 @@
+package com.adewunmi.urlshortener.service;
+
+import com.adewunmi.urlshortener.dto.CachedUrl;
+import com.adewunmi.urlshortener.entity.RedirectType;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Function;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertInstanceOf;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.junit.jupiter.api.Assertions.fail;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+
+/**
+ * Coalescing on one node, with a loader that blocks on a latch until the test releases it
+ * and the cache mocked. The distributed lock is off.
+ */
+class SingleFlightUrlLoaderTest {
+
+    private static final String CODE = "abc1234";
+    private static final CachedUrl VALUE = new CachedUrl(1, "https://example.com/", null, RedirectType.PERMANENT);
+
+    private final CacheService cacheService = mock(CacheService.class);
+    private final ExecutorService callers = Executors.newCachedThreadPool();
+
+    private final CountDownLatch release = new CountDownLatch(1);
+    private final AtomicInteger loads = new AtomicInteger();
+
+    @AfterEach
+    void tearDown() {
+        release.countDown();
+        callers.shutdownNow();
+    }
+
+    @Test
+    void concurrentCallersShareOneLoad() throws Exception {
+        SingleFlightUrlLoader singleFlight = newLoader(10_000);
+        Future<CachedUrl> leader = callers.submit(() -> singleFlight.load(CODE, blockingLoader(VALUE)));
+        awaitLoads(1);
+
+        List<Future<CachedUrl>> waiters = new ArrayList<>();
+        for (int i = 0; i < 8; i++) {
+            waiters.add(callers.submit(() -> singleFlight.load(CODE, blockingLoader(VALUE))));
+        }
+        awaitStat(singleFlight, "coalesced", 8);
+        release.countDown();
+
+        assertSame(VALUE, leader.get(5, TimeUnit.SECONDS));
+        for (Future<CachedUrl> waiter : waiters) {
+            assertSame(VALUE, waiter.get(5, TimeUnit.SECONDS));
+        }
+        assertEquals(1, loads.get());
+        assertEquals(1L, singleFlight.getStats().get("leaderLoads"));
+        assertEquals(0L, singleFlight.getStats().get("timeouts"));
+        assertEquals(0, singleFlight.getStats().get("inFlight"));
+        verify(cacheService, times(1)).cacheUrlMapping(eq(CODE), eq(VALUE), anyLong());
+    }
+
+    @Test
+    void waiterThatTimesOutLoadsByItself() throws Exception {
+        SingleFlightUrlLoader singleFlight = newLoader(50);
+        Future<CachedUrl> leader = callers.submit(() -> singleFlight.load(CODE, blockingLoader(VALUE)));
+        awaitLoads(1);
+
+        // The leader is still blocked, so the waiter gives up on it and runs its own load
+        CachedUrl own = new CachedUrl(1, "https://example.com/own", null, RedirectType.PERMANENT);
+        assertSame(own, singleFlight.load(CODE, code -> {
+            loads.incrementAndGet();
+            return own;
+        }));
+        assertEquals(1L, singleFlight.getStats().get("timeouts"));
+        assertEquals(2, loads.get());
+
+        release.countDown();
+        assertSame(VALUE, leader.get(5, TimeUnit.SECONDS));
+        // Only the leader caches; the waiter's own load is returned as is
+        verify(cacheService, never()).cacheUrlMapping(eq(CODE), eq(own), anyLong());
+    }
+
+    @Test
+    void leaderFailureReachesEveryWaiter() throws Exception {
+        SingleFlightUrlLoader singleFlight = newLoader(10_000);
+        IllegalStateException failure = new IllegalStateException("database unavailable");
+        Future<CachedUrl> leader = callers.submit(() -> singleFlight.load(CODE, code -> {
+            loads.incrementAndGet();
+            await(release);
+            throw failure;
+        }));
+        awaitLoads(1);
+
+        List<Future<CachedUrl>> waiters = new ArrayList<>();
+        for (int i = 0; i < 4; i++) {
+            waiters.add(callers.submit(() -> singleFlight.load(CODE, blockingLoader(VALUE))));
+        }
+        awaitStat(singleFlight, "coalesced", 4);
+        release.countDown();
+
+        assertSame(failure, failureOf(leader));
+        for (Future<CachedUrl> waiter : waiters) {
+            assertSame(failure, failureOf(waiter));
+        }
+        assertEquals(1, loads.get());
+        verify(cacheService, never()).cacheUrlMapping(any(), any(), anyLong());
+
+        // The failed load is no longer in flight, so the next caller loads afresh
+        assertSame(VALUE, singleFlight.load(CODE, code -> VALUE));
+    }
+
+    private SingleFlightUrlLoader newLoader(long waitTimeoutMillis) {
+        return new SingleFlightUrlLoader(cacheService, null, waitTimeoutMillis, false, 2000, 500, 10,
+                new SimpleMeterRegistry());
+    }
+
+    private Function<String, CachedUrl> blockingLoader(CachedUrl value) {
+        return code -> {
+            loads.incrementAndGet();
+            await(release);
+            return value;
+        };
+    }
+
+    private void awaitLoads(int count) throws InterruptedException {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        while (loads.get() < count) {
+            assertTrue(System.nanoTime() - deadline < 0, "Timed out waiting for " + count + " loads");
+            Thread.sleep(1);
+        }
+    }
+
+    private static void awaitStat(SingleFlightUrlLoader singleFlight, String stat, long value)
+            throws InterruptedException {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        while ((long) singleFlight.getStats().get(stat) < value) {
+            assertTrue(System.nanoTime() - deadline < 0, "Timed out waiting for " + stat + " to reach " + value);
+            Thread.sleep(1);
+        }
+    }
+
+    private static void await(CountDownLatch latch) {
+        try {
+            latch.await();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private static Throwable failureOf(Future<CachedUrl> caller) throws Exception {
+        try {
+            caller.get(5, TimeUnit.SECONDS);
+        } catch (ExecutionException e) {
+            assertInstanceOf(IllegalStateException.class, e.getCause());
+            return e.getCause();
+        }
+        return fail("Expected the load to fail");
+    }
+}
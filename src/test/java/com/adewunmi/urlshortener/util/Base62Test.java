@@ -0,0 +1,55 @@
+package com.adewunmi.urlshortener.util;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.ThreadLocalRandom;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+class Base62Test {
+
+    @Test
+    void roundTripsAcrossTheCodeSpace() {
+        long capacity = Base62.capacity(7);
+        long[] edges = { 0, 1, 61, 62, 63, 3843, 3844, capacity / 2, capacity - 2, capacity - 1 };
+        for (long value : edges) {
+            assertRoundTrip(value, 7);
+        }
+        for (int i = 0; i < 100_000; i++) {
+            assertRoundTrip(ThreadLocalRandom.current().nextLong(capacity), 7);
+        }
+    }
+
+    @Test
+    void roundTripsEveryValueOfASmallWidth() {
+        for (long value = 0; value < Base62.capacity(2); value++) {
+            assertRoundTrip(value, 2);
+        }
+    }
+
+    @Test
+    void padsToWidth() {
+        assertEquals("aaaaaaa", Base62.encode(0, 7));
+        assertEquals("aaaaaab", Base62.encode(1, 7));
+        assertEquals("9999999", Base62.encode(Base62.capacity(7) - 1, 7));
+    }
+
+    @Test
+    void rejectsValuesThatDoNotFit() {
+        assertThrows(IllegalArgumentException.class, () -> Base62.encode(Base62.capacity(7), 7));
+        assertThrows(IllegalArgumentException.class, () -> Base62.encode(-1, 7));
+    }
+
+    @Test
+    void rejectsInvalidCodes() {
+        assertThrows(IllegalArgumentException.class, () -> Base62.decode("abc-def"));
+        assertThrows(IllegalArgumentException.class, () -> Base62.decode("9".repeat(12)));
+    }
+
+    private static void assertRoundTrip(long value, int width) {
+        String code = Base62.encode(value, width);
+        assertEquals(width, code.length());
+        assertEquals(value, Base62.decode(code), code);
+    }
+}
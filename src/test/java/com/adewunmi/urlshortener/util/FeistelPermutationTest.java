@@ -0,0 +1,76 @@
+package com.adewunmi.urlshortener.util;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.BitSet;
+import java.util.HashSet;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class FeistelPermutationTest {
+
+    private static final long KEY = 6148914691236517205L;
+
+    @Test
+    void isABijectionOnSmallDomains() {
+        // Exact powers of four, sizes just above one (most cycle-walking) and the base62 widths
+        long[] domains = { 2, 3, 4, 5, 17, 64, 65, 1000, 4096, 4097, 62 * 62, Base62.capacity(3) };
+        for (long domain : domains) {
+            for (long key : new long[] { 0, 1, KEY, -1 }) {
+                assertBijection(new FeistelPermutation(domain, key), domain);
+            }
+        }
+    }
+
+    @Test
+    void isABijectionOnADomainOfAMillion() {
+        assertBijection(new FeistelPermutation(1_000_003, KEY), 1_000_003);
+    }
+
+    @Test
+    void issuesDistinctCodesForConsecutiveIds() {
+        // The generator's domain is too large to cover, so check the first block of ids
+        long domain = Base62.capacity(7);
+        FeistelPermutation permutation = new FeistelPermutation(domain, KEY);
+        Set<Long> seen = new HashSet<>();
+        for (long id = 0; id < 200_000; id++) {
+            long permuted = permutation.permute(id);
+            assertTrue(permuted >= 0 && permuted < domain);
+            assertTrue(seen.add(permuted), "Duplicate output for id " + id);
+        }
+    }
+
+    @Test
+    void scramblesConsecutiveIds() {
+        FeistelPermutation permutation = new FeistelPermutation(Base62.capacity(7), KEY);
+        int ascending = 0;
+        for (long id = 0; id < 1000; id++) {
+            if (permutation.permute(id + 1) == permutation.permute(id) + 1) {
+                ascending++;
+            }
+        }
+        assertTrue(ascending < 10, "Consecutive ids produced consecutive outputs " + ascending + " times");
+    }
+
+    @Test
+    void rejectsValuesOutsideTheDomain() {
+        FeistelPermutation permutation = new FeistelPermutation(100, KEY);
+        assertThrows(IllegalArgumentException.class, () -> permutation.permute(100));
+        assertThrows(IllegalArgumentException.class, () -> permutation.permute(-1));
+    }
+
+    private static void assertBijection(FeistelPermutation permutation, long domain) {
+        BitSet seen = new BitSet((int) domain);
+        for (long value = 0; value < domain; value++) {
+            long permuted = permutation.permute(value);
+            assertTrue(permuted >= 0 && permuted < domain, "Output " + permuted + " outside domain " + domain);
+            assertFalse(seen.get((int) permuted), "Two inputs map to " + permuted + " in domain " + domain);
+            seen.set((int) permuted);
+        }
+        assertEquals(domain, seen.cardinality());
+    }
+}
@@ -0,0 +1,100 @@
+package com.adewunmi.urlshortener.util;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class ScalableBloomFilterTest {
+
+    @Test
+    void hasNoFalseNegativesAcrossGrowth() {
+        ScalableBloomFilter filter = new ScalableBloomFilter(1000, 0.01);
+        int count = 200_000;
+        for (int i = 0; i < count; i++) {
+            filter.add(code(i));
+            // Already-added codes must survive each new slice being appended
+            if (i % 997 == 0) {
+                for (int j = 0; j <= i; j += 101) {
+                    assertTrue(filter.mightContain(code(j)), code(j) + " lost after " + (i + 1) + " adds");
+                }
+            }
+        }
+
+        assertTrue(filter.sliceCount() > 5, "Expected the filter to grow, got " + filter.sliceCount() + " slices");
+        for (int i = 0; i < count; i++) {
+            assertTrue(filter.mightContain(code(i)), code(i));
+        }
+    }
+
+    @Test
+    void staysNearTargetFalsePositiveRateAfterGrowth() {
+        ScalableBloomFilter filter = new ScalableBloomFilter(1000, 0.01);
+        for (int i = 0; i < 100_000; i++) {
+            filter.add(code(i));
+        }
+
+        int falsePositives = 0;
+        int probes = 100_000;
+        for (int i = 0; i < probes; i++) {
+            if (filter.mightContain("miss" + i)) {
+                falsePositives++;
+            }
+        }
+        // Target 1%; allow for sampling noise
+        assertTrue(falsePositives < probes * 0.015, falsePositives + " false positives in " + probes);
+    }
+
+    @Test
+    void hasNoFalseNegativesUnderConcurrentAddsAndGrowth() throws Exception {
+        ScalableBloomFilter filter = new ScalableBloomFilter(100, 0.01);
+        int threads = 8;
+        int perThread = 20_000;
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        try {
+            List<Future<?>> adders = new ArrayList<>();
+            for (int t = 0; t < threads; t++) {
+                int first = t * perThread;
+                adders.add(executor.submit(() -> {
+                    for (int i = first; i < first + perThread; i++) {
+                        filter.add(code(i));
+                    }
+                }));
+            }
+            for (Future<?> adder : adders) {
+                adder.get();
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+
+        for (int i = 0; i < threads * perThread; i++) {
+            assertTrue(filter.mightContain(code(i)), code(i));
+        }
+    }
+
+    @Test
+    void countsDistinctAdds() {
+        ScalableBloomFilter filter = new ScalableBloomFilter(1000, 0.01);
+        filter.add("abc1234");
+        filter.add("abc1234");
+        assertEquals(1, filter.approximateElementCount());
+    }
+
+    @Test
+    void rejectsInvalidParameters() {
+        assertThrows(IllegalArgumentException.class, () -> new ScalableBloomFilter(0, 0.01));
+        assertThrows(IllegalArgumentException.class, () -> new ScalableBloomFilter(1000, 1));
+    }
+
+    private static String code(int i) {
+        return Base62.encode(i, 7);
+    }
+}